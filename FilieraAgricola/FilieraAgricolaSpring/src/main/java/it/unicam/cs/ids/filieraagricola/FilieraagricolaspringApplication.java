@@ -1,13 +1,22 @@
 package it.unicam.cs.ids.filieraagricola;
 
+import it.unicam.cs.ids.filieraagricola.controllers.OrderExportCommand;
+import org.springframework.boot.DefaultApplicationArguments;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class FilieraagricolaspringApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(FilieraagricolaspringApplication.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(FilieraagricolaspringApplication.class, args);
+		// a command line export runs once at startup, then the application stops
+		if (new DefaultApplicationArguments(args).containsOption(OrderExportCommand.OPTION)) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
@@ -0,0 +1,149 @@
+package it.unicam.cs.ids.filieraagricola.controllers;
+
+import it.unicam.cs.ids.filieraagricola.model.ContentAttachment;
+import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.services.AttachmentService;
+import it.unicam.cs.ids.filieraagricola.services.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Files attached to contents: streamed uploads and range-aware downloads.
+ */
+@RestController
+@RequestMapping("/contents/{contentId}/attachments")
+public class ContentAttachmentController {
+
+    /** Request attributes through which Tomcat serves a file with sendfile. */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private AttachmentService attachmentService;
+    @Autowired
+    private UserService userService;
+
+
+    /**
+     * Attaches the uploaded file to a content. The multipart file is read as a stream and
+     * stored by hash; 404 if the content does not exist, 413 if the file is too large.
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ContentAttachment> upload(@PathVariable String contentId,
+                                                    @RequestParam("file") MultipartFile file) throws IOException {
+        if (!(userService.hasRole(UserRole.TRANSFORMER)
+                || userService.hasRole(UserRole.DISTRIBUTOR)
+                || userService.hasRole(UserRole.CURATOR))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        ContentAttachment attachment;
+        try (InputStream in = file.getInputStream()) {
+            attachment = attachmentService.attach(contentId, file.getOriginalFilename(), file.getContentType(), in);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(null);
+        }
+        if (attachment == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.created(URI.create("/contents/" + contentId + "/attachments/" + attachment.getId()))
+                .eTag(AttachmentService.etag(attachment))
+                .body(attachment);
+    }
+
+    @GetMapping
+    public List<ContentAttachment> list(@PathVariable String contentId) {
+        return attachmentService.getAttachments(contentId);
+    }
+
+    /**
+     * Downloads an attachment. Supports a single {@code Range} (206, or 416 when not
+     * satisfiable), {@code If-Range} and {@code If-None-Match} against the strong ETag,
+     * which is the SHA-256 of the bytes. The bytes are sent with sendfile when the
+     * connector supports it, otherwise with {@code FileChannel.transferTo}.
+     */
+    @GetMapping("/{attachmentId}")
+    public void download(@PathVariable String contentId, @PathVariable String attachmentId,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ContentAttachment attachment = attachmentService.getAttachment(contentId, attachmentId);
+        if (attachment == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        String etag = AttachmentService.etag(attachment);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+        long size = attachment.getSize();
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        AttachmentService.Range range;
+        try {
+            range = ifRange == null || ifRange.equals(etag)
+                    ? AttachmentService.Range.parse(request.getHeader(HttpHeaders.RANGE), size)
+                    : null;
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            return;
+        }
+        if (range == null) {
+            if (size == 0) {
+                response.setContentLengthLong(0);
+                return;
+            }
+            range = new AttachmentService.Range(0, size - 1);
+        } else {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + size);
+        }
+        response.setContentType(attachment.getMediaType() == null
+                ? MediaType.APPLICATION_OCTET_STREAM_VALUE
+                : attachment.getMediaType());
+        if (attachment.getFileName() != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                    .filename(attachment.getFileName(), StandardCharsets.UTF_8).build().toString());
+        }
+        response.setContentLengthLong(range.length());
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, attachmentService.file(attachment).toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+        attachmentService.transfer(attachment, range, Channels.newChannel(response.getOutputStream()));
+    }
+
+    @DeleteMapping("/{attachmentId}")
+    public ResponseEntity<Boolean> delete(@PathVariable String contentId, @PathVariable String attachmentId) {
+        if (!(userService.hasRole(UserRole.TRANSFORMER)
+                || userService.hasRole(UserRole.DISTRIBUTOR)
+                || userService.hasRole(UserRole.CURATOR))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(false);
+        }
+        if (!attachmentService.detach(contentId, attachmentId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(false);
+        }
+        return ResponseEntity.ok(true);
+    }
+}
@@ -3,15 +3,24 @@ package it.unicam.cs.ids.filieraagricola.controllers;
 import it.unicam.cs.ids.filieraagricola.controllers.dto.CreateContentDto;
 import it.unicam.cs.ids.filieraagricola.model.Content;
 import it.unicam.cs.ids.filieraagricola.model.ContentState;
+import it.unicam.cs.ids.filieraagricola.model.User;
 import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.services.ApprovedContentsCache;
+import it.unicam.cs.ids.filieraagricola.services.ContentModerationQueue;
 import it.unicam.cs.ids.filieraagricola.services.ContentService;
+import it.unicam.cs.ids.filieraagricola.services.NdjsonExporter;
 import it.unicam.cs.ids.filieraagricola.services.UserService;
+import it.unicam.cs.ids.filieraagricola.services.exception.ConflictException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/contents")
@@ -21,21 +30,80 @@ public class ContentsController {
     private ContentService service;
     @Autowired
     private UserService userService;
+    @Autowired
+    private NdjsonExporter exporter;
+    @Autowired
+    private ContentModerationQueue moderationQueue;
+    @Autowired
+    private ApprovedContentsCache approvedCache;
 
 
     @GetMapping("")
-    public ResponseEntity<List<Content>> findAll() {
+    public ResponseEntity<List<Content>> findAll(@RequestParam(required = false) String after,
+                                                 @RequestParam(required = false) Integer limit) {
         if (userService.hasRole(UserRole.TRANSFORMER)
                 || userService.hasRole(UserRole.DISTRIBUTOR)
                 || userService.hasRole(UserRole.CURATOR)) {
+            if (KeysetPage.requested(after, limit)) {
+                int size = KeysetPage.limit(limit);
+                return KeysetPage.ok(service.getContentPage(KeysetPage.after(after), size), size, Content::getId);
+            }
             return ResponseEntity.ok(service.getContents());
         }
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
     }
 
+    @GetMapping(value = "/stream", produces = NdjsonExporter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        if (userService.hasRole(UserRole.TRANSFORMER)
+                || userService.hasRole(UserRole.DISTRIBUTOR)
+                || userService.hasRole(UserRole.CURATOR)) {
+            return ResponseEntity.ok(exporter.export(service::streamContents));
+        }
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+    }
+
+    /**
+     * Returns the approved contents from {@link ApprovedContentsCache}: gzip compressed when
+     * the client accepts it, and {@code 304} when {@code If-None-Match} carries the current
+     * entity tag.
+     */
     @GetMapping("/approved")
-    public List<Content> findApproved() {
-        return service.getContents(ContentState.APPROVED);
+    public ResponseEntity<byte[]> findApproved(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ApprovedContentsCache.Body body = approvedCache.get();
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        HttpStatus status = body.matches(ifNoneMatch) ? HttpStatus.NOT_MODIFIED : HttpStatus.OK;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+                .eTag(gzip ? body.gzipEtag() : body.etag())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (status == HttpStatus.NOT_MODIFIED) {
+            return response.build();
+        }
+        response.contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip());
+        }
+        return response.body(body.json());
+    }
+
+    /** Returns the approved contents of a supply chain point. */
+    @GetMapping("/points/{pointId}")
+    public List<Content> findApprovedByPoint(@PathVariable String pointId) {
+        return service.getApprovedByPoints(List.of(pointId)).getOrDefault(pointId, List.of());
+    }
+
+    /**
+     * Returns the approved contents of many supply chain points in one call, keyed by
+     * point id; points without approved contents are omitted.
+     */
+    @PostMapping("/points:batch")
+    public ResponseEntity<Map<String, List<Content>>> findApprovedByPoints(@RequestBody List<String> pointIds) {
+        try {
+            return ResponseEntity.ok(service.getApprovedByPoints(pointIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
     }
 
     @GetMapping("/rejected")
@@ -58,6 +126,31 @@ public class ContentsController {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
     }
 
+    /**
+     * Leases the {@code n} oldest pending contents to the current curator for
+     * {@code visibilitySeconds}; contents not approved or rejected in time return to the
+     * queue. Concurrent curators never receive the same content.
+     */
+    @PostMapping("/queue/claim")
+    public ResponseEntity<List<ContentModerationQueue.Claim>> claim(@RequestParam(defaultValue = "10") int n,
+                                                                    @RequestParam(required = false) Long visibilitySeconds) {
+        if (!userService.hasRole(UserRole.CURATOR)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        try {
+            return ResponseEntity.ok(service.claimPending(curatorId(), n, visibilitySeconds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+    }
+
+    @GetMapping("/queue/stats")
+    public ResponseEntity<ContentModerationQueue.Stats> queueStats() {
+        if (!userService.hasRole(UserRole.CURATOR)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        return ResponseEntity.ok(moderationQueue.stats());
+    }
 
     @PostMapping("")
     public ResponseEntity<Content> create(@RequestBody CreateContentDto dto) {
@@ -75,13 +168,49 @@ public class ContentsController {
         return service.getContent(id);
     }
 
+    /** Approves a content; {@code 409} if another curator holds its lease. */
     @PatchMapping("/{id}/approve")
     public ResponseEntity<Boolean> approveContent(@PathVariable String id) {
         if (!userService.hasRole(UserRole.CURATOR)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(false);
 
         }
-        return ResponseEntity.ok(service.approve(id));
+        try {
+            return ResponseEntity.ok(service.approve(id, curatorId()));
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(false);
+        }
+    }
+
+    /** Rejects a content; {@code 409} if another curator holds its lease. */
+    @PatchMapping("/{id}/reject")
+    public ResponseEntity<Boolean> rejectContent(@PathVariable String id) {
+        if (!userService.hasRole(UserRole.CURATOR)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(false);
+        }
+        try {
+            return ResponseEntity.ok(service.reject(id, curatorId()));
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(false);
+        }
+    }
+
+    /**
+     * Approves and rejects many contents at once; the body maps {@code APPROVED} and
+     * {@code REJECTED} to lists of ids. Returns the outcome of every id; contents leased
+     * to another curator are reported as {@code LEASED} and left alone.
+     */
+    @PostMapping("/moderation:batch")
+    public ResponseEntity<Map<String, ContentService.ModerationOutcome>> moderate(
+            @RequestBody Map<ContentState, List<String>> decisions) {
+        if (!userService.hasRole(UserRole.CURATOR)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        try {
+            return ResponseEntity.ok(service.moderate(decisions, curatorId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
     }
 
     @DeleteMapping("/{id}")
@@ -89,5 +218,11 @@ public class ContentsController {
         return service.removeContent(id);
     }
 
+    /** Returns the id under which the current curator claims and decides contents. */
+    private String curatorId() {
+        User curator = userService.getCurrentUser();
+        return curator == null ? "anonymous" : curator.getId();
+    }
+
 
 }
@@ -5,11 +5,13 @@ import it.unicam.cs.ids.filieraagricola.model.Event;
 import it.unicam.cs.ids.filieraagricola.model.Participation;
 import it.unicam.cs.ids.filieraagricola.model.UserRole;
 import it.unicam.cs.ids.filieraagricola.services.EventService;
+import it.unicam.cs.ids.filieraagricola.services.NdjsonExporter;
 import it.unicam.cs.ids.filieraagricola.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -21,6 +23,8 @@ public class EventController {
 
     @Autowired
     private EventService service;
+    @Autowired
+    private NdjsonExporter exporter;
 
     @PostMapping
     public ResponseEntity<Event> organizeEvent(@RequestBody Event event) {
@@ -34,8 +38,18 @@ public class EventController {
     }
 
     @GetMapping
-    public List<Event> getEvents() {
-        return service.getEvents();
+    public ResponseEntity<List<Event>> getEvents(@RequestParam(required = false) String after,
+                                                 @RequestParam(required = false) Integer limit) {
+        if (!KeysetPage.requested(after, limit)) {
+            return ResponseEntity.ok(service.getEvents());
+        }
+        int size = KeysetPage.limit(limit);
+        return KeysetPage.ok(service.getEventPage(KeysetPage.after(after), size), size, Event::getId);
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonExporter.MEDIA_TYPE)
+    public StreamingResponseBody streamEvents() {
+        return exporter.export(service::streamEvents);
     }
 
     @GetMapping("/{id}")
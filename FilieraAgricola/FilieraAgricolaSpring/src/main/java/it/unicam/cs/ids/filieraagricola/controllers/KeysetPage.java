@@ -0,0 +1,50 @@
+package it.unicam.cs.ids.filieraagricola.controllers;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Helpers shared by the list endpoints supporting keyset pagination
+ * ({@code ?after=<last id>&limit=<n>}).
+ *
+ * <p>The id to pass as {@code after} for the next page is returned in the
+ * {@value #NEXT_HEADER} header; it is absent on the last page.</p>
+ */
+public final class KeysetPage {
+
+    public static final String NEXT_HEADER = "X-Next-After";
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private KeysetPage() {
+    }
+
+    /** Returns true if the request asked for a page rather than the full list. */
+    public static boolean requested(String after, Integer limit) {
+        return after != null || limit != null;
+    }
+
+    /** Normalizes the cursor: null means first page. */
+    public static String after(String after) {
+        return after == null ? "" : after;
+    }
+
+    /** Normalizes the page size to {@code [1, MAX_LIMIT]}, defaulting to {@link #DEFAULT_LIMIT}. */
+    public static int limit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(MAX_LIMIT, limit));
+    }
+
+    /** Wraps a page in a 200 response, adding the next cursor when the page is full. */
+    public static <T> ResponseEntity<List<T>> ok(List<T> page, int limit, Function<T, String> id) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.size() == limit) {
+            builder.header(NEXT_HEADER, id.apply(page.get(page.size() - 1)));
+        }
+        return builder.body(page);
+    }
+}
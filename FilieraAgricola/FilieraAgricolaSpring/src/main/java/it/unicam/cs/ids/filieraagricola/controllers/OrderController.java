@@ -1,35 +1,134 @@
 package it.unicam.cs.ids.filieraagricola.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import it.unicam.cs.ids.filieraagricola.controllers.dto.OrderDto;
+import it.unicam.cs.ids.filieraagricola.controllers.dto.OrderStatusDto;
 import it.unicam.cs.ids.filieraagricola.model.Order;
 import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
 import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.services.IdempotencyStore;
+import it.unicam.cs.ids.filieraagricola.services.NdjsonExporter;
+import it.unicam.cs.ids.filieraagricola.services.OrderAnalytics;
+import it.unicam.cs.ids.filieraagricola.services.OrderArchiver;
+import it.unicam.cs.ids.filieraagricola.services.OrderExporter;
+import it.unicam.cs.ids.filieraagricola.services.OrderIntake;
+import it.unicam.cs.ids.filieraagricola.services.OrderJournal;
 import it.unicam.cs.ids.filieraagricola.services.OrderService;
+import it.unicam.cs.ids.filieraagricola.services.OverdueOrderDetector;
 import it.unicam.cs.ids.filieraagricola.services.UserService;
+import it.unicam.cs.ids.filieraagricola.services.exception.ConflictException;
+import it.unicam.cs.ids.filieraagricola.services.exception.ValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/orders")
 public class OrderController {
+
+    private static final LocalDate LAST_DATE = LocalDate.of(9999, 12, 31);
+
     @Autowired
     private OrderService orderService;
     @Autowired
     private UserService userService;
+    @Autowired
+    private NdjsonExporter exporter;
+    @Autowired
+    private OrderIntake orderIntake;
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    @Autowired
+    private OrderAnalytics analytics;
+    @Autowired
+    private OverdueOrderDetector overdueDetector;
+    @Autowired
+    private OrderArchiver archiver;
+    @Autowired
+    private OrderExporter orderExporter;
+    @Autowired
+    private OrderJournal journal;
+    @Autowired
+    private ObjectMapper objectMapper;
 
 
+    /**
+     * Returns all orders, or a keyset page of them. With {@code from} and/or {@code to}
+     * (inclusive dates) the orders placed in that range are paged by order date,
+     * optionally for a single {@code sellerId}.
+     */
     @GetMapping
-    public List<Order> findAll() {
-        return orderService.findAll();
+    public ResponseEntity<List<Order>> findAll(@RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) LocalDate from,
+                                               @RequestParam(required = false) LocalDate to,
+                                               @RequestParam(required = false) String sellerId) {
+        if (from != null || to != null) {
+            int size = KeysetPage.limit(limit);
+            Timestamp start = Timestamp.valueOf((from == null ? LocalDate.EPOCH : from).atStartOfDay());
+            Timestamp end = Timestamp.valueOf((to == null ? LAST_DATE : to.plusDays(1)).atStartOfDay());
+            try {
+                return KeysetPage.ok(orderService.findByDateRange(start, end, sellerId, after, size), size, OrderService::cursorOf);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
+        }
+        if (!KeysetPage.requested(after, limit)) {
+            return ResponseEntity.ok(orderService.findAll());
+        }
+        int size = KeysetPage.limit(limit);
+        return KeysetPage.ok(orderService.findPage(KeysetPage.after(after), size), size, Order::getId);
+    }
+    @GetMapping(value = "/stream", produces = NdjsonExporter.MEDIA_TYPE)
+    public StreamingResponseBody stream() {
+        return exporter.export(orderService::streamAll, orderService::fetchItems);
+    }
+    /**
+     * Streams the orders placed in {@code [from, to]} (inclusive dates) as a gzip CSV or a
+     * columnar file download.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam LocalDate from,
+                                                        @RequestParam LocalDate to,
+                                                        @RequestParam(defaultValue = "CSV") OrderExporter.Format format) {
+        if (!userService.hasRole(UserRole.PLATFORM_MANAGER)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        if (from.isAfter(to)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+        Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + from + "_" + to + "_" + format.getFileName() + "\"")
+                .body(out -> orderExporter.export(start, end, format, out));
     }
     @GetMapping("/findByStatus/{status}")
     public List<Order> findByOrderStatus(@PathVariable OrderStatus status) {
         return orderService.findByOrderStatus(status);
     }
+    /** Returns the orders that passed their expected delivery date without being delivered. */
+    @GetMapping("/overdue")
+    public List<Order> findOverdue() {
+        return orderService.findOverdue();
+    }
+    /** Returns the number of pending and fired delivery deadlines. */
+    @GetMapping("/overdue/stats")
+    public OverdueOrderDetector.Stats getOverdueStats() {
+        return overdueDetector.stats();
+    }
     @GetMapping("/findByBuyer/{buyerId}")
     public List<Order> findByBuyer(@PathVariable String buyerId) {
         return orderService.findByBuyer(buyerId);
@@ -46,22 +145,234 @@ public class OrderController {
         Boolean done = orderService.deleteOrder(id);
         return ResponseEntity.ok(done);
     }
+    /**
+     * Creates an order; retries carrying the same {@code Idempotency-Key} get the first
+     * result instead of creating another order, and reusing the key for a different order
+     * is refused with {@code 422}. With {@code async=true} the order is only
+     * validated and queued: the response is {@code 202 Accepted} with the id to poll on
+     * {@code /orders/{id}/status}, or {@code 429} when the intake queue is full or
+     * shutting down.
+     */
     @PostMapping()
-    public ResponseEntity<Boolean> createOrder(@RequestBody OrderDto orderDto) {
+    public ResponseEntity<?> createOrder(@RequestBody byte[] body,
+                                         @RequestParam(defaultValue = "false") boolean async,
+                                         @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
         if (!(userService.hasRole(UserRole.PRODUCER)
                 || userService.hasRole(UserRole.TRANSFORMER)
                 || userService.hasRole(UserRole.DISTRIBUTOR))) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
         }
+        // the raw body is kept to recognise a key reused for another order
+        OrderDto orderDto;
+        try {
+            orderDto = objectMapper.readValue(body, OrderDto.class);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+        try {
+            if (!async) {
+                Boolean done = idempotencyStore.execute("orders", userService.getCurrentUserId(), idempotencyKey,
+                        body, Boolean.class, () -> orderService.createOrder(orderDto));
+                return ResponseEntity.ok(done);
+            }
+            if (orderDto.getBuyerId() == null || orderDto.getSellerId() == null || orderDto.getOrderItemDtoList() == null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
+            return submitOrder(orderDto, body, idempotencyKey);
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+        } catch (ValidationException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(null);
+        }
+    }
 
-        Boolean done = orderService.createOrder(orderDto);
-        return ResponseEntity.ok(done);
+    private ResponseEntity<?> submitOrder(OrderDto orderDto, byte[] body, String idempotencyKey) {
+        String id = idempotencyStore.execute("orders:async", userService.getCurrentUserId(), idempotencyKey,
+                body, String.class, () -> orderIntake.submit(orderDto));
+        if (id == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").body(null);
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/orders/" + id + "/status"))
+                .body(Map.of("id", id, "status", OrderIntake.Status.QUEUED));
+    }
+
+    /** Returns the processing status of an order submitted asynchronously. */
+    @GetMapping("/{id}/status")
+    public ResponseEntity<Map<String, Object>> getStatus(@PathVariable String id) {
+        OrderIntake.Status status = orderIntake.getStatus(id);
+        if (status == null && orderService.exists(id)) {
+            status = OrderIntake.Status.CREATED;
+        }
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.ok(Map.of("id", id, "status", status));
+    }
+
+    /**
+     * Moves an order to a new status. Concurrent updates never overwrite each other: an
+     * update with {@code version} applies only to that version, one without it is applied
+     * to the latest state. Returns {@code 409} when the transition is not allowed or the
+     * version is stale.
+     */
+    @PatchMapping("/{id}/status")
+    public ResponseEntity<Order> updateStatus(@PathVariable String id, @RequestBody OrderStatusDto statusDto) {
+        if (!(userService.hasRole(UserRole.PRODUCER)
+                || userService.hasRole(UserRole.TRANSFORMER)
+                || userService.hasRole(UserRole.DISTRIBUTOR))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        try {
+            Order order = orderService.updateStatus(id, statusDto.getStatus(), statusDto.getVersion());
+            if (order == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+            }
+            return ResponseEntity.ok(order);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+        }
+    }
+
+    /** Returns queue depth, throughput counters and micro-batch latency of the async intake. */
+    @GetMapping("/intake/stats")
+    public OrderIntake.Stats getIntakeStats() {
+        return orderIntake.stats();
+    }
+
+    /** Returns revenue, average order value and order count by status over every order. */
+    @GetMapping("/analytics")
+    public ResponseEntity<OrderAnalytics.Summary> getAnalytics() {
+        if (!userService.hasRole(UserRole.PLATFORM_MANAGER)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        return ResponseEntity.ok(analytics.getSummary());
     }
 
+    /**
+     * Returns revenue, average order value and order count by status of one seller; only
+     * the seller itself or a platform manager can read them.
+     */
+    @GetMapping("/analytics/sellers/{sellerId}")
+    public ResponseEntity<OrderAnalytics.Summary> getSellerAnalytics(@PathVariable String sellerId) {
+        if (!canReadSellerAnalytics(sellerId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        return ResponseEntity.ok(analytics.getSellerSummary(sellerId));
+    }
+
+    /**
+     * Returns the average order value of one seller per day, optionally within
+     * {@code [from, to]}; only the seller itself or a platform manager can read them.
+     */
+    @GetMapping("/analytics/sellers/{sellerId}/daily")
+    public ResponseEntity<List<OrderAnalytics.DailyAverage>> getSellerDailyAnalytics(@PathVariable String sellerId,
+                                                                                     @RequestParam(required = false) LocalDate from,
+                                                                                     @RequestParam(required = false) LocalDate to) {
+        if (!canReadSellerAnalytics(sellerId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        return ResponseEntity.ok(analytics.getSellerDailyAverages(sellerId, from, to));
+    }
+
+    /** Recomputes the analytics rollups from the database. */
+    @PostMapping("/analytics/rebuild")
+    public ResponseEntity<OrderAnalytics.Summary> rebuildAnalytics() {
+        if (!userService.hasRole(UserRole.PLATFORM_MANAGER)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        analytics.rebuild();
+        return ResponseEntity.ok(analytics.getSummary());
+    }
+
+    /** Compares the analytics rollups with the database. */
+    @GetMapping("/analytics/check")
+    public ResponseEntity<OrderAnalytics.Check> checkAnalytics() {
+        if (!userService.hasRole(UserRole.PLATFORM_MANAGER)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        return ResponseEntity.ok(analytics.check());
+    }
 
+    /**
+     * Starts moving the orders placed before {@code before} in the given statuses
+     * (delivered and cancelled by default) to the archive tables, or only deleting them
+     * with {@code purge=true}. Returns {@code 202} with the job to poll, or {@code 409}
+     * while another job runs.
+     */
+    @PostMapping("/archive")
+    public ResponseEntity<OrderArchiver.Progress> archive(@RequestParam LocalDate before,
+                                                          @RequestParam(required = false) List<OrderStatus> status,
+                                                          @RequestParam(defaultValue = "false") boolean purge) {
+        if (!userService.hasRole(UserRole.PLATFORM_MANAGER)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        EnumSet<OrderStatus> statuses = status == null || status.isEmpty()
+                ? EnumSet.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED)
+                : EnumSet.copyOf(status);
+        OrderArchiver.Progress progress = archiver.start(Timestamp.valueOf(before.atStartOfDay()), statuses, !purge);
+        if (progress == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+        }
+        return ResponseEntity.accepted().location(URI.create("/orders/archive/" + progress.id())).body(progress);
+    }
 
+    /** Returns progress and throughput of an archival job. */
+    @GetMapping("/archive/{jobId}")
+    public ResponseEntity<OrderArchiver.Progress> getArchiveProgress(@PathVariable String jobId) {
+        OrderArchiver.Progress progress = archiver.getProgress(jobId);
+        if (progress == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.ok(progress);
+    }
 
+    /** Returns every recorded change of an order, oldest first; 404 if none is recorded. */
+    @GetMapping("/{id}/history")
+    public ResponseEntity<List<OrderJournal.Event>> getHistory(@PathVariable String id) {
+        if (!userService.hasRole(UserRole.PLATFORM_MANAGER)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        List<OrderJournal.Event> history = journal.history(id);
+        if (history.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.ok(history);
+    }
 
+    /** Returns segment count and append cost of the order journal. */
+    @GetMapping("/journal/stats")
+    public OrderJournal.Stats getJournalStats() {
+        return journal.stats();
+    }
 
+    /**
+     * Recomputes the analytics rollups by replaying the order journal; {@code 409} if the
+     * journal does not cover every order of the database.
+     */
+    @PostMapping("/journal/replay")
+    public ResponseEntity<OrderAnalytics.Summary> replayJournal() {
+        if (!userService.hasRole(UserRole.PLATFORM_MANAGER)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        try {
+            analytics.rebuild(journal.replayState());
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+        }
+        return ResponseEntity.ok(analytics.getSummary());
+    }
 
+    /** Platform managers read every seller's analytics, sellers only their own. */
+    private boolean canReadSellerAnalytics(String sellerId) {
+        if (userService.hasRole(UserRole.PLATFORM_MANAGER)) {
+            return true;
+        }
+        return (userService.hasRole(UserRole.PRODUCER)
+                || userService.hasRole(UserRole.TRANSFORMER)
+                || userService.hasRole(UserRole.DISTRIBUTOR))
+                && sellerId.equals(userService.getCurrentUserId());
+    }
 }
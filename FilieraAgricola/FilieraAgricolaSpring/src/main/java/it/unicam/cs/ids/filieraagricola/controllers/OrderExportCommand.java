@@ -0,0 +1,63 @@
+package it.unicam.cs.ids.filieraagricola.controllers;
+
+import it.unicam.cs.ids.filieraagricola.services.OrderExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line order export: started with {@code --export-orders=<file>} the application
+ * writes the orders of {@code --from} to {@code --to} (inclusive dates, default the last
+ * month) in {@code --format} ({@code csv} or {@code columnar}); the application main
+ * then closes the context and exits with {@link org.springframework.boot.SpringApplication#exit}.
+ *
+ * <pre>java -jar filieraagricola.jar --export-orders=orders.csv.gz --from=2025-09-01 --to=2025-09-30</pre>
+ */
+@Component
+public class OrderExportCommand implements ApplicationRunner {
+
+    public static final String OPTION = "export-orders";
+
+    private static final Logger log = LoggerFactory.getLogger(OrderExportCommand.class);
+
+    @Autowired
+    private OrderExporter orderExporter;
+
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+        LocalDate to = LocalDate.parse(option(args, "to", LocalDate.now().toString()));
+        LocalDate from = LocalDate.parse(option(args, "from", to.minusMonths(1).plusDays(1).toString()));
+        OrderExporter.Format format = OrderExporter.Format.valueOf(option(args, "format", "csv").toUpperCase(Locale.ROOT));
+        Path file = Path.of(option(args, OPTION, format.getFileName()));
+
+        long started = System.nanoTime();
+        long rows;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024)) {
+            rows = orderExporter.export(Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.plusDays(1).atStartOfDay()), format, out);
+        }
+        double seconds = Math.max(System.nanoTime() - started, 1) / 1e9;
+        log.info("Exported {} orders to {} ({} bytes) in {} s, {} orders/s",
+                rows, file, Files.size(file), String.format(Locale.ROOT, "%.1f", seconds), Math.round(rows / seconds));
+    }
+
+    private static String option(ApplicationArguments args, String name, String fallback) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() || values.get(0).isEmpty() ? fallback : values.get(0);
+    }
+}
@@ -6,12 +6,14 @@ import it.unicam.cs.ids.filieraagricola.model.Event;
 import it.unicam.cs.ids.filieraagricola.model.Product;
 import it.unicam.cs.ids.filieraagricola.model.ProductPackage;
 import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.services.NdjsonExporter;
 import it.unicam.cs.ids.filieraagricola.services.ProductPackageService;
 import it.unicam.cs.ids.filieraagricola.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -28,10 +30,22 @@ public class ProductPackageController {
 
     @Autowired
     private ProductPackageService productPackageService;
+    @Autowired
+    private NdjsonExporter exporter;
 
     @GetMapping
-    public List<ProductPackage> findAll() {
-        return productPackageService.findAll();
+    public ResponseEntity<List<ProductPackage>> findAll(@RequestParam(required = false) String after,
+                                                        @RequestParam(required = false) Integer limit) {
+        if (!KeysetPage.requested(after, limit)) {
+            return ResponseEntity.ok(productPackageService.findAll());
+        }
+        int size = KeysetPage.limit(limit);
+        return KeysetPage.ok(productPackageService.findPage(KeysetPage.after(after), size), size, ProductPackage::getId);
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonExporter.MEDIA_TYPE)
+    public StreamingResponseBody stream() {
+        return exporter.export(productPackageService::streamAll, productPackageService::fetchProducts);
     }
 
     @GetMapping("/{id}")
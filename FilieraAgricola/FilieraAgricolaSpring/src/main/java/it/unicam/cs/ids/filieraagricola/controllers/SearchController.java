@@ -0,0 +1,56 @@
+package it.unicam.cs.ids.filieraagricola.controllers;
+
+import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.services.SearchIndex;
+import it.unicam.cs.ids.filieraagricola.services.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Full-text search over products, supply chains and approved contents.
+ */
+@RestController
+@RequestMapping("/search")
+public class SearchController {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    @Autowired
+    private SearchIndex searchIndex;
+    @Autowired
+    private UserService userService;
+
+
+    /**
+     * Returns the hits for {@code q} ranked by relevance, {@code limit} at a time
+     * starting from {@code offset}; {@code type} restricts the kind of result.
+     */
+    @GetMapping("")
+    public ResponseEntity<SearchIndex.Result> search(@RequestParam String q,
+                                                     @RequestParam(required = false) SearchIndex.Kind type,
+                                                     @RequestParam(defaultValue = "0") int offset,
+                                                     @RequestParam(defaultValue = "" + DEFAULT_LIMIT) int limit) {
+        if (q.isBlank() || offset < 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+        int size = Math.max(1, Math.min(MAX_LIMIT, limit));
+        return ResponseEntity.ok(searchIndex.search(q, type, offset, size));
+    }
+
+    @GetMapping("/stats")
+    public SearchIndex.Stats stats() {
+        return searchIndex.stats();
+    }
+
+    /** Rebuilds the index from the database. */
+    @PostMapping("/rebuild")
+    public ResponseEntity<SearchIndex.Stats> rebuild() {
+        if (userService.hasRole(UserRole.PLATFORM_MANAGER)) {
+            return ResponseEntity.ok(searchIndex.rebuild());
+        }
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+    }
+}
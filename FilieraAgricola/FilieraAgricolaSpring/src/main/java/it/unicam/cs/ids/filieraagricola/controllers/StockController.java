@@ -0,0 +1,90 @@
+package it.unicam.cs.ids.filieraagricola.controllers;
+
+import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.services.StockService;
+import it.unicam.cs.ids.filieraagricola.services.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Product stock levels and time limited reservations.
+ */
+@RestController
+@RequestMapping("/stock")
+public class StockController {
+
+    @Autowired
+    private StockService stockService;
+    @Autowired
+    private UserService userService;
+
+
+    /** Returns the stock level of a product; 404 if its stock is not tracked. */
+    @GetMapping("/{productId}")
+    public ResponseEntity<StockService.Availability> getAvailability(@PathVariable String productId) {
+        StockService.Availability availability = stockService.getAvailability(productId);
+        if (availability == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.ok(availability);
+    }
+
+    /** Sets the units on hand of a product. */
+    @PutMapping("/{productId}")
+    public ResponseEntity<StockService.Availability> setStock(@PathVariable String productId, @RequestParam int quantity) {
+        if (!(userService.hasRole(UserRole.PRODUCER)
+                || userService.hasRole(UserRole.TRANSFORMER)
+                || userService.hasRole(UserRole.DISTRIBUTOR))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        try {
+            return ResponseEntity.ok(stockService.setStock(productId, quantity));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+    }
+
+    /**
+     * Reserves units of several products, keyed by product id, for {@code ttlSeconds}
+     * (at most the configured maximum). Only buyers can reserve. Returns the reservation
+     * id to pass with the order, or 409 when some product has not enough units.
+     */
+    @PostMapping("/reservations")
+    public ResponseEntity<Map<String, String>> reserve(@RequestBody Map<String, Integer> quantities,
+                                                       @RequestParam(required = false) Long ttlSeconds) {
+        if (!userService.hasRole(UserRole.BUYER)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        try {
+            String id = stockService.reserve(quantities, ttlSeconds);
+            if (id == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+    }
+
+    /** Turns a reservation into a sale; 404 if it does not exist or expired. */
+    @PostMapping("/reservations/{id}/commit")
+    public ResponseEntity<Boolean> commit(@PathVariable String id) {
+        if (!stockService.commit(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(false);
+        }
+        return ResponseEntity.ok(true);
+    }
+
+    /** Cancels a reservation; 404 if it does not exist or expired. */
+    @DeleteMapping("/reservations/{id}")
+    public ResponseEntity<Boolean> release(@PathVariable String id) {
+        if (!stockService.release(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(false);
+        }
+        return ResponseEntity.ok(true);
+    }
+}
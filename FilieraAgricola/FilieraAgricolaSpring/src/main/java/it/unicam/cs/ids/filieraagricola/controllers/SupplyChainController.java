@@ -1,38 +1,94 @@
 package it.unicam.cs.ids.filieraagricola.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unicam.cs.ids.filieraagricola.controllers.dto.BulkImportResultDto;
 import it.unicam.cs.ids.filieraagricola.controllers.dto.CreateSupplyChainDto;
+import it.unicam.cs.ids.filieraagricola.controllers.dto.SupplyChainSummaryDto;
 import it.unicam.cs.ids.filieraagricola.model.Product;
 import it.unicam.cs.ids.filieraagricola.model.SupplyChain;
 import it.unicam.cs.ids.filieraagricola.model.SupplyChainPoint;
 import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.services.IdempotencyStore;
+import it.unicam.cs.ids.filieraagricola.services.NdjsonExporter;
+import it.unicam.cs.ids.filieraagricola.services.SupplyChainPointClusters;
 import it.unicam.cs.ids.filieraagricola.services.SupplyChainService;
 import it.unicam.cs.ids.filieraagricola.services.UserService;
+import it.unicam.cs.ids.filieraagricola.services.exception.ConflictException;
+import it.unicam.cs.ids.filieraagricola.services.exception.ValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/supplychain")
 public class SupplyChainController {
 
+    public static final int DEFAULT_POINTS_LIMIT = 1000;
+    public static final int MAX_POINTS_LIMIT = 10000;
+
     @Autowired
     UserService userService;
     @Autowired
     private SupplyChainService service;
+    @Autowired
+    private NdjsonExporter exporter;
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    @Autowired
+    private ObjectMapper objectMapper;
 
 
+    /**
+     * Adds a product to the supply chain; retries carrying the same {@code Idempotency-Key}
+     * get the first product back instead of creating a duplicate, and reusing the key for a
+     * different product is refused with {@code 422}.
+     */
     @PostMapping("/{supplyChainId}/products")
-    public ResponseEntity<Product> acquireProduct(@RequestBody Product product, @PathVariable String supplyChainId) {
+    public ResponseEntity<Product> acquireProduct(@RequestBody byte[] body, @PathVariable String supplyChainId,
+                                                  @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
         if (!userService.hasRole(UserRole.PRODUCER)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
         }
-        Product p = service.acquireProduct(product, supplyChainId);
-        return ResponseEntity.ok(p);
+        // the raw body is kept to recognise retries: the parsed product gets a random id
+        Product product;
+        try {
+            product = objectMapper.readValue(body, Product.class);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+        try {
+            Product p = idempotencyStore.execute("supplychain/" + supplyChainId + "/products", userService.getCurrentUserId(),
+                    idempotencyKey, body, Product.class, () -> service.acquireProduct(product, supplyChainId));
+            return ResponseEntity.ok(p);
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+        } catch (ValidationException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(null);
+        }
+
+    }
 
+    /**
+     * Streams newline-delimited JSON products into the supply chain, one product per line.
+     */
+    @PostMapping(value = "/{supplyChainId}/products:bulk", consumes = {"application/x-ndjson", "application/json", "text/plain"})
+    public ResponseEntity<BulkImportResultDto> bulkAcquireProducts(@PathVariable String supplyChainId, InputStream body) throws IOException {
+        if (!userService.hasRole(UserRole.PRODUCER)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        BulkImportResultDto result = service.bulkAcquireProducts(supplyChainId, body);
+        if (result == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.ok(result);
     }
 
     @DeleteMapping("/{supplyChainId}/products/{productsId}")
@@ -50,9 +106,31 @@ public class SupplyChainController {
     }
 
 
+    /**
+     * Returns all supply chains; {@code view=summary} returns only metadata and counts.
+     * With {@code after} and/or {@code limit} a single keyset page is returned instead.
+     */
     @GetMapping("")
-    public List<SupplyChain> getSupplyChainList() {
-        return service.getSupplyChainRepository();
+    public ResponseEntity<? extends List<?>> getSupplyChainList(@RequestParam(defaultValue = "full") String view,
+                                                                @RequestParam(required = false) String after,
+                                                                @RequestParam(required = false) Integer limit) {
+        boolean paged = KeysetPage.requested(after, limit);
+        int size = KeysetPage.limit(limit);
+        return switch (view) {
+            case "full" -> paged
+                    ? KeysetPage.ok(service.getSupplyChainPage(KeysetPage.after(after), size), size, SupplyChain::getId)
+                    : ResponseEntity.ok(service.getSupplyChainRepository());
+            case "summary" -> paged
+                    ? KeysetPage.ok(service.getSupplyChainSummaryPage(KeysetPage.after(after), size), size, SupplyChainSummaryDto::getId)
+                    : ResponseEntity.ok(service.getSupplyChainSummaries());
+            default -> ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        };
+    }
+
+    /** Streams every supply chain as newline-delimited JSON. */
+    @GetMapping(value = "/stream", produces = NdjsonExporter.MEDIA_TYPE)
+    public StreamingResponseBody streamSupplyChains() {
+        return exporter.export(service::streamSupplyChains, service::fetchCollections);
     }
 
     @GetMapping("/{supplyChainId}")
@@ -79,6 +157,57 @@ public class SupplyChainController {
         return service.findProductsByCategory(category);
     }
 
+    /** Returns the number of products of every category, optionally restricted to one supply chain. */
+    @GetMapping("/categories")
+    public ResponseEntity<Map<String, Integer>> getCategoryCounts(@RequestParam(required = false) String supplyChainId) {
+        if (supplyChainId == null) {
+            return ResponseEntity.ok(service.getCategoryCounts());
+        }
+        Map<String, Integer> counts = service.getCategoryCounts(supplyChainId);
+        if (counts == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.ok(counts);
+    }
+
+
+    /**
+     * Returns the points inside {@code bbox=minLat,minLng,maxLat,maxLng}, optionally
+     * restricted to one supply chain.
+     */
+    @GetMapping("/points")
+    public ResponseEntity<List<SupplyChainPoint>> findPointsInArea(@RequestParam String bbox,
+                                                                   @RequestParam(required = false) String supplyChainId,
+                                                                   @RequestParam(defaultValue = "" + DEFAULT_POINTS_LIMIT) int limit) {
+        double[] box = parseBbox(bbox);
+        if (box == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+        try {
+            return ResponseEntity.ok(service.findPointsInArea(box[0], box[1], box[2], box[3], supplyChainId,
+                    Math.min(limit, MAX_POINTS_LIMIT)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+    }
+
+    /**
+     * Returns the precomputed point clusters for the given map zoom inside
+     * {@code bbox=minLat,minLng,maxLat,maxLng}.
+     */
+    @GetMapping("/points/clusters")
+    public ResponseEntity<List<SupplyChainPointClusters.PointCluster>> findPointClusters(@RequestParam int zoom,
+                                                                                         @RequestParam String bbox) {
+        double[] box = parseBbox(bbox);
+        if (box == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+        try {
+            return ResponseEntity.ok(service.findPointClusters(zoom, box[0], box[1], box[2], box[3]));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+    }
 
     @PostMapping("/{supplyChainId}/points")
     public ResponseEntity<SupplyChainPoint> acquirePoint(@RequestBody SupplyChainPoint point, @PathVariable String supplyChainId) {
@@ -90,5 +219,20 @@ public class SupplyChainController {
 
     }
 
-
+    /** Parses {@code minLat,minLng,maxLat,maxLng}; returns null if malformed. */
+    private static double[] parseBbox(String bbox) {
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            return null;
+        }
+        double[] box = new double[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                box[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return box;
+    }
 }
@@ -4,11 +4,13 @@ import it.unicam.cs.ids.filieraagricola.controllers.dto.AuthenticateDto;
 import it.unicam.cs.ids.filieraagricola.controllers.dto.CreateUserDto;
 import it.unicam.cs.ids.filieraagricola.model.User;
 import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.services.NdjsonExporter;
 import it.unicam.cs.ids.filieraagricola.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -18,6 +20,8 @@ import java.util.List;
 public class UserController {
     @Autowired
     private UserService userService;
+    @Autowired
+    private NdjsonExporter exporter;
 
     @PostMapping
     public ResponseEntity<User> createUser(@RequestBody CreateUserDto createUserDto) {
@@ -46,12 +50,25 @@ public class UserController {
     }
 
     @GetMapping
-    public ResponseEntity<List<User>> getUsers() {
+    public ResponseEntity<List<User>> getUsers(@RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit) {
         if (!(userService.hasRole(UserRole.ANIMATOR) || userService.hasRole(UserRole.PLATFORM_MANAGER))) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new LinkedList());
         }
+        if (KeysetPage.requested(after, limit)) {
+            int size = KeysetPage.limit(limit);
+            return KeysetPage.ok(userService.getUserPage(KeysetPage.after(after), size), size, User::getId);
+        }
         List<User> u = userService.getUsers();
         return ResponseEntity.status(HttpStatus.OK).body(u);
     }
 
+    @GetMapping(value = "/stream", produces = NdjsonExporter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        if (!(userService.hasRole(UserRole.ANIMATOR) || userService.hasRole(UserRole.PLATFORM_MANAGER))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        }
+        return ResponseEntity.ok(exporter.export(userService::streamUsers));
+    }
+
 }
@@ -0,0 +1,62 @@
+package it.unicam.cs.ids.filieraagricola.controllers.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk NDJSON import: number of persisted rows and the lines that were rejected.
+ */
+public class BulkImportResultDto {
+
+    private int imported;
+
+    private List<LineError> errors = new ArrayList<>();
+
+    public int getImported() {
+        return imported;
+    }
+
+    public void setImported(int imported) {
+        this.imported = imported;
+    }
+
+    public List<LineError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<LineError> errors) {
+        this.errors = errors;
+    }
+
+    /** Rejected input line (1-based) with the reason. */
+    public static class LineError {
+
+        private long line;
+
+        private String message;
+
+        public LineError() {
+        }
+
+        public LineError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public void setLine(long line) {
+            this.line = line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
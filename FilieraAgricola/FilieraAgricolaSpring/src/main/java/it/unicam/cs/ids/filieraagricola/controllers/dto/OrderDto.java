@@ -18,6 +18,9 @@ public class OrderDto {
 
     private String deliveryMethod;
 
+    /** Optional stock reservation committed when the order is created. */
+    private String reservationId;
+
     public String getBuyerId() {
         return buyerId;
     }
@@ -73,4 +76,12 @@ public class OrderDto {
     public void setDeliveryMethod(String deliveryMethod) {
         this.deliveryMethod = deliveryMethod;
     }
+
+    public String getReservationId() {
+        return reservationId;
+    }
+
+    public void setReservationId(String reservationId) {
+        this.reservationId = reservationId;
+    }
 }
@@ -0,0 +1,28 @@
+package it.unicam.cs.ids.filieraagricola.controllers.dto;
+
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+
+public class OrderStatusDto {
+
+    private OrderStatus status;
+
+    /** Version the client last read; null applies the change to the current version. */
+    private Long version;
+
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OrderStatus status) {
+        this.status = status;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,95 @@
+package it.unicam.cs.ids.filieraagricola.controllers.dto;
+
+import java.sql.Timestamp;
+
+/**
+ * Lightweight view of a supply chain: metadata plus product and point counts,
+ * without the collections themselves.
+ */
+public class SupplyChainSummaryDto {
+
+    private String id;
+
+    private String name;
+
+    private String description;
+
+    private String territorialArea;
+
+    private Timestamp creationDate;
+
+    private long productCount;
+
+    private long pointCount;
+
+    public SupplyChainSummaryDto() {
+    }
+
+    /** Constructor used by the JPQL projection in {@code SupplyChainRepository}. */
+    public SupplyChainSummaryDto(String id, String name, String description, String territorialArea,
+                                 Timestamp creationDate, long productCount, long pointCount) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.territorialArea = territorialArea;
+        this.creationDate = creationDate;
+        this.productCount = productCount;
+        this.pointCount = pointCount;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getTerritorialArea() {
+        return territorialArea;
+    }
+
+    public void setTerritorialArea(String territorialArea) {
+        this.territorialArea = territorialArea;
+    }
+
+    public Timestamp getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(Timestamp creationDate) {
+        this.creationDate = creationDate;
+    }
+
+    public long getProductCount() {
+        return productCount;
+    }
+
+    public void setProductCount(long productCount) {
+        this.productCount = productCount;
+    }
+
+    public long getPointCount() {
+        return pointCount;
+    }
+
+    public void setPointCount(long pointCount) {
+        this.pointCount = pointCount;
+    }
+}
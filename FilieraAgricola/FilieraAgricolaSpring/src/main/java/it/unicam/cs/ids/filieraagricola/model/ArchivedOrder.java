@@ -0,0 +1,107 @@
+package it.unicam.cs.ids.filieraagricola.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.sql.Timestamp;
+
+/**
+ * Copy of an {@link Order} moved out of {@code orders} by the season-end archival.
+ *
+ * <p>Users are referenced by id only, so archived orders do not prevent deleting them.
+ * Rows are copied with set-based JDBC statements by {@code OrderArchiver}; the entity
+ * only defines the table.</p>
+ */
+@Entity
+@Table(name = "orders_archive", indexes = @Index(name = "idx_orders_archive_seller_order_date", columnList = "seller_id, order_date"))
+public class ArchivedOrder {
+
+    @Id
+    private String id;
+    @Column(name = "buyer_id")
+    private String buyerId;
+    @Column(name = "seller_id")
+    private String sellerId;
+    private double totalAmount;
+    private OrderStatus status;
+    private Timestamp orderDate;
+    private Timestamp expectedDeliveryDate;
+    private Timestamp actualDeliveryDate;
+    private String deliveryAddress;
+    private String paymentMethod;
+    private String notes;
+    private String deliveryMethod;
+    private boolean overdue;
+    private long version;
+
+    /** Time the order was archived. */
+    @Column(name = "archived_at", nullable = false)
+    private Timestamp archivedAt;
+
+    /** Default constructor required by JPA. */
+    public ArchivedOrder() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getBuyerId() {
+        return buyerId;
+    }
+
+    public String getSellerId() {
+        return sellerId;
+    }
+
+    public double getTotalAmount() {
+        return totalAmount;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public Timestamp getOrderDate() {
+        return orderDate;
+    }
+
+    public Timestamp getExpectedDeliveryDate() {
+        return expectedDeliveryDate;
+    }
+
+    public Timestamp getActualDeliveryDate() {
+        return actualDeliveryDate;
+    }
+
+    public String getDeliveryAddress() {
+        return deliveryAddress;
+    }
+
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public String getDeliveryMethod() {
+        return deliveryMethod;
+    }
+
+    public boolean isOverdue() {
+        return overdue;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Timestamp getArchivedAt() {
+        return archivedAt;
+    }
+}
@@ -0,0 +1,51 @@
+package it.unicam.cs.ids.filieraagricola.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Copy of an {@link OrderItem} archived together with its order.
+ *
+ * <p>Rows are copied with set-based JDBC statements by {@code OrderArchiver}; the entity
+ * only defines the table.</p>
+ */
+@Entity
+@Table(name = "order_item_archive", indexes = @Index(name = "idx_order_item_archive_order_id", columnList = "order_id"))
+public class ArchivedOrderItem {
+
+    @Id
+    private String id;
+    @Column(name = "order_id", nullable = false)
+    private String orderId;
+    @Column(name = "product_id")
+    private String productId;
+    private int quantity;
+    private String notes;
+
+    /** Default constructor required by JPA. */
+    public ArchivedOrderItem() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+}
@@ -2,8 +2,11 @@ package it.unicam.cs.ids.filieraagricola.model;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 
+import java.sql.Timestamp;
 import java.util.Objects;
 import java.util.UUID; // Added import for UUID
 
@@ -20,6 +23,7 @@ import java.util.UUID; // Added import for UUID
  * creation of new content instances by cloning existing ones.</p>
  */
 @Entity
+@Table(indexes = @Index(name = "idx_content_point_state", columnList = "point_id, state"))
 public class Content  {
     /**
      * Unique identifier for the content. Automatically generated if not provided.
@@ -48,6 +52,11 @@ public class Content  {
     @ManyToOne
     private SupplyChainPoint point;
 
+    /**
+     * Creation time, used to moderate the oldest contents first
+     */
+    private Timestamp createdAt;
+
     /**
      * Default constructor for prototype pattern.
      * Creates a new Content instance with a generated ID and PENDING state.
@@ -57,6 +66,7 @@ public class Content  {
     public Content() {
         this.id = UUID.randomUUID().toString(); // Automatically generate ID
         this.state = ContentState.PENDING;
+        this.createdAt = new Timestamp(System.currentTimeMillis());
     }
 
     /**
@@ -75,6 +85,7 @@ public class Content  {
         this.name = name;
         this.description = description;
         this.state = state;
+        this.createdAt = new Timestamp(System.currentTimeMillis());
         validate();
         normalize();
     }
@@ -95,6 +106,7 @@ public class Content  {
         this.name = other.name;
         this.description = other.description;
         this.state = other.state;
+        this.createdAt = other.createdAt;
     }
 
     /**
@@ -286,6 +298,15 @@ public class Content  {
         return Objects.equals(id, content.id);
     }
 
+    /**
+     * Returns the creation time of this content.
+     *
+     * @return the creation time, null for contents created before it was recorded
+     */
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
     public ContentType getType() {
         return type;
     }
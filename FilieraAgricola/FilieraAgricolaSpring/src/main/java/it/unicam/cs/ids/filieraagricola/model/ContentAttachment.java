@@ -0,0 +1,126 @@
+package it.unicam.cs.ids.filieraagricola.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.sql.Timestamp;
+
+/**
+ * File attached to a {@link Content}, such as a certification PDF or a photo.
+ *
+ * <p>The bytes live in the content-addressed file store under their SHA-256, so
+ * attachments with identical bytes share one file; this row only keeps the name shown
+ * to users and the media type.</p>
+ */
+@Entity
+@Table(name = "content_attachment", indexes = {
+        @Index(name = "idx_content_attachment_content_id", columnList = "content_id"),
+        @Index(name = "idx_content_attachment_sha256", columnList = "sha256")
+})
+public class ContentAttachment {
+
+    /** Attachment id. */
+    @Id
+    private String id;
+
+    /** Content the file is attached to. */
+    @Column(name = "content_id", nullable = false)
+    private String contentId;
+
+    /** Hex SHA-256 of the bytes, which is also the key of the stored file. */
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    /** File name given by the uploader. */
+    @Column(name = "file_name")
+    private String fileName;
+
+    /** Media type given by the uploader. */
+    @Column(name = "media_type")
+    private String mediaType;
+
+    /** Size in bytes. */
+    @Column(nullable = false)
+    private long size;
+
+    /** Upload time. */
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt;
+
+    /** Default constructor required by JPA. */
+    public ContentAttachment() {
+    }
+
+    /** Returns the attachment id. */
+    public String getId() {
+        return id;
+    }
+
+    /** Sets the attachment id. */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /** Returns the id of the content the file is attached to. */
+    public String getContentId() {
+        return contentId;
+    }
+
+    /** Sets the id of the content the file is attached to. */
+    public void setContentId(String contentId) {
+        this.contentId = contentId;
+    }
+
+    /** Returns the hex SHA-256 of the bytes. */
+    public String getSha256() {
+        return sha256;
+    }
+
+    /** Sets the hex SHA-256 of the bytes. */
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    /** Returns the file name given by the uploader. */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /** Sets the file name. */
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /** Returns the media type. */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /** Sets the media type. */
+    public void setMediaType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /** Returns the size in bytes. */
+    public long getSize() {
+        return size;
+    }
+
+    /** Sets the size in bytes. */
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /** Returns the upload time. */
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    /** Sets the upload time. */
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,112 @@
+package it.unicam.cs.ids.filieraagricola.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.sql.Timestamp;
+
+/**
+ * Result of a request sent with an {@code Idempotency-Key} header, shared between
+ * application nodes.
+ *
+ * <p>The row is inserted when a node starts processing the request (claiming the key)
+ * and {@code response} is filled with the JSON result once done. While the request runs
+ * the owner renews {@code heartbeat_at}; other nodes take over claims it stops renewing. Rows are written and
+ * read with plain JDBC by {@code IdempotencyStore}; the entity only defines the table.</p>
+ */
+@Entity
+@Table(name = "idempotency_key", indexes = @Index(name = "idx_idempotency_created_at", columnList = "created_at"))
+public class IdempotencyRecord {
+
+    /** Hex SHA-256 of the request scope, caller and client supplied key. */
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    /** Hex SHA-256 of the request body the key was first used with. */
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    /** JSON encoded result; null while the request is in progress. */
+    @Column(length = 65535)
+    private String response;
+
+    /** Claim time, used for expiry. */
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt;
+
+    /** Last time the owner renewed its claim; a claim not renewed within the lease is stale. */
+    @Column(name = "heartbeat_at")
+    private Timestamp heartbeatAt;
+
+    /** Random token of the claim, so only its owner writes the result. */
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    /** Default constructor required by JPA. */
+    public IdempotencyRecord() {
+    }
+
+    /** Returns the hashed scoped key. */
+    public String getId() {
+        return id;
+    }
+
+    /** Sets the hashed scoped key. */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /** Returns the hash of the request body. */
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    /** Sets the hash of the request body. */
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    /** Returns the JSON encoded result, or null while in progress. */
+    public String getResponse() {
+        return response;
+    }
+
+    /** Sets the JSON encoded result. */
+    public void setResponse(String response) {
+        this.response = response;
+    }
+
+    /** Returns the claim time. */
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    /** Sets the claim time. */
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /** Returns the last renewal of the claim. */
+    public Timestamp getHeartbeatAt() {
+        return heartbeatAt;
+    }
+
+    /** Sets the last renewal of the claim. */
+    public void setHeartbeatAt(Timestamp heartbeatAt) {
+        this.heartbeatAt = heartbeatAt;
+    }
+
+    /** Returns the token of the claim. */
+    public String getClaimToken() {
+        return claimToken;
+    }
+
+    /** Sets the token of the claim. */
+    public void setClaimToken(String claimToken) {
+        this.claimToken = claimToken;
+    }
+}
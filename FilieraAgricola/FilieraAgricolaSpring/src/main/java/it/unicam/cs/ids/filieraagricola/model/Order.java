@@ -26,7 +26,10 @@ import java.util.UUID;
  * to {@link User} in this project. Orders are created and persisted via {@code OrderService}.</p>
  */
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_seller_order_date", columnList = "seller_id, order_date, id"),
+        @Index(name = "idx_orders_order_date", columnList = "order_date, id")
+})
 public class Order  {
 
     /**
@@ -51,6 +54,9 @@ public class Order  {
      * Items that compose the order. Each item contains product reference and quantity.
      */
     @OneToMany
+    @JoinTable(name = "orders_order_items",
+            joinColumns = @JoinColumn(name = "order_id"),
+            inverseJoinColumns = @JoinColumn(name = "order_items_id"))
     private List<OrderItem> orderItems;
 
     /**
@@ -100,6 +106,17 @@ public class Order  {
      */
     private String deliveryMethod;
 
+    /**
+     * True once the expected delivery date passed before the order was delivered.
+     */
+    private boolean overdue;
+
+    /**
+     * Optimistic lock version, incremented by every status change.
+     */
+    @Version
+    private long version;
+
     /**
      * Default constructor for JPA and service usage.
      * Generates a UUID when required by the service layer.
@@ -248,6 +265,22 @@ public class Order  {
         this.deliveryMethod = deliveryMethod;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isOverdue() {
+        return overdue;
+    }
+
+    public void setOverdue(boolean overdue) {
+        this.overdue = overdue;
+    }
+
     /**
      * Returns a concise textual representation including key fields.
      * Intended for diagnostics and logging only.
@@ -268,6 +301,8 @@ public class Order  {
                 ", paymentMethod='" + paymentMethod + '\'' +
                 ", notes='" + notes + '\'' +
                 ", deliveryMethod='" + deliveryMethod + '\'' +
+                ", overdue=" + overdue +
+                ", version=" + version +
                 '}';
     }
 }
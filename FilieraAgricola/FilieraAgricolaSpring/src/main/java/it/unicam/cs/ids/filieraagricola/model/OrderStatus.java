@@ -6,6 +6,9 @@ package it.unicam.cs.ids.filieraagricola.model;
  * <p>Typical progression: <code>PENDING</code> → <code>CONFIRMED</code> →
  * <code>PROCESSING</code> → <code>SHIPPED</code> → <code>DELIVERED</code>.
  * Cancellation can occur from earlier states.</p>
+ *
+ * <p>{@link #canTransitionTo(OrderStatus)} encodes the allowed moves; delivered and
+ * cancelled orders are final.</p>
  */
 public enum OrderStatus {
     PENDING,
@@ -13,5 +16,16 @@ public enum OrderStatus {
     PROCESSING,
     SHIPPED,
     DELIVERED,
-    CANCELLED
+    CANCELLED;
+
+    /** Returns true if an order may move from this status to {@code next}. */
+    public boolean canTransitionTo(OrderStatus next) {
+        return switch (this) {
+            case PENDING -> next == CONFIRMED || next == CANCELLED;
+            case CONFIRMED -> next == PROCESSING || next == SHIPPED || next == CANCELLED;
+            case PROCESSING -> next == SHIPPED || next == CANCELLED;
+            case SHIPPED -> next == DELIVERED;
+            case DELIVERED, CANCELLED -> false;
+        };
+    }
 }
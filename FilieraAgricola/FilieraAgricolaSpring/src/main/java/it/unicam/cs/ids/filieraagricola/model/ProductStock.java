@@ -0,0 +1,66 @@
+package it.unicam.cs.ids.filieraagricola.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Stock level of a {@link Product}.
+ *
+ * <p>{@code onHand} counts the units not sold yet, {@code reserved} the part of them held
+ * by pending reservations; a product without a row has untracked, unlimited stock. Rows
+ * are written and read with plain JDBC by {@code StockService}, which keeps the live
+ * counters in memory; the entity only defines the table.</p>
+ */
+@Entity
+@Table(name = "product_stock")
+public class ProductStock {
+
+    /** Id of the product. */
+    @Id
+    @Column(name = "product_id")
+    private String productId;
+
+    /** Units not sold yet. */
+    @Column(name = "on_hand", nullable = false)
+    private int onHand;
+
+    /** Units held by pending reservations. */
+    @Column(nullable = false)
+    private int reserved;
+
+    /** Default constructor required by JPA. */
+    public ProductStock() {
+    }
+
+    /** Returns the product id. */
+    public String getProductId() {
+        return productId;
+    }
+
+    /** Sets the product id. */
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    /** Returns the units not sold yet. */
+    public int getOnHand() {
+        return onHand;
+    }
+
+    /** Sets the units not sold yet. */
+    public void setOnHand(int onHand) {
+        this.onHand = onHand;
+    }
+
+    /** Returns the reserved units. */
+    public int getReserved() {
+        return reserved;
+    }
+
+    /** Sets the reserved units. */
+    public void setReserved(int reserved) {
+        this.reserved = reserved;
+    }
+}
@@ -0,0 +1,95 @@
+package it.unicam.cs.ids.filieraagricola.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.sql.Timestamp;
+
+/**
+ * One line of a stock reservation: {@code quantity} units of a product held until
+ * {@code expiresAt}, when they return available unless the reservation was committed.
+ *
+ * <p>Rows are written and read with plain JDBC by {@code StockService}; the entity only
+ * defines the table.</p>
+ */
+@Entity
+@Table(name = "stock_reservation", indexes = @Index(name = "idx_stock_reservation_reservation_id", columnList = "reservation_id"))
+public class StockReservation {
+
+    /** Row id. */
+    @Id
+    private String id;
+
+    /** Reservation the line belongs to. */
+    @Column(name = "reservation_id", nullable = false)
+    private String reservationId;
+
+    /** Reserved product. */
+    @Column(name = "product_id", nullable = false)
+    private String productId;
+
+    /** Reserved units. */
+    @Column(nullable = false)
+    private int quantity;
+
+    /** Time the reservation lapses. */
+    @Column(name = "expires_at", nullable = false)
+    private Timestamp expiresAt;
+
+    /** Default constructor required by JPA. */
+    public StockReservation() {
+    }
+
+    /** Returns the row id. */
+    public String getId() {
+        return id;
+    }
+
+    /** Sets the row id. */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /** Returns the reservation id. */
+    public String getReservationId() {
+        return reservationId;
+    }
+
+    /** Sets the reservation id. */
+    public void setReservationId(String reservationId) {
+        this.reservationId = reservationId;
+    }
+
+    /** Returns the reserved product id. */
+    public String getProductId() {
+        return productId;
+    }
+
+    /** Sets the reserved product id. */
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    /** Returns the reserved units. */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /** Sets the reserved units. */
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    /** Returns the expiry time. */
+    public Timestamp getExpiresAt() {
+        return expiresAt;
+    }
+
+    /** Sets the expiry time. */
+    public void setExpiresAt(Timestamp expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
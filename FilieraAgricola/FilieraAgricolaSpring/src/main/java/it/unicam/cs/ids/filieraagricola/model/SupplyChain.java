@@ -22,11 +22,21 @@ public class SupplyChain  {
     private String id;
     private String name;
     private String description;
+    /**
+     * Mapped on an explicit join table because single rows are appended and removed
+     * with native statements by the service layer (see {@code SupplyChainRepository}).
+     */
     @OneToMany
+    @JoinTable(name = "supply_chain_products",
+            joinColumns = @JoinColumn(name = "supply_chain_id"),
+            inverseJoinColumns = @JoinColumn(name = "products_id"))
     private List<Product> products;
     private Timestamp creationDate;
     private String territorialArea;
     @OneToMany
+    @JoinTable(name = "supply_chain_points",
+            joinColumns = @JoinColumn(name = "supply_chain_id"),
+            inverseJoinColumns = @JoinColumn(name = "points_id"))
     private List<SupplyChainPoint> points;
 
 
@@ -0,0 +1,14 @@
+package it.unicam.cs.ids.filieraagricola.model.repositories;
+
+import it.unicam.cs.ids.filieraagricola.model.ContentAttachment;
+import org.springframework.data.repository.ListCrudRepository;
+
+import java.util.List;
+
+public interface ContentAttachmentRepository extends ListCrudRepository<ContentAttachment, String> {
+
+    List<ContentAttachment> findByContentIdOrderByCreatedAtAsc(String contentId);
+
+    long countBySha256(String sha256);
+
+}
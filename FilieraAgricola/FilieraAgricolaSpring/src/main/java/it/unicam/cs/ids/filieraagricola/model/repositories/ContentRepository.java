@@ -2,14 +2,38 @@ package it.unicam.cs.ids.filieraagricola.model.repositories;
 
 import it.unicam.cs.ids.filieraagricola.model.Content;
 import it.unicam.cs.ids.filieraagricola.model.ContentState;
-import org.springframework.data.repository.ListCrudRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface ContentRepository extends ListCrudRepository<Content, String> {
+public interface ContentRepository extends KeysetRepository<Content> {
 
     List<Content> findByState(ContentState state);
 
+    /** Streams every content ordered by id, with its point joined in the same query. */
+    @Override
+    @EntityGraph(attributePaths = "point")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<Content> streamAllByOrderByIdAsc();
 
+    /** Returns {@code [contentId, pointId]} for every content in the given state linked to a point. */
+    @Query("select c.id, c.point.id from Content c where c.state = :state and c.point is not null")
+    List<Object[]> findIdAndPointIdByState(ContentState state);
+
+    /** Loads the given contents and their points with one query. */
+    @Query("select c from Content c left join fetch c.point where c.id in :ids")
+    List<Content> findWithPointByIdIn(Collection<String> ids);
+
+    /** Sets the state of every given content with one statement; must run in a transaction. */
+    @Modifying(clearAutomatically = true)
+    @Query("update Content c set c.state = :state where c.id in :ids")
+    int updateState(Collection<String> ids, ContentState state);
 
 }
@@ -1,8 +1,7 @@
 package it.unicam.cs.ids.filieraagricola.model.repositories;
 
 import it.unicam.cs.ids.filieraagricola.model.Event;
-import org.springframework.data.repository.ListCrudRepository;
 
-public interface EventRepository extends ListCrudRepository<Event, String> {
+public interface EventRepository extends KeysetRepository<Event> {
 
 }
\ No newline at end of file
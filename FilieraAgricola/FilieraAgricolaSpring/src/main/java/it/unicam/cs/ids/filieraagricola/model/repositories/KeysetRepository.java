@@ -0,0 +1,37 @@
+package it.unicam.cs.ids.filieraagricola.model.repositories;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Base repository for entities with a {@code String id}, adding keyset pagination
+ * and cursor-backed streaming on top of {@link ListCrudRepository}.
+ *
+ * @param <T> entity type
+ */
+@NoRepositoryBean
+public interface KeysetRepository<T> extends ListCrudRepository<T, String> {
+
+    /** Rows fetched per round trip when streaming. */
+    String STREAM_FETCH_SIZE = "500";
+
+    /**
+     * Returns the next page of entities ordered by id, starting strictly after {@code after}
+     * (use the empty string for the first page).
+     */
+    List<T> findByIdGreaterThanOrderByIdAsc(String after, Limit limit);
+
+    /**
+     * Streams every entity ordered by id from a database cursor. Must be consumed inside
+     * a transaction and closed afterwards.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<T> streamAllByOrderByIdAsc();
+}
@@ -3,16 +3,87 @@ package it.unicam.cs.ids.filieraagricola.model.repositories;
 import it.unicam.cs.ids.filieraagricola.model.Order;
 import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
 import it.unicam.cs.ids.filieraagricola.model.User;
-import org.springframework.data.repository.ListCrudRepository;
-
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface OrderRepository extends ListCrudRepository<Order, String> {
+public interface OrderRepository extends KeysetRepository<Order> {
 
+    /** Status and version of an order, read without loading the entity. */
+    interface StatusVersion {
+        OrderStatus getStatus();
+        long getVersion();
+    }
 
     List<Order> findBySeller(User seller);
     List<Order> findByBuyer(User buyer);
     List<Order> findByStatus(OrderStatus status);
+    List<Order> findByOverdueTrue();
+
+    /** Streams every order ordered by id, with buyer and seller joined in the same query. */
+    @Override
+    @EntityGraph(attributePaths = {"buyer", "seller"})
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<Order> streamAllByOrderByIdAsc();
+
+    /** Initializes the items of already loaded orders, and their products, with one query. */
+    @Query("select distinct o from Order o left join fetch o.orderItems i left join fetch i.product where o in :orders")
+    List<Order> fetchItems(Collection<Order> orders);
+
+    /** Returns the orders placed before {@code to} that follow the ({@code afterDate}, {@code afterId}) cursor. */
+    @Query("select o from Order o where o.orderDate < :to "
+            + "and (o.orderDate > :afterDate or (o.orderDate = :afterDate and o.id > :afterId)) "
+            + "order by o.orderDate, o.id")
+    List<Order> findDatePage(Timestamp afterDate, String afterId, Timestamp to, Limit limit);
+
+    /** Same as {@link #findDatePage} restricted to one seller; served by the (seller, orderDate) index. */
+    @Query("select o from Order o where o.seller.id = :sellerId and o.orderDate < :to "
+            + "and (o.orderDate > :afterDate or (o.orderDate = :afterDate and o.id > :afterId)) "
+            + "order by o.orderDate, o.id")
+    List<Order> findSellerDatePage(String sellerId, Timestamp afterDate, String afterId, Timestamp to, Limit limit);
+
+    /**
+     * Returns which of the given orders are neither flagged overdue nor in one of the
+     * {@code closed} statuses, locking their rows until the transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o.id from Order o where o.id in :ids and o.overdue = false and o.status not in :closed")
+    List<String> lockOverdueCandidates(Collection<String> ids, Collection<OrderStatus> closed);
+
+    /** Flags the given orders as overdue, skipping those already in one of the {@code closed} statuses. */
+    @Modifying
+    @Transactional
+    @Query("update Order o set o.overdue = true where o.id in :ids and o.status not in :closed")
+    int markOverdue(Collection<String> ids, Collection<OrderStatus> closed);
+
+    @Query("select o.status as status, o.version as version from Order o where o.id = :id")
+    Optional<StatusVersion> findStatusVersion(String id);
+
+    /**
+     * Moves an order from {@code from} to {@code to} only if it is still at {@code version},
+     * incrementing the version; a non null {@code deliveredAt} becomes the actual delivery date.
+     *
+     * @return 1 if the order was updated, 0 if another update came first
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Order o set o.status = :to, o.version = o.version + 1, "
+            + "o.actualDeliveryDate = coalesce(:deliveredAt, o.actualDeliveryDate) "
+            + "where o.id = :id and o.version = :version and o.status = :from")
+    int compareAndSetStatus(String id, long version, OrderStatus from, OrderStatus to, Timestamp deliveredAt);
 
 
 
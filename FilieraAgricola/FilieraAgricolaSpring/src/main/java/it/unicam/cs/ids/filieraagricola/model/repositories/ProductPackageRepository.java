@@ -1,7 +1,14 @@
 package it.unicam.cs.ids.filieraagricola.model.repositories;
 
 import it.unicam.cs.ids.filieraagricola.model.ProductPackage;
-import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.jpa.repository.Query;
 
-public interface ProductPackageRepository extends ListCrudRepository<ProductPackage, String> {
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductPackageRepository extends KeysetRepository<ProductPackage> {
+
+    /** Initializes the products of already loaded packages with one query. */
+    @Query("select pp from ProductPackage pp left join fetch pp.products where pp in :packages")
+    List<ProductPackage> fetchProducts(Collection<ProductPackage> packages);
 }
@@ -1,14 +1,89 @@
 package it.unicam.cs.ids.filieraagricola.model.repositories;
 
+import it.unicam.cs.ids.filieraagricola.controllers.dto.SupplyChainSummaryDto;
 import it.unicam.cs.ids.filieraagricola.model.Product;
 import it.unicam.cs.ids.filieraagricola.model.SupplyChain;
-import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface SupplyChainRepository extends ListCrudRepository<SupplyChain, String> {
+public interface SupplyChainRepository extends KeysetRepository<SupplyChain> {
 
+    @EntityGraph(attributePaths = "products")
     public List<SupplyChain> findByName(String name);
 
+    /** Returns every supply chain with its products fetched in the same query. */
+    @EntityGraph(attributePaths = "products")
+    @Query("select sc from SupplyChain sc")
+    public List<SupplyChain> findAllWithProducts();
 
+    /** Returns one supply chain with its products fetched in the same query. */
+    @EntityGraph(attributePaths = "products")
+    @Query("select sc from SupplyChain sc where sc.id = :id")
+    public Optional<SupplyChain> findWithProductsById(String id);
+
+    /** Returns the ids of the next keyset page of supply chains. */
+    @Query("select sc.id from SupplyChain sc where sc.id > :after order by sc.id")
+    public List<String> findIdPage(String after, Limit limit);
+
+    /** Returns the given supply chains ordered by id, with their products fetched in the same query. */
+    @EntityGraph(attributePaths = "products")
+    @Query("select sc from SupplyChain sc where sc.id in :ids order by sc.id")
+    public List<SupplyChain> findAllWithProductsByIdIn(Collection<String> ids);
+
+    /**
+     * Initializes the points of already loaded supply chains with one query.
+     * Kept separate from the products fetch because two bag collections cannot be
+     * join-fetched together.
+     */
+    @Query("select sc from SupplyChain sc left join fetch sc.points where sc in :supplyChains")
+    public List<SupplyChain> fetchPoints(Collection<SupplyChain> supplyChains);
+
+    /** Initializes the products of already loaded supply chains with one query. */
+    @Query("select sc from SupplyChain sc left join fetch sc.products where sc in :supplyChains")
+    public List<SupplyChain> fetchProducts(Collection<SupplyChain> supplyChains);
+
+    /** Returns metadata and collection sizes of every supply chain in one query. */
+    @Query("select new it.unicam.cs.ids.filieraagricola.controllers.dto.SupplyChainSummaryDto("
+            + "sc.id, sc.name, sc.description, sc.territorialArea, sc.creationDate, size(sc.products), size(sc.points)) "
+            + "from SupplyChain sc")
+    public List<SupplyChainSummaryDto> findAllSummaries();
+
+    /** Returns the next keyset page of supply chain summaries. */
+    @Query("select new it.unicam.cs.ids.filieraagricola.controllers.dto.SupplyChainSummaryDto("
+            + "sc.id, sc.name, sc.description, sc.territorialArea, sc.creationDate, size(sc.products), size(sc.points)) "
+            + "from SupplyChain sc where sc.id > :after order by sc.id")
+    public List<SupplyChainSummaryDto> findSummaryPage(String after, Limit limit);
+
+    /** Returns the products of one supply chain without loading the chain. */
+    @Query("select p from SupplyChain sc join sc.products p where sc.id = :supplyChainId")
+    public List<Product> findProductsBySupplyChainId(String supplyChainId);
+
+    /** Returns every linked point as {@code [supplyChainId, SupplyChainPoint]} pairs. */
+    @Query("select sc.id, p from SupplyChain sc join sc.points p")
+    public List<Object[]> findAllPointsWithSupplyChainId();
+
+    /** Returns every (supply chain id, product id) pair. */
+    @Query("select sc.id, p.id from SupplyChain sc join sc.products p")
+    public List<Object[]> findAllProductIdsWithSupplyChainId();
+
+    /** Appends one product to a supply chain by inserting its join row only. */
+    @Modifying
+    @Query(value = "insert into supply_chain_products (supply_chain_id, products_id) values (:supplyChainId, :productId)", nativeQuery = true)
+    public void addProduct(String supplyChainId, String productId);
+
+    /** Detaches one product from a supply chain by deleting its join row only. */
+    @Modifying
+    @Query(value = "delete from supply_chain_products where supply_chain_id = :supplyChainId and products_id = :productId", nativeQuery = true)
+    public int removeProduct(String supplyChainId, String productId);
+
+    /** Appends one point to a supply chain by inserting its join row only. */
+    @Modifying
+    @Query(value = "insert into supply_chain_points (supply_chain_id, points_id) values (:supplyChainId, :pointId)", nativeQuery = true)
+    public void addPoint(String supplyChainId, String pointId);
 }
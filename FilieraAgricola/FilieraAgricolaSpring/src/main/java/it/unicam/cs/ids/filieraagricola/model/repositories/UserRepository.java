@@ -1,11 +1,10 @@
 package it.unicam.cs.ids.filieraagricola.model.repositories;
 
 import it.unicam.cs.ids.filieraagricola.model.User;
-import org.springframework.data.repository.ListCrudRepository;
 
 import java.util.Optional;
 
-public interface UserRepository extends ListCrudRepository<User, String> {
+public interface UserRepository extends KeysetRepository<User> {
 
 
     Optional<User> findByEmailAndPassword(String email, String password);
@@ -0,0 +1,156 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unicam.cs.ids.filieraagricola.model.Content;
+import it.unicam.cs.ids.filieraagricola.model.ContentState;
+import it.unicam.cs.ids.filieraagricola.model.repositories.ContentRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-serialized response of {@code GET /contents/approved}.
+ *
+ * <p>Every approved content is kept serialized on its own, by id; {@link ContentService}
+ * replaces or drops one entry when a content is approved, rejected or deleted, so no
+ * entity is loaded or serialized again for the others. The first read after a change
+ * concatenates the entries into a JSON array and compresses it with gzip once; until
+ * the next change every read returns the same {@link Body} without any work. Each body
+ * carries a strong ETag derived from its SHA-256, one per encoding.</p>
+ */
+@Component
+public class ApprovedContentsCache {
+
+    @Autowired
+    private ContentRepository contents;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, byte[]> entries = new TreeMap<>();
+    private volatile Body body;
+
+    /**
+     * Serialized list of approved contents.
+     *
+     * @param json     JSON array
+     * @param gzip     the same array, gzip compressed
+     * @param etag     strong entity tag of {@code json}, quoted
+     * @param gzipEtag strong entity tag of {@code gzip}, quoted
+     * @param count    number of contents
+     */
+    public record Body(byte[] json, byte[] gzip, String etag, String gzipEtag, int count) {
+
+        /** Returns true if an {@code If-None-Match} header value matches either entity tag. */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String trimmed = tag.trim();
+                if (trimmed.startsWith("W/")) {
+                    trimmed = trimmed.substring(2);
+                }
+                if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals(gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Reloads every approved content from the database. */
+    @PostConstruct
+    public synchronized void rebuild() {
+        entries.clear();
+        contents.findByState(ContentState.APPROVED).forEach(c -> entries.put(c.getId(), serialize(c)));
+        body = null;
+    }
+
+    /** Adds or replaces a content if approved, otherwise removes it. */
+    public synchronized void update(Content content) {
+        if (content.getState() == ContentState.APPROVED) {
+            entries.put(content.getId(), serialize(content));
+        } else {
+            entries.remove(content.getId());
+        }
+        body = null;
+    }
+
+    /** Removes a content; unknown ids are ignored. */
+    public synchronized void remove(String contentId) {
+        if (entries.remove(contentId) != null) {
+            body = null;
+        }
+    }
+
+    /** Returns the current body, building it if a content changed since the last call. */
+    public Body get() {
+        Body current = body;
+        return current != null ? current : build();
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private synchronized Body build() {
+        if (body != null) {
+            return body;
+        }
+        int size = 2 + Math.max(entries.size() - 1, 0);
+        for (byte[] entry : entries.values()) {
+            size += entry.length;
+        }
+        byte[] json = new byte[size];
+        json[0] = '[';
+        int position = 1;
+        for (byte[] entry : entries.values()) {
+            if (position > 1) {
+                json[position++] = ',';
+            }
+            System.arraycopy(entry, 0, json, position, entry.length);
+            position += entry.length;
+        }
+        json[position] = ']';
+        byte[] gzip = gzip(json);
+        body = new Body(json, gzip, etag(json), etag(gzip), entries.size());
+        return body;
+    }
+
+    private byte[] serialize(Content content) {
+        try {
+            return objectMapper.writeValueAsBytes(content);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize content " + content.getId(), e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String etag(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            return '"' + HexFormat.of().formatHex(Arrays.copyOf(digest, 16)) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
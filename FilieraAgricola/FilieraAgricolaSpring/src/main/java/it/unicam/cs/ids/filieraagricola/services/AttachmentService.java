@@ -0,0 +1,280 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.ContentAttachment;
+import it.unicam.cs.ids.filieraagricola.model.repositories.ContentAttachmentRepository;
+import it.unicam.cs.ids.filieraagricola.model.repositories.ContentRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Files attached to contents, kept in a content-addressed store on the local disk.
+ *
+ * <p>An upload is copied {@link #BUFFER_SIZE} bytes at a time to a temporary file while
+ * its SHA-256 is computed, so files of any size never sit in the heap; the file is then
+ * moved to {@code <dir>/<2 hex>/<2 hex>/<sha256>}, or dropped if the same bytes are
+ * already stored. Attachments only reference the hash and a file is deleted with the
+ * last attachment referencing it; both steps run under a lock stripe of the hash, so a
+ * file is never deleted while a new attachment starts using it.</p>
+ *
+ * <p>{@link #transfer} sends a byte range with {@link FileChannel#transferTo}, which
+ * lets the kernel copy from the page cache to the socket without passing through the
+ * JVM when the target is a socket channel.</p>
+ */
+@Service
+public class AttachmentService {
+
+    /** Bytes copied per read while storing an upload. */
+    public static final int BUFFER_SIZE = 64 * 1024;
+    /** Number of lock stripes over file hashes. */
+    public static final int STRIPES = 64;
+
+    @Value("${attachments.dir:attachments}")
+    private String directory;
+    @Value("${attachments.max-bytes:104857600}")
+    private long maxBytes;
+
+    @Autowired
+    private ContentAttachmentRepository attachments;
+    @Autowired
+    private ContentRepository contents;
+
+    private Path root;
+    private Path incoming;
+    private final Lock[] stripes = new Lock[STRIPES];
+
+    /**
+     * Byte range of a file, bounds inclusive.
+     *
+     * @param start first byte
+     * @param end   last byte
+     */
+    public record Range(long start, long end) {
+
+        /** Returns the number of bytes in the range. */
+        public long length() {
+            return end - start + 1;
+        }
+
+        /**
+         * Parses a single-range {@code Range} header against a file of {@code size} bytes.
+         *
+         * @return the range, null if the header is absent, not a byte range or names several
+         *         ranges (the whole file is then served)
+         * @throws IllegalArgumentException if the range cannot be satisfied
+         */
+        public static Range parse(String header, long size) {
+            if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+                return null;
+            }
+            String spec = header.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0) {
+                        throw new IllegalArgumentException("Empty suffix range");
+                    }
+                    start = Math.max(size - suffix, 0);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+                }
+                if (start < 0 || start >= size || end < start) {
+                    throw new IllegalArgumentException("Range not satisfiable: " + header);
+                }
+                return new Range(start, end);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Path.of(directory);
+        incoming = root.resolve("incoming");
+        Files.createDirectories(incoming);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Stores the bytes of {@code in} and attaches them to a content.
+     *
+     * @return the attachment, or null if the content does not exist
+     * @throws IllegalArgumentException if the upload exceeds {@code attachments.max-bytes}
+     */
+    public ContentAttachment attach(String contentId, String fileName, String mediaType, InputStream in) throws IOException {
+        if (!contents.existsById(contentId)) {
+            return null;
+        }
+        Path temp = Files.createTempFile(incoming, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size = 0;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new IllegalArgumentException("Attachments are limited to " + maxBytes + " bytes");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            ContentAttachment attachment = new ContentAttachment();
+            attachment.setId(UUID.randomUUID().toString());
+            attachment.setContentId(contentId);
+            attachment.setSha256(hash);
+            attachment.setFileName(fileName);
+            attachment.setMediaType(mediaType);
+            attachment.setSize(size);
+            attachment.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+            Lock lock = stripe(hash);
+            lock.lock();
+            try {
+                Path target = path(hash);
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                return attachments.save(attachment);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Returns the attachments of a content, oldest first. */
+    public List<ContentAttachment> getAttachments(String contentId) {
+        return attachments.findByContentIdOrderByCreatedAtAsc(contentId);
+    }
+
+    /** Returns an attachment of a content, or null if not found. */
+    public ContentAttachment getAttachment(String contentId, String attachmentId) {
+        return attachments.findById(attachmentId)
+                .filter(a -> a.getContentId().equals(contentId))
+                .orElse(null);
+    }
+
+    /**
+     * Removes an attachment, and its file if no other attachment shares it.
+     *
+     * @return true if removed, false if not found
+     */
+    public boolean detach(String contentId, String attachmentId) {
+        ContentAttachment attachment = getAttachment(contentId, attachmentId);
+        if (attachment == null) {
+            return false;
+        }
+        delete(attachment);
+        return true;
+    }
+
+    /** Removes every attachment of a content. */
+    public void detachAll(String contentId) {
+        for (ContentAttachment attachment : getAttachments(contentId)) {
+            delete(attachment);
+        }
+    }
+
+    /** Returns the file holding the bytes of an attachment. */
+    public Path file(ContentAttachment attachment) {
+        return path(attachment.getSha256());
+    }
+
+    /** Returns the strong entity tag of an attachment, quoted. */
+    public static String etag(ContentAttachment attachment) {
+        return '"' + attachment.getSha256() + '"';
+    }
+
+    /**
+     * Writes {@code range} of an attachment to {@code target} with
+     * {@link FileChannel#transferTo}.
+     *
+     * @return number of bytes written
+     */
+    public long transfer(ContentAttachment attachment, Range range, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(file(attachment), StandardOpenOption.READ)) {
+            long position = range.start();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0 && position >= channel.size()) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+            return range.length() - remaining;
+        }
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private void delete(ContentAttachment attachment) {
+        Lock lock = stripe(attachment.getSha256());
+        lock.lock();
+        try {
+            attachments.delete(attachment);
+            if (attachments.countBySha256(attachment.getSha256()) == 0) {
+                Files.deleteIfExists(path(attachment.getSha256()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path path(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private Lock stripe(String hash) {
+        return stripes[(hash.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Minimal columnar file format for bulk exports.
+ *
+ * <p>Layout: the magic {@code FACF}, a version byte and the schema (column count, then
+ * name and {@link Type} of each column), followed by row groups of at most
+ * {@link #ROWS_PER_GROUP} rows and a terminating zero. A row group is its row count
+ * followed, for each column, by the uncompressed and compressed sizes and the deflated
+ * column values, so each column is compressed on its own and similar values sit together.
+ * Only one row group is buffered at a time.</p>
+ *
+ * <p>Values are encoded as: strings as varint {@code length + 1} (0 for null) and UTF-8
+ * bytes; timestamps as varint {@code zigzag(delta from the previous value) + 1} (0 for
+ * null); integers as zigzag varints; doubles as 8 bytes; booleans as one byte.</p>
+ */
+public final class ColumnarFile {
+
+    /** Rows buffered before a row group is compressed and written. */
+    public static final int ROWS_PER_GROUP = 8192;
+    private static final byte[] MAGIC = {'F', 'A', 'C', 'F'};
+    private static final int VERSION = 1;
+
+    private ColumnarFile() {
+    }
+
+    /** Column value types. */
+    public enum Type {
+        STRING,
+        TIMESTAMP,
+        INT,
+        DOUBLE,
+        BOOLEAN
+    }
+
+    /**
+     * Column of the schema.
+     *
+     * @param name column name
+     * @param type value type
+     */
+    public record Column(String name, Type type) {
+    }
+
+    /** Writes rows to a stream; {@link #finish()} must be called once all rows are written. */
+    public static final class Writer {
+        private final DataOutputStream out;
+        private final List<Column> columns;
+        private final ColumnBuffer[] buffers;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] compressed = new byte[64 * 1024];
+        private int rows;
+
+        public Writer(OutputStream out, List<Column> columns) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.columns = List.copyOf(columns);
+            this.buffers = new ColumnBuffer[columns.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new ColumnBuffer();
+            }
+            this.out.write(MAGIC);
+            this.out.writeByte(VERSION);
+            this.out.writeShort(columns.size());
+            for (Column column : columns) {
+                this.out.writeUTF(column.name());
+                this.out.writeByte(column.type().ordinal());
+            }
+        }
+
+        /**
+         * Appends a row; values must match the schema types ({@link String},
+         * {@link Timestamp}, {@link Integer}, {@link Double}, {@link Boolean}).
+         */
+        public void write(Object... values) throws IOException {
+            if (values.length != columns.size()) {
+                throw new IllegalArgumentException("Expected " + columns.size() + " values, got " + values.length);
+            }
+            for (int i = 0; i < values.length; i++) {
+                buffers[i].append(columns.get(i).type(), values[i]);
+            }
+            if (++rows == ROWS_PER_GROUP) {
+                flushGroup();
+            }
+        }
+
+        /** Writes the last row group and the terminator; does not close the stream. */
+        public void finish() throws IOException {
+            flushGroup();
+            out.writeInt(0);
+            out.flush();
+            deflater.end();
+        }
+
+        private void flushGroup() throws IOException {
+            if (rows == 0) {
+                return;
+            }
+            out.writeInt(rows);
+            for (ColumnBuffer buffer : buffers) {
+                deflater.reset();
+                deflater.setInput(buffer.bytes.buf(), 0, buffer.bytes.size());
+                deflater.finish();
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    length += deflater.deflate(compressed, length, compressed.length - length);
+                }
+                out.writeInt(buffer.bytes.size());
+                out.writeInt(length);
+                out.write(compressed, 0, length);
+                buffer.reset();
+            }
+            rows = 0;
+        }
+    }
+
+    /** Reads the rows written by a {@link Writer}, one row group in memory at a time. */
+    public static final class Reader {
+        private final DataInputStream in;
+        private final List<Column> columns = new ArrayList<>();
+        private final Inflater inflater = new Inflater();
+        private DataInputStream[] values;
+        private long[] previous;
+        private int remaining;
+        private boolean done;
+
+        public Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(in);
+            byte[] magic = this.in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC) || this.in.readByte() != VERSION) {
+                throw new IOException("Not a columnar file");
+            }
+            int count = this.in.readShort();
+            for (int i = 0; i < count; i++) {
+                columns.add(new Column(this.in.readUTF(), Type.values()[this.in.readByte()]));
+            }
+        }
+
+        /** Returns the schema. */
+        public List<Column> getColumns() {
+            return columns;
+        }
+
+        /** Returns the next row, or null at the end of the file. */
+        public Object[] next() throws IOException {
+            if (done || remaining == 0 && !readGroup()) {
+                return null;
+            }
+            remaining--;
+            Object[] row = new Object[columns.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = read(i);
+            }
+            return row;
+        }
+
+        private boolean readGroup() throws IOException {
+            int rows = in.readInt();
+            if (rows == 0) {
+                inflater.end();
+                done = true;
+                return false;
+            }
+            values = new DataInputStream[columns.size()];
+            previous = new long[columns.size()];
+            for (int i = 0; i < values.length; i++) {
+                byte[] plain = new byte[in.readInt()];
+                byte[] packed = in.readNBytes(in.readInt());
+                inflater.reset();
+                inflater.setInput(packed);
+                try {
+                    inflater.inflate(plain);
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupted column " + columns.get(i).name(), e);
+                }
+                values[i] = new DataInputStream(new ByteArrayInputStream(plain));
+            }
+            remaining = rows;
+            return true;
+        }
+
+        private Object read(int column) throws IOException {
+            DataInputStream data = values[column];
+            return switch (columns.get(column).type()) {
+                case STRING -> {
+                    long length = readVarint(data);
+                    yield length == 0 ? null : new String(data.readNBytes((int) length - 1), StandardCharsets.UTF_8);
+                }
+                case TIMESTAMP -> {
+                    long encoded = readVarint(data);
+                    if (encoded == 0) {
+                        yield null;
+                    }
+                    previous[column] += unzigzag(encoded - 1);
+                    yield new Timestamp(previous[column]);
+                }
+                case INT -> (int) unzigzag(readVarint(data));
+                case DOUBLE -> data.readDouble();
+                case BOOLEAN -> data.readBoolean();
+            };
+        }
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    /** Encoded values of one column in the current row group. */
+    private static final class ColumnBuffer {
+        private final ExposedBytes bytes = new ExposedBytes();
+        private final DataOutputStream data = new DataOutputStream(bytes);
+        private long previous;
+
+        private void append(Type type, Object value) throws IOException {
+            switch (type) {
+                case STRING -> {
+                    if (value == null) {
+                        writeVarint(data, 0);
+                    } else {
+                        byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+                        writeVarint(data, utf8.length + 1L);
+                        data.write(utf8);
+                    }
+                }
+                case TIMESTAMP -> {
+                    if (value == null) {
+                        writeVarint(data, 0);
+                    } else {
+                        long millis = ((Timestamp) value).getTime();
+                        writeVarint(data, zigzag(millis - previous) + 1);
+                        previous = millis;
+                    }
+                }
+                case INT -> writeVarint(data, zigzag(value == null ? 0 : (Integer) value));
+                case DOUBLE -> data.writeDouble(value == null ? 0 : (Double) value);
+                case BOOLEAN -> data.writeBoolean(value != null && (Boolean) value);
+            }
+        }
+
+        private void reset() {
+            bytes.reset();
+            previous = 0;
+        }
+    }
+
+    /** Byte buffer whose backing array can be read without copying. */
+    private static final class ExposedBytes extends ByteArrayOutputStream {
+        private byte[] buf() {
+            return buf;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,190 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.Content;
+import it.unicam.cs.ids.filieraagricola.model.ContentState;
+import it.unicam.cs.ids.filieraagricola.model.repositories.ContentRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Queue of pending contents that curators claim in batches instead of each reading
+ * the whole backlog.
+ *
+ * <p>Pending contents wait in a concurrent skip list ordered by creation time, oldest
+ * first. {@link #claim} polls the head of the list and leases each polled content to the
+ * curator for a visibility timeout; polling is lock-free, so curators never wait for each
+ * other nor receive the same content. Approving, rejecting or deleting a content removes
+ * it from the queue and drops its lease; a lease that times out puts the content back at
+ * its place. The queue lives in memory and is filled from the database at startup, so
+ * it coordinates the curators of one instance.</p>
+ *
+ * <p>A live lease belongs to its curator: {@link ContentService} refuses decisions of
+ * other curators on the content until the lease is dropped or times out. Contents are
+ * ordered by age only; they carry no priority to order them by.</p>
+ */
+@Component
+public class ContentModerationQueue {
+
+    /** Largest batch a curator can claim at once. */
+    public static final int MAX_CLAIM = 100;
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::createdAt).thenComparing(Entry::id);
+
+    @Value("${contents.queue.visibility-seconds:300}")
+    private long visibilitySeconds;
+
+    @Autowired
+    private ContentRepository contents;
+
+    private final ConcurrentSkipListSet<Entry> available = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<String, Entry> queued = new ConcurrentHashMap<>();
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    /** Position of a pending content in the queue. */
+    private record Entry(String id, long createdAt) {
+    }
+
+    /** Lease of a content to a curator. */
+    private record Lease(Entry entry, String curator, long expiresAt) {
+    }
+
+    /**
+     * Content leased to a curator.
+     *
+     * @param content     the pending content
+     * @param leasedUntil time the lease expires and the content returns to the queue
+     */
+    public record Claim(Content content, Timestamp leasedUntil) {
+    }
+
+    /**
+     * Queue metrics.
+     *
+     * @param available pending contents not leased
+     * @param leased    contents leased to a curator
+     */
+    public record Stats(int available, int leased) {
+    }
+
+    /** Refills the queue with the pending contents of the database; drops every lease. */
+    @PostConstruct
+    public void rebuild() {
+        available.clear();
+        queued.clear();
+        leases.clear();
+        contents.findByState(ContentState.PENDING).forEach(this::offer);
+    }
+
+    /** Adds a pending content to the queue. */
+    public void offer(Content content) {
+        Timestamp createdAt = content.getCreatedAt();
+        offer(new Entry(content.getId(), createdAt == null ? 0 : createdAt.getTime()));
+    }
+
+    /**
+     * Leases up to {@code n} of the oldest pending contents to {@code curator} for
+     * {@code visibilitySeconds}, or the configured timeout when null.
+     *
+     * @return the claimed contents, oldest first; empty when the queue is empty
+     * @throws IllegalArgumentException if {@code n} is not in {@code [1, MAX_CLAIM]}
+     *                                  or the timeout is not positive
+     */
+    public List<Claim> claim(String curator, int n, Long visibilitySeconds) {
+        if (n < 1 || n > MAX_CLAIM) {
+            throw new IllegalArgumentException("Claim size must be between 1 and " + MAX_CLAIM);
+        }
+        long timeout = visibilitySeconds == null ? this.visibilitySeconds : visibilitySeconds;
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Visibility timeout must be positive");
+        }
+        long now = System.currentTimeMillis();
+        expire(now);
+        long expiresAt = now + timeout * 1000;
+        List<Lease> claimed = new ArrayList<>(n);
+        Entry entry;
+        while (claimed.size() < n && (entry = available.pollFirst()) != null) {
+            Lease lease = new Lease(entry, curator, expiresAt);
+            // lease before unqueueing, so a concurrent decision always finds one of the two
+            leases.put(entry.id(), lease);
+            if (queued.remove(entry.id(), entry)) {
+                claimed.add(lease);
+            } else {
+                leases.remove(entry.id(), lease);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Content> loaded = contents.findAllById(claimed.stream().map(l -> l.entry().id()).toList())
+                .stream().collect(Collectors.toMap(Content::getId, Function.identity()));
+        List<Claim> result = new ArrayList<>(claimed.size());
+        for (Lease lease : claimed) {
+            Content content = loaded.get(lease.entry().id());
+            if (content != null && content.isPending()) {
+                result.add(new Claim(content, new Timestamp(expiresAt)));
+            } else {
+                // decided or deleted while it was being claimed
+                leases.remove(lease.entry().id(), lease);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the curator holding a lease on a content that has not timed out yet, or null
+     * if nobody holds one.
+     */
+    public String holder(String contentId) {
+        Lease lease = leases.get(contentId);
+        return lease == null || lease.expiresAt() <= System.currentTimeMillis() ? null : lease.curator();
+    }
+
+    /** Removes a content from the queue and drops its lease, if any. */
+    public void remove(String contentId) {
+        leases.remove(contentId);
+        Entry entry = queued.remove(contentId);
+        if (entry != null) {
+            available.remove(entry);
+        }
+    }
+
+    /** Puts the contents whose lease expired before {@code now} back in the queue. */
+    public void expire(long now) {
+        for (Lease lease : leases.values()) {
+            if (lease.expiresAt() <= now && leases.remove(lease.entry().id(), lease)) {
+                offer(lease.entry());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${contents.queue.sweep-millis:1000}")
+    public void expireLeases() {
+        expire(System.currentTimeMillis());
+    }
+
+    /** Returns the number of available and leased contents. */
+    public Stats stats() {
+        return new Stats(queued.size(), leases.size());
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private void offer(Entry entry) {
+        if (queued.putIfAbsent(entry.id(), entry) == null) {
+            available.add(entry);
+        }
+    }
+}
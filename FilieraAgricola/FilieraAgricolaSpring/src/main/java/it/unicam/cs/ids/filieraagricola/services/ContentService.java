@@ -6,26 +6,67 @@ import it.unicam.cs.ids.filieraagricola.model.ContentType;
 import it.unicam.cs.ids.filieraagricola.model.SupplyChainPoint;
 import it.unicam.cs.ids.filieraagricola.model.repositories.ContentRepository;
 import it.unicam.cs.ids.filieraagricola.model.repositories.SupplyChainPointRepository;
+import it.unicam.cs.ids.filieraagricola.services.exception.ConflictException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Application service for managing {@link Content} lifecycle and moderation.
  *
  * <p>Provides retrieval, creation and state transitions (approve/reject) using
- * Spring Data repositories. This service does not perform persistence-level
- * transactions across multiple operations.</p>
+ * Spring Data repositories. Only {@link #moderate(Map)} runs several operations in
+ * one transaction.</p>
  */
 @Service
 public class ContentService {
 
+    /** Largest number of points whose contents are read by one call. */
+    public static final int MAX_POINTS = 1000;
+    /** Largest number of contents moderated by one batch. */
+    public static final int MAX_MODERATION_BATCH = 10_000;
+    /** Ids bound to one update statement. */
+    private static final int STATEMENT_IDS = 1000;
+
     @Autowired
     private ContentRepository contents;
     @Autowired
     private SupplyChainPointRepository supplyChainPointRepository;
+    @Autowired
+    private SearchIndex searchIndex;
+    @Autowired
+    private ContentModerationQueue moderationQueue;
+    @Autowired
+    private ApprovedContentsCache approvedCache;
+    @Autowired
+    private PointContentIndex pointIndex;
+    @Autowired
+    private AttachmentService attachmentService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** Outcome of {@link #moderate(Map)} for one content. */
+    public enum ModerationOutcome {
+        /** The state was changed. */
+        UPDATED,
+        /** The content was already in the target state. */
+        UNCHANGED,
+        /** No content has that id. */
+        NOT_FOUND,
+        /** The content is leased to another curator; nothing was changed. */
+        LEASED
+    }
 
 
     /**
@@ -36,6 +77,20 @@ public class ContentService {
     }
 
 
+    /**
+     * Returns the keyset page of contents after the given id.
+     */
+    public List<Content> getContentPage(String after, int limit) {
+        return contents.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+    }
+
+    /**
+     * Streams all contents from a database cursor; must be consumed in a transaction.
+     */
+    public Stream<Content> streamContents() {
+        return contents.streamAllByOrderByIdAsc();
+    }
+
     /**
      * Returns contents filtered by {@link ContentState}.
      */
@@ -43,6 +98,34 @@ public class ContentService {
         return contents.findByState(state);
     }
 
+    /**
+     * Returns the approved contents of each given point that has any, keyed by point id
+     * in request order; the contents of every point are loaded with one query.
+     *
+     * @throws IllegalArgumentException if more than {@link #MAX_POINTS} points are requested
+     */
+    public Map<String, List<Content>> getApprovedByPoints(List<String> pointIds) {
+        if (pointIds.size() > MAX_POINTS) {
+            throw new IllegalArgumentException("At most " + MAX_POINTS + " points per request");
+        }
+        Map<String, List<String>> ids = pointIndex.contentIds(pointIds);
+        Map<String, Content> loaded = new HashMap<>();
+        List<String> all = ids.values().stream().flatMap(List::stream).toList();
+        if (!all.isEmpty()) {
+            contents.findWithPointByIdIn(all).forEach(c -> loaded.put(c.getId(), c));
+        }
+        Map<String, List<Content>> result = new LinkedHashMap<>();
+        ids.forEach((pointId, contentIds) -> {
+            List<Content> approved = contentIds.stream().map(loaded::get)
+                    .filter(c -> c != null && c.isApproved())
+                    .toList();
+            if (!approved.isEmpty()) {
+                result.put(pointId, approved);
+            }
+        });
+        return result;
+    }
+
     /**
      * Creates a new pending {@link Content} associated to a {@link SupplyChainPoint}.
      *
@@ -65,11 +148,15 @@ public class ContentService {
         content.setType(type);
         content.setPoint(opt.get());
         content = contents.save(content);
+        moderationQueue.offer(content);
         return content;
     }
 
     /**
-     * Deletes a content by id if present.
+     * Deletes a content by id if present, with its attachments.
+     *
+     * <p>Attachments go first: if detaching fails the content is left as it was, and once
+     * its row is deleted nothing stands between it and the index updates.</p>
      *
      * @return true if removed, false otherwise
      */
@@ -78,7 +165,12 @@ public class ContentService {
         if (content == null) {
             return false;
         }
+        attachmentService.detachAll(id);
         contents.delete(content);
+        searchIndex.remove(SearchIndex.Kind.CONTENT, id);
+        moderationQueue.remove(id);
+        approvedCache.remove(id);
+        pointIndex.remove(id);
         return true;
     }
 
@@ -110,7 +202,39 @@ public class ContentService {
     }
 
     /**
-     * Sets content state to {@link ContentState#APPROVED} if found.
+     * Leases up to {@code n} of the oldest pending contents to a curator.
+     *
+     * @see ContentModerationQueue#claim
+     */
+    public List<ContentModerationQueue.Claim> claimPending(String curator, int n, Long visibilitySeconds) {
+        return moderationQueue.claim(curator, n, visibilitySeconds);
+    }
+
+    /**
+     * Approves a content on behalf of {@code curator}.
+     *
+     * @throws ConflictException if another curator holds a lease on the content
+     * @see #approve(String)
+     */
+    public Boolean approve(String id, String curator) {
+        checkLease(id, curator);
+        return approve(id);
+    }
+
+    /**
+     * Rejects a content on behalf of {@code curator}.
+     *
+     * @throws ConflictException if another curator holds a lease on the content
+     * @see #reject(String)
+     */
+    public Boolean reject(String id, String curator) {
+        checkLease(id, curator);
+        return reject(id);
+    }
+
+    /**
+     * Sets content state to {@link ContentState#APPROVED} if found and releases its
+     * moderation lease, whoever holds it.
      */
     public Boolean approve(String id) {
         Optional<Content> opt = contents.findById(id);
@@ -118,13 +242,18 @@ public class ContentService {
             Content content = opt.get();
             content.setState(ContentState.APPROVED);
             contents.save(content);
+            searchIndex.index(content);
+            moderationQueue.remove(id);
+            approvedCache.update(content);
+            pointIndex.update(content);
             return true;
         }
         return false;
     }
 
     /**
-     * Sets content state to {@link ContentState#REJECTED} if found.
+     * Sets content state to {@link ContentState#REJECTED} if found and releases its
+     * moderation lease, whoever holds it.
      */
     public Boolean reject(String id) {
         Optional<Content> opt = contents.findById(id);
@@ -132,9 +261,101 @@ public class ContentService {
             Content content = opt.get();
             content.setState(ContentState.REJECTED);
             contents.save(content);
+            searchIndex.index(content);
+            moderationQueue.remove(id);
+            approvedCache.update(content);
+            pointIndex.update(content);
             return true;
         }
         return false;
     }
 
+    /**
+     * Moves many contents to {@link ContentState#APPROVED} or {@link ContentState#REJECTED}
+     * in one transaction, with one update statement per target state (per
+     * {@value #STATEMENT_IDS} ids) instead of a read and a full entity write per content.
+     *
+     * @param decisions ids to move, keyed by target state
+     * @return the outcome of every id, in request order
+     * @throws IllegalArgumentException if a target state is not approved or rejected, an id
+     *                                  appears twice or the batch exceeds {@link #MAX_MODERATION_BATCH}
+     */
+    public Map<String, ModerationOutcome> moderate(Map<ContentState, List<String>> decisions) {
+        return moderate(decisions, null);
+    }
+
+    /**
+     * Like {@link #moderate(Map)}, on behalf of {@code curator}: contents leased to another
+     * curator are left alone and reported as {@link ModerationOutcome#LEASED}.
+     *
+     * @param curator id of the deciding curator, null to ignore leases
+     */
+    public Map<String, ModerationOutcome> moderate(Map<ContentState, List<String>> decisions, String curator) {
+        Map<String, ContentState> targets = new LinkedHashMap<>();
+        decisions.forEach((state, ids) -> {
+            if (state != ContentState.APPROVED && state != ContentState.REJECTED) {
+                throw new IllegalArgumentException("Contents can only be approved or rejected, not " + state);
+            }
+            for (String id : ids == null ? List.<String>of() : ids) {
+                if (id == null || targets.put(id, state) != null) {
+                    throw new IllegalArgumentException("Content ids must be present and distinct: " + id);
+                }
+            }
+        });
+        if (targets.size() > MAX_MODERATION_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_MODERATION_BATCH + " contents per batch");
+        }
+        Map<String, ModerationOutcome> outcomes = new LinkedHashMap<>();
+        targets.keySet().forEach(id -> outcomes.put(id, ModerationOutcome.NOT_FOUND));
+        if (curator != null) {
+            targets.keySet().removeIf(id -> {
+                String holder = moderationQueue.holder(id);
+                if (holder == null || holder.equals(curator)) {
+                    return false;
+                }
+                outcomes.put(id, ModerationOutcome.LEASED);
+                return true;
+            });
+        }
+        List<Content> changed = new ArrayList<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Map<ContentState, List<String>> updates = new EnumMap<>(ContentState.class);
+            List<String> ids = new ArrayList<>(targets.keySet());
+            for (int i = 0; i < ids.size(); i += STATEMENT_IDS) {
+                for (Content content : contents.findWithPointByIdIn(ids.subList(i, Math.min(i + STATEMENT_IDS, ids.size())))) {
+                    ContentState target = targets.get(content.getId());
+                    if (content.getState() == target) {
+                        outcomes.put(content.getId(), ModerationOutcome.UNCHANGED);
+                        continue;
+                    }
+                    outcomes.put(content.getId(), ModerationOutcome.UPDATED);
+                    updates.computeIfAbsent(target, t -> new ArrayList<>()).add(content.getId());
+                    changed.add(content);
+                }
+            }
+            updates.forEach((target, stateIds) -> {
+                for (int i = 0; i < stateIds.size(); i += STATEMENT_IDS) {
+                    contents.updateState(stateIds.subList(i, Math.min(i + STATEMENT_IDS, stateIds.size())), target);
+                }
+            });
+        });
+        // the update detached the loaded contents; bring the copies up to date for the indexes
+        for (Content content : changed) {
+            content.setState(targets.get(content.getId()));
+            searchIndex.index(content);
+            moderationQueue.remove(content.getId());
+            approvedCache.update(content);
+            pointIndex.update(content);
+        }
+        return outcomes;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private void checkLease(String id, String curator) {
+        String holder = moderationQueue.holder(id);
+        if (holder != null && !holder.equals(curator)) {
+            throw new ConflictException("Content " + id + " is leased to another curator");
+        }
+    }
 }
@@ -8,6 +8,7 @@ import it.unicam.cs.ids.filieraagricola.model.repositories.EventRepository;
 import it.unicam.cs.ids.filieraagricola.model.repositories.ParticipationRepository;
 import it.unicam.cs.ids.filieraagricola.model.repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
@@ -15,6 +16,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Application service for managing {@link Event} and related {@link Participation}.
@@ -46,6 +48,16 @@ public class EventService {
 
 
 
+    /** Returns the keyset page of events after the given id. */
+    public List<Event> getEventPage(String after, int limit) {
+        return repository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+    }
+
+    /** Streams all events from a database cursor; must be consumed in a transaction. */
+    public Stream<Event> streamEvents() {
+        return repository.streamAllByOrderByIdAsc();
+    }
+
     /** Returns an event by id or null if not found. */
     public Event getEvent(String id) {
         Optional<Event> opt = repository.findById(id);
@@ -0,0 +1,328 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unicam.cs.ids.filieraagricola.services.exception.ConflictException;
+import it.unicam.cs.ids.filieraagricola.services.exception.ValidationException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the result of requests sent with an {@code Idempotency-Key} header so that
+ * client retries do not repeat their side effects.
+ *
+ * <p>Keys belong to the caller that sent them, and each key remembers a SHA-256 hash of
+ * its request body: the same key sent again with a different body is rejected instead of
+ * replaying a response that belongs to another request.</p>
+ *
+ * <p>Results are kept in memory for {@code idempotency.ttl-minutes}, up to
+ * {@code idempotency.max-entries} keys, evicting the oldest completed ones first. Keys
+ * whose request is still running are never evicted, so a retry cannot run it twice.
+ * Concurrent requests with the same key are coalesced: only the first runs, the others
+ * wait for it and get the same result. Null results and failures are not remembered, so
+ * the request can be retried.</p>
+ *
+ * <p>With {@code idempotency.persistent=true} keys are also claimed in the
+ * {@code idempotency_key} table, which deduplicates requests across application nodes:
+ * a node finding the key already claimed waits for the JSON result stored by the owner.
+ * The owner renews its claim every third of {@code idempotency.lease-seconds} while the
+ * request runs; a claim not renewed for a whole lease belongs to a node that crashed and
+ * is taken over, independently of how long results are kept.</p>
+ *
+ * <p>Keys are stored as the SHA-256 of scope, caller and key, so client keys of any
+ * length fit the table.</p>
+ */
+@Component
+public class IdempotencyStore {
+
+    /** Request header carrying the client generated key. */
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final long POLL_MILLIS = 50;
+    private static final long WAIT_MILLIS = 30_000;
+    private static final long PURGE_EVERY_MILLIS = 60_000;
+
+    @Value("${idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+    @Value("${idempotency.max-entries:10000}")
+    private int maxEntries;
+    @Value("${idempotency.persistent:false}")
+    private boolean persistent;
+    @Value("${idempotency.lease-seconds:30}")
+    private long leaseSeconds;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntries) {
+                // drop the oldest completed entry; pending ones stay even past the limit
+                Iterator<Entry> it = values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().result().isDone()) {
+                        it.remove();
+                        break;
+                    }
+                }
+            }
+            return false;
+        }
+    };
+    private final AtomicLong lastPurge = new AtomicLong();
+    private ScheduledExecutorService heartbeats;
+
+    private record Entry(CompletableFuture<Object> result, String requestHash, long expiresAt) {
+    }
+
+    @PostConstruct
+    public void start() {
+        heartbeats = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeats.shutdownNow();
+    }
+
+    /**
+     * Runs {@code action} once per {@code scope}, {@code caller} and {@code key}, returning
+     * the remembered result on repeated calls. A null or blank key runs the action
+     * unconditionally.
+     *
+     * @param scope   request kind, keeps keys of different endpoints apart
+     * @param caller  id of the user sending the request, null for anonymous requests
+     * @param key     client supplied key, may be null
+     * @param request raw request body, hashed to recognise a key reused for another request
+     * @param type    result type, used to decode results stored by other nodes
+     * @param action  the request's side effect
+     * @throws ConflictException   if another node is still processing the same key
+     * @throws ValidationException if the key was already used with a different request body
+     */
+    public <T> T execute(String scope, String caller, String key, byte[] request, Class<T> type, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        String id = keyId(scope, caller, key);
+        String requestHash = hash(request);
+        long now = System.currentTimeMillis();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = null;
+        synchronized (entries) {
+            evictExpired(now);
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                checkSameRequest(entry.requestHash(), requestHash);
+                existing = entry.result();
+            } else {
+                entries.put(id, new Entry(future, requestHash, now + ttlMinutes * 60_000));
+            }
+        }
+        if (existing != null) {
+            return type.cast(await(existing));
+        }
+        try {
+            T result = persistent ? executeShared(id, requestHash, type, action) : action.get();
+            if (result == null) {
+                forget(id);
+            }
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            forget(id);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /** Returns the stored id of a key: the hex SHA-256 of its scope, caller and key. */
+    static String keyId(String scope, String caller, String key) {
+        return hash((scope + ":" + (caller == null ? "" : caller) + ":" + key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    /**
+     * Claims the key in the shared table, or waits for the node that owns it, taking the
+     * claim over if the owner stopped renewing it.
+     */
+    private <T> T executeShared(String id, String requestHash, Class<T> type, Supplier<T> action) {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        String token = UUID.randomUUID().toString();
+        while (!claim(id, requestHash, token)) {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "select response, created_at, request_hash, heartbeat_at, claim_token from idempotency_key where id = ?",
+                    (rs, n) -> new Object[]{rs.getString(1), rs.getTimestamp(2), rs.getString(3), rs.getTimestamp(4), rs.getString(5)}, id);
+            if (rows.isEmpty()) {
+                // the owner failed and released the key
+                continue;
+            }
+            String response = (String) rows.get(0)[0];
+            Timestamp createdAt = (Timestamp) rows.get(0)[1];
+            long now = System.currentTimeMillis();
+            if (createdAt.getTime() + ttlMinutes * 60_000 < now) {
+                jdbcTemplate.update("delete from idempotency_key where id = ? and created_at = ?", id, createdAt);
+                continue;
+            }
+            checkSameRequest((String) rows.get(0)[2], requestHash);
+            if (response != null) {
+                return decode(response, type);
+            }
+            Timestamp heartbeatAt = (Timestamp) rows.get(0)[3];
+            if ((heartbeatAt == null ? createdAt : heartbeatAt).getTime() + leaseSeconds * 1000 < now) {
+                // the owner's node stopped renewing the claim: drop it unless renewed meanwhile
+                jdbcTemplate.update("delete from idempotency_key where id = ? and claim_token = ? and response is null "
+                        + "and heartbeat_at = ?", id, rows.get(0)[4], heartbeatAt);
+                continue;
+            }
+            if (now > deadline) {
+                throw new ConflictException("A request with the same Idempotency-Key is still in progress");
+            }
+            sleep();
+        }
+        long renewMillis = Math.max(leaseSeconds * 1000 / 3, 1);
+        ScheduledFuture<?> heartbeat = heartbeats.scheduleWithFixedDelay(() -> renew(id, token),
+                renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+        try {
+            T result = action.get();
+            if (result == null) {
+                jdbcTemplate.update("delete from idempotency_key where id = ? and claim_token = ?", id, token);
+            } else {
+                jdbcTemplate.update("update idempotency_key set response = ? where id = ? and claim_token = ?",
+                        encode(result), id, token);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            jdbcTemplate.update("delete from idempotency_key where id = ? and claim_token = ?", id, token);
+            throw e;
+        } finally {
+            heartbeat.cancel(false);
+        }
+    }
+
+    private boolean claim(String id, String requestHash, String token) {
+        long now = System.currentTimeMillis();
+        long last = lastPurge.get();
+        if (now - last > PURGE_EVERY_MILLIS && lastPurge.compareAndSet(last, now)) {
+            jdbcTemplate.update("delete from idempotency_key where created_at < ?", new Timestamp(now - ttlMinutes * 60_000));
+        }
+        try {
+            jdbcTemplate.update("insert into idempotency_key (id, request_hash, created_at, heartbeat_at, claim_token) "
+                    + "values (?, ?, ?, ?, ?)", id, requestHash, new Timestamp(now), new Timestamp(now), token);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /** Renews a claim still in progress; a failed renewal is retried at the next beat. */
+    private void renew(String id, String token) {
+        try {
+            jdbcTemplate.update("update idempotency_key set heartbeat_at = ? where id = ? and claim_token = ? and response is null",
+                    new Timestamp(System.currentTimeMillis()), id, token);
+        } catch (RuntimeException e) {
+            // keep the task scheduled; the lease tolerates two missed beats
+        }
+    }
+
+    private void forget(String id) {
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    /**
+     * Drops expired completed entries; they are in insertion order, so only the oldest are
+     * checked.
+     */
+    private void evictExpired(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.expiresAt() >= now) {
+                break;
+            }
+            if (entry.result().isDone()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static void checkSameRequest(String stored, String requestHash) {
+        if (stored != null && !stored.equals(requestHash)) {
+            throw new ValidationException("The Idempotency-Key was already used for a different request");
+        }
+    }
+
+    /** Returns the hex SHA-256 of a request body. */
+    private static String hash(byte[] request) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(request == null ? new byte[0] : request));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String encode(Object result) {
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot store idempotent result", e);
+        }
+    }
+
+    private <T> T decode(String response, Class<T> type) {
+        try {
+            return objectMapper.readValue(response, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read idempotent result", e);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an idempotent result", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns free text into the terms stored in the {@link SearchIndex}.
+ *
+ * <p>Text is lower-cased, stripped of accents and split on anything that is not a letter
+ * or a digit (so elisions such as {@code dell'olio} yield {@code olio}). Italian stop
+ * words are dropped and the remaining words go through a light stemmer that removes
+ * the final gender/number vowel, so {@code pomodoro} and {@code pomodori} share a term.</p>
+ */
+public final class ItalianTextAnalyzer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "ad", "al", "alla", "alle", "agli", "ai", "all", "c", "che", "chi", "ci", "col", "con",
+            "d", "da", "dal", "dalla", "dalle", "dagli", "dai", "dall", "de", "degli", "dei", "del",
+            "della", "delle", "dell", "di", "e", "ed", "gli", "i", "il", "in", "l", "la", "le", "lo",
+            "ma", "ne", "nei", "nel", "nella", "nelle", "negli", "nell", "o", "per", "piu", "si",
+            "su", "sul", "sulla", "sulle", "sugli", "sui", "sull", "tra", "fra", "un", "una", "uno");
+
+    private ItalianTextAnalyzer() {
+    }
+
+    /**
+     * Returns the terms of the given text, in order and with repetitions.
+     *
+     * @param text text to analyze, may be null
+     */
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        for (String word : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty() || STOP_WORDS.contains(word)) {
+                continue;
+            }
+            terms.add(stem(word));
+        }
+        return terms;
+    }
+
+    /**
+     * Removes the inflectional ending of an Italian word.
+     *
+     * <p>Words of up to three characters and numbers are left untouched. The final vowel is
+     * dropped and a trailing {@code ch}/{@code gh} is reduced to {@code c}/{@code g}, so
+     * {@code biologico}, {@code biologici} and {@code biologiche} all map to {@code biologic}.</p>
+     */
+    static String stem(String word) {
+        if (word.length() <= 3 || Character.isDigit(word.charAt(0))) {
+            return word;
+        }
+        String stem = word;
+        char last = stem.charAt(stem.length() - 1);
+        if (last == 'a' || last == 'e' || last == 'i' || last == 'o') {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        if (stem.endsWith("ch") || stem.endsWith("gh")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        return stem;
+    }
+}
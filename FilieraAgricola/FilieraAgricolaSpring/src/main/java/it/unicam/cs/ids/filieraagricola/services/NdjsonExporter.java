@@ -0,0 +1,94 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.UncheckedIOException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes query results as newline-delimited JSON while they are read from a database cursor.
+ *
+ * <p>The stream is consumed inside a read-only transaction in chunks of {@link #CLEAR_EVERY}
+ * rows. Before a chunk is written, an optional fetch callback initializes the lazy
+ * associations of all its rows with one query per association, so serializing a row never
+ * issues its own queries. The persistence context is cleared after every chunk, so memory
+ * stays constant whatever the row count.</p>
+ */
+@Component
+public class NdjsonExporter {
+
+    /** Media type of the produced body. */
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+    /** Rows written between two persistence context clears and output flushes. */
+    public static final int CLEAR_EVERY = 200;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Returns a response body that opens {@code query} when the response is written.
+     * Rows must not have lazy associations that the JSON output reads.
+     *
+     * @param query supplier of a cursor-backed stream, typically a repository {@code stream...} method
+     */
+    public <T> StreamingResponseBody export(Supplier<Stream<T>> query) {
+        return export(query, chunk -> {
+        });
+    }
+
+    /**
+     * Returns a response body that opens {@code query} when the response is written and
+     * passes every chunk of rows to {@code fetch} before writing it.
+     *
+     * @param query supplier of a cursor-backed stream, typically a repository {@code stream...} method
+     * @param fetch initializes the lazy associations of a chunk, typically with join fetch queries
+     */
+    public <T> StreamingResponseBody export(Supplier<Stream<T>> query, Consumer<List<T>> fetch) {
+        return out -> {
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setReadOnly(true);
+            try {
+                tx.executeWithoutResult(status -> {
+                    try (Stream<T> rows = query.get()) {
+                        List<T> chunk = new ArrayList<>(CLEAR_EVERY);
+                        Iterator<T> it = rows.iterator();
+                        while (it.hasNext()) {
+                            chunk.add(it.next());
+                            if (chunk.size() == CLEAR_EVERY || !it.hasNext()) {
+                                fetch.accept(chunk);
+                                for (T row : chunk) {
+                                    out.write(objectMapper.writeValueAsBytes(row));
+                                    out.write('\n');
+                                }
+                                chunk.clear();
+                                entityManager.clear();
+                                out.flush();
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
+}
@@ -0,0 +1,326 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.Order;
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+import it.unicam.cs.ids.filieraagricola.services.exception.ConflictException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory order rollups backing the seller dashboards.
+ *
+ * <p>Orders are accumulated by status, globally and per seller, and per seller per day.
+ * {@link OrderService} applies every create, delete and status change as a delta, so
+ * revenue, counts and averages are read without scanning {@code orders}. Amounts are
+ * summed in cents to keep repeated additions and removals exact.</p>
+ *
+ * <p>{@link #rebuild()} recomputes everything with one grouped query and
+ * {@link #check()} compares the live figures against the same query. Deltas are applied
+ * after their transaction commits, so a rebuild holds the write lock for the whole query:
+ * no delta is applied to rollups that are about to be replaced. A transaction that
+ * committed before the query but whose delta is still pending is counted twice; such a
+ * rebuild is reported by the next {@link #check()} and fixed by rebuilding again.</p>
+ */
+@Component
+public class OrderAnalytics {
+
+    /**
+     * Groups orders by seller, status and order day. Each amount is rounded to cents before
+     * summing, half up like {@link Math#round(double)}, so the totals match the deltas.
+     */
+    private static final String ROLLUP_QUERY = "select seller_id, status, cast(order_date as date), count(*), "
+            + "sum(floor(total_amount * 100 + 0.5)) "
+            + "from orders group by seller_id, status, cast(order_date as date)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Rollups rollups = new Rollups();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Revenue, average value and status breakdown of a set of orders.
+     *
+     * @param revenue           total amount of delivered orders
+     * @param averageOrderValue average amount over every order, 0 if none
+     * @param countByStatus     number of orders in each status
+     */
+    public record Summary(double revenue, double averageOrderValue, Map<OrderStatus, Long> countByStatus) {
+    }
+
+    /**
+     * Orders placed with a seller on one day.
+     *
+     * @param day          order day
+     * @param orders       number of orders
+     * @param averageValue average order amount
+     */
+    public record DailyAverage(LocalDate day, long orders, double averageValue) {
+    }
+
+    /**
+     * Outcome of {@link #check()}.
+     *
+     * @param consistent  true if the live figures match the database
+     * @param differences description of every mismatching group
+     */
+    public record Check(boolean consistent, List<String> differences) {
+    }
+
+    /** Running count and amount of a group of orders. */
+    private static final class Totals {
+        private long count;
+        private long cents;
+
+        private void add(long count, long cents) {
+            this.count += count;
+            this.cents += cents;
+        }
+
+        private boolean matches(Totals other) {
+            return other != null && count == other.count && cents == other.cents;
+        }
+    }
+
+    /** Every accumulator; replaced as a whole on rebuild. */
+    private static final class Rollups {
+        private final Map<OrderStatus, Totals> byStatus = new EnumMap<>(OrderStatus.class);
+        private final Map<String, Map<OrderStatus, Totals>> bySellerStatus = new HashMap<>();
+        private final Map<String, TreeMap<LocalDate, Totals>> bySellerDay = new HashMap<>();
+
+        private void add(String sellerId, OrderStatus status, LocalDate day, long count, long cents) {
+            byStatus.computeIfAbsent(status, s -> new Totals()).add(count, cents);
+            if (sellerId == null) {
+                return;
+            }
+            bySellerStatus.computeIfAbsent(sellerId, s -> new EnumMap<>(OrderStatus.class))
+                    .computeIfAbsent(status, s -> new Totals()).add(count, cents);
+            if (day != null) {
+                TreeMap<LocalDate, Totals> days = bySellerDay.computeIfAbsent(sellerId, s -> new TreeMap<>());
+                Totals totals = days.computeIfAbsent(day, d -> new Totals());
+                totals.add(count, cents);
+                if (totals.count == 0) {
+                    days.remove(day);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes every rollup from the {@code orders} table. Deltas and reads wait until
+     * the query completes.
+     */
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            rollups = load();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recomputes every rollup from the orders replayed from the {@link OrderJournal}
+     * instead of the database, keyed by id.
+     *
+     * @throws ConflictException if some order in the database is missing from the replayed
+     *                           state, e.g. because it was created before the journal
+     *                           existed; the rollups are then left unchanged
+     */
+    public void rebuild(Map<String, Order> orders) {
+        long[] missing = new long[1];
+        jdbcTemplate.query("select id from orders", (RowCallbackHandler) rs -> {
+            if (!orders.containsKey(rs.getString(1))) {
+                missing[0]++;
+            }
+        });
+        if (missing[0] > 0) {
+            throw new ConflictException("The journal does not cover " + missing[0] + " orders of the database");
+        }
+        Rollups replayed = new Rollups();
+        for (Order order : orders.values()) {
+            if (order.getStatus() != null) {
+                String sellerId = order.getSeller() == null ? null : order.getSeller().getId();
+                LocalDate day = order.getOrderDate() == null ? null : order.getOrderDate().toLocalDateTime().toLocalDate();
+                replayed.add(sellerId, order.getStatus(), day, 1, Math.round(order.getTotalAmount() * 100));
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            rollups = replayed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Accounts for a newly created order. */
+    public void onCreated(Order order) {
+        apply(order, order.getStatus(), 1);
+    }
+
+    /** Removes a deleted order from the rollups. */
+    public void onDeleted(Order order) {
+        apply(order, order.getStatus(), -1);
+    }
+
+    /**
+     * Moves an order from status {@code from} to {@code to}; statuses are passed explicitly
+     * because the order may have changed again by the time the delta is applied.
+     */
+    public void onStatusChanged(Order order, OrderStatus from, OrderStatus to) {
+        lock.writeLock().lock();
+        try {
+            applyUnlocked(order, from, -1);
+            applyUnlocked(order, to, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Returns the figures over every order. */
+    public Summary getSummary() {
+        lock.readLock().lock();
+        try {
+            return summary(rollups.byStatus);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns the figures over the orders of one seller. */
+    public Summary getSellerSummary(String sellerId) {
+        lock.readLock().lock();
+        try {
+            return summary(rollups.bySellerStatus.getOrDefault(sellerId, Map.of()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the average order value of a seller for each day with orders in
+     * {@code [from, to]}; null bounds are open.
+     */
+    public List<DailyAverage> getSellerDailyAverages(String sellerId, LocalDate from, LocalDate to) {
+        List<DailyAverage> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            TreeMap<LocalDate, Totals> days = rollups.bySellerDay.get(sellerId);
+            if (days == null) {
+                return result;
+            }
+            Map<LocalDate, Totals> range = days.subMap(from == null ? LocalDate.MIN : from, true,
+                    to == null ? LocalDate.MAX : to, true);
+            range.forEach((day, totals) -> result.add(new DailyAverage(day, totals.count, totals.cents / 100.0 / totals.count)));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Compares the live rollups with a fresh computation from the database. */
+    public Check check() {
+        Rollups expected = load();
+        List<String> differences = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            compare("total", expected.byStatus, rollups.byStatus, differences);
+            Set<String> sellers = new HashSet<>(expected.bySellerStatus.keySet());
+            sellers.addAll(rollups.bySellerStatus.keySet());
+            for (String seller : sellers) {
+                compare("seller " + seller, expected.bySellerStatus.getOrDefault(seller, Map.of()),
+                        rollups.bySellerStatus.getOrDefault(seller, Map.of()), differences);
+                compare("seller " + seller, expected.bySellerDay.getOrDefault(seller, new TreeMap<>()),
+                        rollups.bySellerDay.getOrDefault(seller, new TreeMap<>()), differences);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new Check(differences.isEmpty(), differences);
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private Rollups load() {
+        Rollups loaded = new Rollups();
+        jdbcTemplate.query(ROLLUP_QUERY, rs -> {
+            int status = rs.getInt(2);
+            if (rs.wasNull()) {
+                return;
+            }
+            java.sql.Date day = rs.getDate(3);
+            loaded.add(rs.getString(1), OrderStatus.values()[status], day == null ? null : day.toLocalDate(),
+                    rs.getLong(4), rs.getLong(5));
+        });
+        return loaded;
+    }
+
+    private void apply(Order order, OrderStatus status, int sign) {
+        lock.writeLock().lock();
+        try {
+            applyUnlocked(order, status, sign);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyUnlocked(Order order, OrderStatus status, int sign) {
+        if (status == null) {
+            return;
+        }
+        String sellerId = order.getSeller() == null ? null : order.getSeller().getId();
+        LocalDate day = order.getOrderDate() == null ? null : order.getOrderDate().toLocalDateTime().toLocalDate();
+        rollups.add(sellerId, status, day, sign, sign * Math.round(order.getTotalAmount() * 100));
+    }
+
+    private static Summary summary(Map<OrderStatus, Totals> byStatus) {
+        Map<OrderStatus, Long> counts = new EnumMap<>(OrderStatus.class);
+        long count = 0;
+        long cents = 0;
+        for (OrderStatus status : OrderStatus.values()) {
+            Totals totals = byStatus.get(status);
+            long n = totals == null ? 0 : totals.count;
+            counts.put(status, n);
+            if (totals != null) {
+                count += totals.count;
+                cents += totals.cents;
+            }
+        }
+        Totals delivered = byStatus.get(OrderStatus.DELIVERED);
+        double revenue = delivered == null ? 0 : delivered.cents / 100.0;
+        return new Summary(revenue, count == 0 ? 0 : cents / 100.0 / count, counts);
+    }
+
+    private static <K> void compare(String scope, Map<K, Totals> expected, Map<K, Totals> actual, List<String> differences) {
+        Set<K> keys = new HashSet<>(expected.keySet());
+        keys.addAll(actual.keySet());
+        for (K key : keys) {
+            Totals e = expected.get(key);
+            Totals a = actual.get(key);
+            boolean bothEmpty = (e == null || e.count == 0) && (a == null || a.count == 0);
+            if (!bothEmpty && (e == null || !e.matches(a))) {
+                differences.add(scope + " " + key + ": expected " + describe(e) + ", found " + describe(a));
+            }
+        }
+    }
+
+    private static String describe(Totals totals) {
+        return totals == null ? "none" : totals.count + " orders / " + totals.cents / 100.0;
+    }
+}
@@ -0,0 +1,231 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bulk deletion and archival of old orders.
+ *
+ * <p>Matching orders are processed {@link #CHUNK_SIZE} at a time, each chunk in its own
+ * transaction, with set-based statements: orders and items are copied to
+ * {@code orders_archive} and {@code order_item_archive} (unless purging) and then
+ * deleted, so a chunk costs a handful of statements whatever its size. Jobs run in the
+ * background, one at a time, and report their progress and throughput; the same job
+ * runs on the {@code orders.archive.cron} schedule for orders older than
+ * {@code orders.archive.retention-days}.</p>
+ *
+ * <p>Archived orders are not returned to stock.</p>
+ */
+@Component
+public class OrderArchiver {
+
+    /** Orders moved per transaction. */
+    public static final int CHUNK_SIZE = 1000;
+    /** Number of finished jobs whose progress is remembered. */
+    public static final int MAX_TRACKED = 100;
+
+    private static final String ORDER_COLUMNS = "id, buyer_id, seller_id, total_amount, status, order_date, "
+            + "expected_delivery_date, actual_delivery_date, delivery_address, payment_method, notes, delivery_method, "
+            + "overdue, version";
+
+    @Value("${orders.archive.retention-days:365}")
+    private int retentionDays;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private OrderAnalytics analytics;
+    @Autowired
+    private OrderTimeIndex timeIndex;
+    @Autowired
+    private OverdueOrderDetector overdueDetector;
+    @Autowired
+    private OrderJournal journal;
+
+    private final AtomicReference<Job> running = new AtomicReference<>();
+    private final Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            return size() > MAX_TRACKED;
+        }
+    });
+
+    /** State of an archival job. */
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    /**
+     * Progress of an archival job.
+     *
+     * @param id              job id
+     * @param state           current state
+     * @param archive         true if orders are copied to the archive tables, false if only deleted
+     * @param total           orders matching when the job started
+     * @param processed       orders moved so far
+     * @param items           order items moved so far
+     * @param ordersPerSecond average throughput
+     * @param startedAt       start time
+     * @param finishedAt      end time, null while running
+     * @param error           failure message, null unless failed
+     */
+    public record Progress(String id, State state, boolean archive, long total, long processed, long items,
+                           double ordersPerSecond, Timestamp startedAt, Timestamp finishedAt, String error) {
+    }
+
+    /** Mutable job state; written by the job thread only. */
+    private static final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final boolean archive;
+        private final long startedAt = System.currentTimeMillis();
+        private volatile State state = State.RUNNING;
+        private volatile long total;
+        private volatile long processed;
+        private volatile long items;
+        private volatile long finishedAt;
+        private volatile String error;
+
+        private Job(boolean archive) {
+            this.archive = archive;
+        }
+
+        private Progress snapshot() {
+            long end = finishedAt == 0 ? System.currentTimeMillis() : finishedAt;
+            double seconds = Math.max(end - startedAt, 1) / 1000.0;
+            return new Progress(id, state, archive, total, processed, items, processed / seconds,
+                    new Timestamp(startedAt), finishedAt == 0 ? null : new Timestamp(finishedAt), error);
+        }
+    }
+
+    /**
+     * Starts moving the orders placed before {@code before} whose status is in
+     * {@code statuses}.
+     *
+     * @param archive true to copy them to the archive tables, false to delete them only
+     * @return the initial progress, or null if another job is running
+     * @throws IllegalArgumentException if no status is given
+     */
+    public Progress start(Timestamp before, Set<OrderStatus> statuses, boolean archive) {
+        if (statuses.isEmpty()) {
+            throw new IllegalArgumentException("At least one status is required");
+        }
+        Job job = new Job(archive);
+        if (!running.compareAndSet(null, job)) {
+            return null;
+        }
+        jobs.put(job.id, job);
+        Thread.ofVirtual().name("order-archiver-" + job.id).start(() -> run(job, before, List.copyOf(statuses)));
+        return job.snapshot();
+    }
+
+    /** Returns the progress of a job, or null if unknown. */
+    public Progress getProgress(String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null ? null : job.snapshot();
+    }
+
+    /** Archives delivered and cancelled orders older than the retention period. */
+    @Scheduled(cron = "${orders.archive.cron:-}")
+    public void archiveExpired() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+        start(new Timestamp(cutoff), OverdueOrderDetector.CLOSED, true);
+    }
+
+    /**
+     * Deletes the given orders, their items and join rows with set-based statements,
+     * copying them to the archive tables first when {@code archive} is true. Must run in
+     * the caller's transaction; in-memory indexes are not updated.
+     *
+     * @return number of order items moved
+     */
+    public int moveRows(List<String> orderIds, boolean archive) {
+        String in = placeholders(orderIds.size());
+        Object[] ids = orderIds.toArray();
+        List<String> itemIds = jdbcTemplate.queryForList(
+                "select order_items_id from orders_order_items where order_id in (" + in + ")", String.class, ids);
+        if (archive) {
+            Object[] args = new Object[ids.length + 1];
+            args[0] = new Timestamp(System.currentTimeMillis());
+            System.arraycopy(ids, 0, args, 1, ids.length);
+            jdbcTemplate.update("insert into orders_archive (" + ORDER_COLUMNS + ", archived_at) select " + ORDER_COLUMNS
+                    + ", ? from orders where id in (" + in + ")", args);
+            jdbcTemplate.update("insert into order_item_archive (id, order_id, product_id, quantity, notes) "
+                    + "select i.id, j.order_id, i.product_id, i.quantity, i.notes from order_item i "
+                    + "join orders_order_items j on j.order_items_id = i.id where j.order_id in (" + in + ")", ids);
+        }
+        jdbcTemplate.update("delete from orders_order_items where order_id in (" + in + ")", ids);
+        for (int i = 0; i < itemIds.size(); i += CHUNK_SIZE) {
+            List<String> chunk = itemIds.subList(i, Math.min(i + CHUNK_SIZE, itemIds.size()));
+            jdbcTemplate.update("delete from order_item where id in (" + placeholders(chunk.size()) + ")", chunk.toArray());
+        }
+        jdbcTemplate.update("delete from orders where id in (" + in + ")", ids);
+        return itemIds.size();
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private void run(Job job, Timestamp before, List<OrderStatus> statuses) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        String filter = "from orders where order_date < ? and status in (" + placeholders(statuses.size()) + ")";
+        List<Object> args = new ArrayList<>();
+        args.add(before);
+        statuses.forEach(s -> args.add(s.ordinal()));
+        State outcome = State.FAILED;
+        try {
+            job.total = jdbcTemplate.queryForObject("select count(*) " + filter, Long.class, args.toArray());
+            args.add("");
+            args.add(CHUNK_SIZE);
+            while (true) {
+                List<String> ids = jdbcTemplate.queryForList("select id " + filter + " and id > ? order by id limit ?",
+                        String.class, args.toArray());
+                if (ids.isEmpty()) {
+                    break;
+                }
+                Integer items = tx.execute(status -> moveRows(ids, job.archive));
+                for (String id : ids) {
+                    timeIndex.remove(id);
+                    overdueDetector.cancel(id);
+                    journal.removed(id, job.archive);
+                }
+                job.processed += ids.size();
+                job.items += items;
+                args.set(args.size() - 2, ids.get(ids.size() - 1));
+            }
+            outcome = State.COMPLETED;
+        } catch (RuntimeException e) {
+            job.error = e.getMessage();
+        } finally {
+            if (job.processed > 0) {
+                analytics.rebuild();
+            }
+            job.finishedAt = System.currentTimeMillis();
+            job.state = outcome;
+            running.set(null);
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,177 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the orders placed in a date range for accounting.
+ *
+ * <p>Rows are read from a database cursor ({@link #FETCH_SIZE} at a time) in order date
+ * order and written straight to the output, either as gzip compressed CSV or as a
+ * {@link ColumnarFile}; memory use does not depend on the number of orders. Items are
+ * not loaded: each row carries the number of lines of the order.</p>
+ */
+@Component
+public class OrderExporter {
+
+    /** Rows fetched per database round trip. */
+    public static final int FETCH_SIZE = 1000;
+
+    private static final String QUERY = "select o.id, o.order_date, o.seller_id, o.buyer_id, o.status, o.total_amount, "
+            + "(select count(*) from orders_order_items j where j.order_id = o.id), "
+            + "o.expected_delivery_date, o.actual_delivery_date, o.payment_method, o.delivery_method, o.overdue "
+            + "from orders o where o.order_date >= ? and o.order_date < ? order by o.order_date, o.id";
+
+    /** Exported columns, in order. */
+    public static final List<ColumnarFile.Column> COLUMNS = List.of(
+            new ColumnarFile.Column("id", ColumnarFile.Type.STRING),
+            new ColumnarFile.Column("order_date", ColumnarFile.Type.TIMESTAMP),
+            new ColumnarFile.Column("seller_id", ColumnarFile.Type.STRING),
+            new ColumnarFile.Column("buyer_id", ColumnarFile.Type.STRING),
+            new ColumnarFile.Column("status", ColumnarFile.Type.STRING),
+            new ColumnarFile.Column("total_amount", ColumnarFile.Type.DOUBLE),
+            new ColumnarFile.Column("items", ColumnarFile.Type.INT),
+            new ColumnarFile.Column("expected_delivery_date", ColumnarFile.Type.TIMESTAMP),
+            new ColumnarFile.Column("actual_delivery_date", ColumnarFile.Type.TIMESTAMP),
+            new ColumnarFile.Column("payment_method", ColumnarFile.Type.STRING),
+            new ColumnarFile.Column("delivery_method", ColumnarFile.Type.STRING),
+            new ColumnarFile.Column("overdue", ColumnarFile.Type.BOOLEAN));
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate cursorTemplate;
+
+    /** Output formats. */
+    public enum Format {
+        /** Gzip compressed, comma separated values with a header line. */
+        CSV("orders.csv.gz", "application/gzip"),
+        /** {@link ColumnarFile} with deflated columns. */
+        COLUMNAR("orders.facf", "application/octet-stream");
+
+        private final String fileName;
+        private final String mediaType;
+
+        Format(String fileName, String mediaType) {
+            this.fileName = fileName;
+            this.mediaType = mediaType;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        cursorTemplate = new JdbcTemplate(dataSource);
+        cursorTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    /**
+     * Writes the orders placed in {@code [from, to)} to {@code out}, which is not closed.
+     *
+     * @return number of exported orders
+     */
+    public long export(Timestamp from, Timestamp to, Format format, OutputStream out) throws IOException {
+        try {
+            return format == Format.CSV ? exportCsv(from, to, out) : exportColumnar(from, to, out);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private long exportCsv(Timestamp from, Timestamp to, OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(String.join(",", COLUMNS.stream().map(ColumnarFile.Column::name).toList()));
+        writer.write('\n');
+        long[] rows = {0};
+        cursorTemplate.query(QUERY, rs -> {
+            Object[] values = values(rs);
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(csv(values[i]));
+                }
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        }, from, to);
+        writer.flush();
+        gzip.finish();
+        return rows[0];
+    }
+
+    private long exportColumnar(Timestamp from, Timestamp to, OutputStream out) throws IOException {
+        ColumnarFile.Writer writer = new ColumnarFile.Writer(out, COLUMNS);
+        long[] rows = {0};
+        cursorTemplate.query(QUERY, rs -> {
+            try {
+                writer.write(values(rs));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        }, from, to);
+        writer.finish();
+        return rows[0];
+    }
+
+    private static Object[] values(ResultSet rs) throws SQLException {
+        int status = rs.getInt(5);
+        String statusName = rs.wasNull() ? null : OrderStatus.values()[status].name();
+        return new Object[]{
+                rs.getString(1),
+                rs.getTimestamp(2),
+                rs.getString(3),
+                rs.getString(4),
+                statusName,
+                rs.getDouble(6),
+                rs.getInt(7),
+                rs.getTimestamp(8),
+                rs.getTimestamp(9),
+                rs.getString(10),
+                rs.getString(11),
+                rs.getBoolean(12)
+        };
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof Timestamp ts ? ts.toInstant().toString() : value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,234 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.controllers.dto.OrderDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous order intake: accepted orders wait in a bounded in-process queue and are
+ * persisted in micro-batches by virtual-thread workers through
+ * {@link OrderService#createOrders(Map)}.
+ *
+ * <p>When the queue is full {@link #submit(OrderDto)} refuses the order instead of
+ * blocking, so callers can apply backpressure. The outcome of the most recent
+ * {@link #MAX_TRACKED} submissions is kept for polling. At shutdown new orders are
+ * refused and the workers finish the batch in hand and drain the queue, for up to
+ * {@code orders.intake.drain-seconds}; they are interrupted only past that, and whatever
+ * is still queued is then persisted before the application stops.</p>
+ */
+@Component
+public class OrderIntake {
+
+    /** Maximum number of orders persisted by a worker in one transaction. */
+    public static final int BATCH_SIZE = 50;
+    /** Number of submissions whose status is remembered. */
+    public static final int MAX_TRACKED = 10_000;
+    private static final long POLL_MILLIS = 100;
+
+    @Value("${orders.intake.capacity:1000}")
+    private int capacity;
+    @Value("${orders.intake.workers:4}")
+    private int workers;
+    @Value("${orders.intake.drain-seconds:30}")
+    private long drainSeconds;
+
+    @Autowired
+    private OrderService orderService;
+
+    private BlockingQueue<Submission> queue;
+    private ExecutorService executor;
+    private volatile boolean stopping;
+    private final Map<String, Status> statuses = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Status> eldest) {
+            return size() > MAX_TRACKED;
+        }
+    });
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final AtomicLong totalBatchNanos = new AtomicLong();
+    private final AtomicLong maxBatchNanos = new AtomicLong();
+
+    /** Processing state of a submitted order. */
+    public enum Status {
+        /** Waiting in the queue or being persisted. */
+        QUEUED,
+        /** Persisted. */
+        CREATED,
+        /**
+         * Not created: buyer or seller do not exist, some product has not enough stock, or
+         * the reservation is unknown, expired or does not cover the missing units.
+         */
+        REJECTED,
+        /** Persistence failed. */
+        FAILED
+    }
+
+    /**
+     * Intake metrics.
+     *
+     * @param queueDepth       orders waiting to be persisted
+     * @param capacity         maximum queue depth
+     * @param accepted         orders accepted since startup
+     * @param rejected         orders refused because the queue was full or the intake was stopping
+     * @param created          orders persisted
+     * @param failed           orders not persisted: rejected (unknown users, short stock,
+     *                         unusable reservation) or failed
+     * @param batches          micro-batches processed
+     * @param avgBatchMillis   average micro-batch duration
+     * @param maxBatchMillis   longest micro-batch duration
+     */
+    public record Stats(int queueDepth, int capacity, long accepted, long rejected, long created, long failed,
+                        long batches, double avgBatchMillis, double maxBatchMillis) {
+    }
+
+    private record Submission(String orderId, OrderDto order) {
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < workers; i++) {
+            executor.submit(this::work);
+        }
+    }
+
+    /**
+     * Refuses new orders and lets the workers drain the queue; interrupts them only if
+     * they are not done within the drain timeout, then persists whatever is still queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopping = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(drainSeconds, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        List<Submission> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, BATCH_SIZE) > 0) {
+            process(remaining);
+            remaining.clear();
+        }
+    }
+
+    /**
+     * Queues an order for creation.
+     *
+     * @return the id the order will have, or null if the queue is full or the intake is
+     *         shutting down
+     */
+    public String submit(OrderDto order) {
+        if (stopping) {
+            rejected.increment();
+            return null;
+        }
+        String id = UUID.randomUUID().toString();
+        statuses.put(id, Status.QUEUED);
+        if (!queue.offer(new Submission(id, order))) {
+            statuses.remove(id);
+            rejected.increment();
+            return null;
+        }
+        accepted.increment();
+        return id;
+    }
+
+    /** Returns the status of a recent submission, or null if unknown. */
+    public Status getStatus(String orderId) {
+        return statuses.get(orderId);
+    }
+
+    /** Returns the current intake metrics. */
+    public Stats stats() {
+        long count = batches.sum();
+        double avg = count == 0 ? 0 : totalBatchNanos.get() / 1e6 / count;
+        return new Stats(queue.size(), capacity, accepted.sum(), rejected.sum(), created.sum(), failed.sum(),
+                count, avg, maxBatchNanos.get() / 1e6);
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    /** Persists batches until interrupted, or until the intake stops and the queue is empty. */
+    private void work() {
+        List<Submission> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Submission first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (stopping) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                process(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(List<Submission> batch) {
+        long start = System.nanoTime();
+        try {
+            persist(batch);
+        } catch (RuntimeException e) {
+            // one bad order must not fail the others: retry them one by one
+            for (Submission s : batch) {
+                try {
+                    persist(List.of(s));
+                } catch (RuntimeException single) {
+                    statuses.put(s.orderId(), Status.FAILED);
+                    failed.increment();
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        batches.increment();
+        totalBatchNanos.addAndGet(elapsed);
+        maxBatchNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    private void persist(List<Submission> batch) {
+        Map<String, OrderDto> orders = new LinkedHashMap<>();
+        for (Submission s : batch) {
+            orders.put(s.orderId(), s.order());
+        }
+        Set<String> ids = orderService.createOrders(orders);
+        for (Submission s : batch) {
+            if (ids.contains(s.orderId())) {
+                statuses.put(s.orderId(), Status.CREATED);
+                created.increment();
+            } else {
+                statuses.put(s.orderId(), Status.REJECTED);
+                failed.increment();
+            }
+        }
+    }
+}
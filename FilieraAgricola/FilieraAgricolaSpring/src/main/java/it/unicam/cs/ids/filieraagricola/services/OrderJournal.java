@@ -0,0 +1,341 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unicam.cs.ids.filieraagricola.model.Order;
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+import it.unicam.cs.ids.filieraagricola.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of order events: creation, status changes, deletion and archival.
+ *
+ * <p>Events are JSON encoded and appended to memory-mapped segment files of
+ * {@code orders.journal.segment-bytes}; a full segment is forced to disk and a new one,
+ * named after its first sequence number, is started. Each record is its length, a
+ * CRC32C and the payload; a zero length marks the end of a segment. An append only
+ * copies bytes into the mapping, so it costs no I/O: a background thread forces dirty
+ * segments every {@code orders.journal.fsync-millis} (group commit). A crash of the JVM
+ * alone loses nothing, since the written pages belong to the OS page cache; an operating
+ * system crash or power failure loses the events appended since the last force, up to
+ * {@code orders.journal.fsync-millis} of them.</p>
+ *
+ * <p>{@link #replay(long, Consumer)} reads events back in order; {@link #replayState()}
+ * folds them into the last known state of every order, which can rebuild the analytics.</p>
+ */
+@Component
+public class OrderJournal {
+
+    private static final String PREFIX = "orders-";
+    private static final String SUFFIX = ".journal";
+    private static final int HEADER_BYTES = 8;
+
+    @Value("${orders.journal.dir:journal}")
+    private String directory;
+    @Value("${orders.journal.segment-bytes:67108864}")
+    private int segmentBytes;
+    @Value("${orders.journal.fsync-millis:10}")
+    private long fsyncMillis;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Path dir;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long nextSequence = 1;
+    private boolean dirty;
+    private final Object appendLock = new Object();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong appendNanos = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private ScheduledExecutorService syncer;
+
+    /** Kind of change recorded by an {@link Event}. */
+    public enum Type {
+        CREATED,
+        STATUS_CHANGED,
+        DELETED,
+        ARCHIVED
+    }
+
+    /**
+     * One change of an order.
+     *
+     * @param sequence    position in the journal, assigned on append
+     * @param timestamp   append time in epoch milliseconds
+     * @param type        kind of change
+     * @param orderId     changed order
+     * @param sellerId    seller, set on creation
+     * @param status      status after the change, null for removals
+     * @param previous    status before a status change
+     * @param totalAmount order amount, set on creation
+     * @param orderDate   order date in epoch milliseconds, set on creation
+     */
+    public record Event(long sequence, long timestamp, Type type, String orderId, String sellerId,
+                        OrderStatus status, OrderStatus previous, double totalAmount, Long orderDate) {
+    }
+
+    /**
+     * Journal metrics.
+     *
+     * @param segments          segment files
+     * @param lastSequence      sequence of the last appended event
+     * @param appended          events appended since startup
+     * @param avgAppendMicros   average time spent in {@link #append}
+     * @param syncs             group commits performed
+     */
+    public record Stats(int segments, long lastSequence, long appended, double avgAppendMicros, long syncs) {
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        dir = Path.of(directory);
+        Files.createDirectories(dir);
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentBytes));
+            nextSequence = firstSequence(last);
+            while (readRecord(segment) != null) {
+                nextSequence++;
+            }
+        }
+        syncer = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+        syncer.scheduleWithFixedDelay(this::sync, fsyncMillis, fsyncMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        syncer.shutdownNow();
+        synchronized (appendLock) {
+            segment.force();
+            channel.close();
+        }
+    }
+
+    /** Records the creation of an order. */
+    public void created(Order order) {
+        append(Type.CREATED, order.getId(), order.getSeller() == null ? null : order.getSeller().getId(),
+                order.getStatus(), null, order.getTotalAmount(),
+                order.getOrderDate() == null ? null : order.getOrderDate().getTime());
+    }
+
+    /** Records a status change. */
+    public void statusChanged(String orderId, OrderStatus previous, OrderStatus status) {
+        append(Type.STATUS_CHANGED, orderId, null, status, previous, 0, null);
+    }
+
+    /** Records the deletion or archival of an order. */
+    public void removed(String orderId, boolean archived) {
+        append(archived ? Type.ARCHIVED : Type.DELETED, orderId, null, null, null, 0, null);
+    }
+
+    /**
+     * Feeds every event with a sequence of at least {@code fromSequence} to {@code consumer},
+     * in order.
+     */
+    public void replay(long fromSequence, Consumer<Event> consumer) {
+        long end;
+        synchronized (appendLock) {
+            end = nextSequence;
+        }
+        try {
+            for (Path path : segments()) {
+                long sequence = firstSequence(path);
+                if (sequence >= end) {
+                    break;
+                }
+                try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                    byte[] payload;
+                    while (sequence < end && (payload = readRecord(buffer)) != null) {
+                        if (sequence >= fromSequence) {
+                            consumer.accept(objectMapper.readValue(payload, Event.class));
+                        }
+                        sequence++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Returns every event of one order, oldest first. */
+    public List<Event> history(String orderId) {
+        List<Event> events = new ArrayList<>();
+        replay(1, e -> {
+            if (orderId.equals(e.orderId())) {
+                events.add(e);
+            }
+        });
+        return events;
+    }
+
+    /**
+     * Replays the whole journal into the last known state of every order still existing,
+     * keyed by id, as detached {@link Order} instances carrying seller id, status, amount
+     * and order date.
+     */
+    public Map<String, Order> replayState() {
+        Map<String, Order> orders = new LinkedHashMap<>();
+        replay(1, e -> {
+            switch (e.type()) {
+                case CREATED -> {
+                    Order order = new Order();
+                    order.setId(e.orderId());
+                    if (e.sellerId() != null) {
+                        User seller = new User();
+                        seller.setId(e.sellerId());
+                        order.setSeller(seller);
+                    }
+                    order.setStatus(e.status());
+                    order.setTotalAmount(e.totalAmount());
+                    order.setOrderDate(e.orderDate() == null ? null : new Timestamp(e.orderDate()));
+                    orders.put(e.orderId(), order);
+                }
+                case STATUS_CHANGED -> {
+                    Order order = orders.get(e.orderId());
+                    if (order != null) {
+                        order.setStatus(e.status());
+                    }
+                }
+                case DELETED, ARCHIVED -> orders.remove(e.orderId());
+            }
+        });
+        return orders;
+    }
+
+    /** Forces the current segment to disk if anything was appended since the last call. */
+    public void sync() {
+        synchronized (appendLock) {
+            if (!dirty) {
+                return;
+            }
+            segment.force();
+            dirty = false;
+        }
+        syncs.incrementAndGet();
+    }
+
+    /** Returns segment count, sequence and append cost figures. */
+    public Stats stats() {
+        long count = appended.get();
+        int segmentCount;
+        try {
+            segmentCount = segments().size();
+        } catch (IOException e) {
+            segmentCount = -1;
+        }
+        synchronized (appendLock) {
+            return new Stats(segmentCount, nextSequence - 1, count,
+                    count == 0 ? 0 : appendNanos.get() / 1000.0 / count, syncs.get());
+        }
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private void append(Type type, String orderId, String sellerId, OrderStatus status, OrderStatus previous,
+                        double totalAmount, Long orderDate) {
+        long started = System.nanoTime();
+        try {
+            synchronized (appendLock) {
+                Event event = new Event(nextSequence, System.currentTimeMillis(), type, orderId, sellerId,
+                        status, previous, totalAmount, orderDate);
+                byte[] payload = objectMapper.writeValueAsBytes(event);
+                if (HEADER_BYTES + payload.length + 4 > segmentBytes) {
+                    throw new IllegalArgumentException("Event larger than a journal segment");
+                }
+                if (segment.remaining() < HEADER_BYTES + payload.length + 4) {
+                    segment.force();
+                    channel.close();
+                    openSegment(nextSequence);
+                }
+                CRC32C crc = new CRC32C();
+                crc.update(payload);
+                segment.putInt(payload.length);
+                segment.putInt((int) crc.getValue());
+                segment.put(payload);
+                nextSequence++;
+                dirty = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        appended.incrementAndGet();
+        appendNanos.addAndGet(System.nanoTime() - started);
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        Path path = dir.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        nextSequence = firstSequence;
+    }
+
+    /**
+     * Reads the record at the buffer position, advancing past it; returns null at the end
+     * of the segment or at a torn record, leaving the position on it.
+     */
+    private static byte[] readRecord(MappedByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            buffer.position(start);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            buffer.position(start);
+            return null;
+        }
+        return payload;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(PREFIX) && p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,13 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import java.sql.Timestamp;
+
+/**
+ * Published by {@link OverdueOrderDetector} when an order passes its expected delivery
+ * date without being delivered.
+ *
+ * @param orderId    id of the overdue order
+ * @param detectedAt when the deadline fired
+ */
+public record OrderOverdueEvent(String orderId, Timestamp detectedAt) {
+}
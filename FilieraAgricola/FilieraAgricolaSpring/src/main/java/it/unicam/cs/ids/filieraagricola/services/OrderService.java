@@ -3,52 +3,167 @@ package it.unicam.cs.ids.filieraagricola.services;
 import it.unicam.cs.ids.filieraagricola.controllers.dto.OrderDto;
 import it.unicam.cs.ids.filieraagricola.controllers.dto.OrderItemDto;
 import it.unicam.cs.ids.filieraagricola.model.*;
-import it.unicam.cs.ids.filieraagricola.model.repositories.OrderItemRepository;
 import it.unicam.cs.ids.filieraagricola.model.repositories.OrderRepository;
 import it.unicam.cs.ids.filieraagricola.model.repositories.ProductRepository;
 import it.unicam.cs.ids.filieraagricola.model.repositories.UserRepository;
+import it.unicam.cs.ids.filieraagricola.services.exception.ConflictException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.boot.http.client.ClientHttpRequestFactorySettings;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Application service that manages {@link Order} lifecycle.
  *
- * <p>Uses Spring Data repositories to persist orders and order items. The current
- * implementation performs simple create/find/delete operations without explicit
- * transaction demarcation in this class.</p>
+ * <p>Uses Spring Data repositories to persist orders and order items; order creation
+ * runs in a single transaction.</p>
  */
 @Service
 public class OrderService {
 
     public static final int DEFAULT_DELIVERY_TIME = 1000 * 3600 * 24 * 4;
+    /** Compare-and-set attempts of {@link #updateStatus} before giving up under contention. */
+    public static final int MAX_STATUS_ATTEMPTS = 16;
     @Autowired
     private OrderRepository orderRepository;
     @Autowired
-    private OrderItemRepository orderItemRepository;
-    @Autowired
     private UserRepository userRepository;
     @Autowired
     private ProductRepository productRepository;
     @Autowired
     private ClientHttpRequestFactorySettings clientHttpRequestFactorySettings;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private OrderAnalytics analytics;
+    @Autowired
+    private OrderTimeIndex timeIndex;
+    @Autowired
+    private OverdueOrderDetector overdueDetector;
+    @Autowired
+    private StockService stockService;
+    @Autowired
+    private OrderArchiver archiver;
+    @Autowired
+    private OrderJournal journal;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
     /** Returns all orders. */
     public List<Order> findAll() {
         return orderRepository.findAll();
     }
 
+    /** Returns the keyset page of orders after the given id. */
+    public List<Order> findPage(String after, int limit) {
+        return orderRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+    }
+
+    /**
+     * Streams all orders, with buyer and seller, from a database cursor; must be consumed
+     * in a transaction. Items are lazy, see {@link #fetchItems(List)}.
+     */
+    public Stream<Order> streamAll() {
+        return orderRepository.streamAllByOrderByIdAsc();
+    }
+
+    /** Initializes the items of loaded orders, and their products, with one query. */
+    public void fetchItems(List<Order> orders) {
+        if (!orders.isEmpty()) {
+            orderRepository.fetchItems(orders);
+        }
+    }
+
+    /**
+     * Returns the keyset page of orders placed in {@code [from, to)}, ordered by order date
+     * and id. Ranges within the recent window are resolved by {@link OrderTimeIndex} and
+     * fetched by primary key; older ranges use the {@code orders} date indexes.
+     *
+     * @param sellerId optional seller filter, null for every seller
+     * @param after    cursor returned by {@link #cursorOf(Order)}, null for the first page
+     * @throws IllegalArgumentException if the range is inverted or the cursor is malformed
+     */
+    public List<Order> findByDateRange(Timestamp from, Timestamp to, String sellerId, String after, int limit) {
+        if (from.after(to)) {
+            throw new IllegalArgumentException("Range start must not follow its end");
+        }
+        OrderTimeIndex.TimeKey cursor = new OrderTimeIndex.TimeKey(from.getTime(), "");
+        if (after != null && !after.isEmpty()) {
+            OrderTimeIndex.TimeKey parsed = OrderTimeIndex.TimeKey.parse(after);
+            if (parsed.compareTo(cursor) > 0) {
+                cursor = parsed;
+            }
+        }
+        if (timeIndex.covers(from.getTime())) {
+            List<String> ids = new ArrayList<>();
+            for (OrderTimeIndex.TimeKey key : timeIndex.query(cursor, to.getTime(), sellerId, limit)) {
+                ids.add(key.id());
+            }
+            Map<String, Order> byId = new HashMap<>();
+            for (Order o : orderRepository.findAllById(ids)) {
+                byId.put(o.getId(), o);
+            }
+            List<Order> page = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                Order o = byId.get(id);
+                if (o != null) {
+                    page.add(o);
+                }
+            }
+            return page;
+        }
+        Timestamp afterDate = new Timestamp(cursor.millis());
+        if (sellerId == null) {
+            return orderRepository.findDatePage(afterDate, cursor.id(), to, Limit.of(limit));
+        }
+        return orderRepository.findSellerDatePage(sellerId, afterDate, cursor.id(), to, Limit.of(limit));
+    }
+
+    /** Returns the keyset cursor of an order for {@link #findByDateRange}. */
+    public static String cursorOf(Order order) {
+        return OrderTimeIndex.TimeKey.of(order).toString();
+    }
+
+    /** Checks whether an order exists. */
+    public boolean exists(String id) {
+        return orderRepository.existsById(id);
+    }
+
     /** Returns orders by {@link OrderStatus}. */
     public List<Order> findByOrderStatus(OrderStatus status) {
         return orderRepository.findByStatus(status);
     }
 
+    /** Returns the orders flagged overdue by {@link OverdueOrderDetector}. */
+    public List<Order> findOverdue() {
+        return orderRepository.findByOverdueTrue();
+    }
+
     /** Returns orders for a given buyer id, or empty list if buyer missing. */
     public List<Order> findByBuyer(String buyerId) {
         Optional<User> opt = userRepository.findById(buyerId);
@@ -70,69 +185,260 @@ public class OrderService {
     /**
      * Creates a new order and associated order items from the provided DTO.
      *
-     * @return true if successfully created, false if buyer or seller missing
+     * @return true if successfully created, false if buyer or seller missing or out of stock
+     * @see #createOrders(Map)
      */
+    @Transactional
     public boolean createOrder(OrderDto orderDto) {
-        Optional<User> optBuyer = userRepository.findById(orderDto.getBuyerId());
-        if (optBuyer.isEmpty()) {
-            return false;
-        }
-        Optional<User> optSeller = userRepository.findById(orderDto.getSellerId());
-        if (optSeller.isEmpty()) {
-            return false;
-        }
-        List<OrderItem> items = new LinkedList<>();
-        double totalAmount = 0;
-        for (OrderItemDto dto : orderDto.getOrderItemDtoList()) {
-            Optional<Product> opt = productRepository.findById(dto.getProductId());
-            if (opt.isPresent()) {
-                Product product = opt.get();
-                OrderItem item = new OrderItem();
-                item.setId(UUID.randomUUID().toString());
-                item.setQuantity(dto.getQuantity());
-                item.setNotes(dto.getNotes());
-                item.setProduct(product);
-                orderItemRepository.save(item);
-                items.add(item);
-                double amount = item.getQuantity() * product.getPrice();
-                totalAmount += amount;
+        return !createOrders(Map.of(UUID.randomUUID().toString(), orderDto)).isEmpty();
+    }
+
+    /**
+     * Creates several orders, keyed by the id each one must get, in one transaction.
+     *
+     * <p>Buyers and sellers are loaded with one query and every referenced product with
+     * another; items and their join rows are written with JDBC batches, so the number of
+     * round trips depends neither on the number of lines nor on the number of orders.
+     * Orders whose buyer or seller is missing, or whose stock cannot be taken from
+     * {@link StockService}, are not created; an order with a reservation sells its own
+     * units through it and is refused if the reservation is unknown or the units it does
+     * not cover are not available. Lines referring to unknown products are skipped.</p>
+     *
+     * @return ids of the orders actually created
+     */
+    @Transactional
+    public Set<String> createOrders(Map<String, OrderDto> orderDtos) {
+        Set<String> userIds = new HashSet<>();
+        Set<String> productIds = new HashSet<>();
+        for (OrderDto dto : orderDtos.values()) {
+            userIds.add(dto.getBuyerId());
+            userIds.add(dto.getSellerId());
+            for (OrderItemDto item : dto.getOrderItemDtoList()) {
+                productIds.add(item.getProductId());
             }
         }
+        Map<String, User> users = new HashMap<>();
+        for (User u : userRepository.findAllById(userIds)) {
+            users.put(u.getId(), u);
+        }
+        Map<String, Product> products = new HashMap<>();
+        for (Product p : productRepository.findAllById(productIds)) {
+            products.put(p.getId(), p);
+        }
+        if (orderDtos.size() > 1) {
+            // each order adjusts its own products in id order; lock the whole batch's up front
+            stockService.lockRows(productIds);
+        }
 
-        Order order = new Order();
-        order.setBuyer(optBuyer.get());
-        order.setSeller(optSeller.get());
-        order.setOrderItems(items);
-        order.setTotalAmount(totalAmount);
-        order.setStatus(OrderStatus.PROCESSING);
-        order.setOrderDate(new Timestamp(System.currentTimeMillis()));
-        order.setExpectedDeliveryDate(new Timestamp(System.currentTimeMillis() + DEFAULT_DELIVERY_TIME));
-        order.setActualDeliveryDate(order.getExpectedDeliveryDate());
-        order.setDeliveryAddress(orderDto.getDeliveryAddress());
-        order.setPaymentMethod(orderDto.getPaymentMethod());
-        order.setDeliveryMethod(orderDto.getDeliveryMethod());
-        order.setNotes(orderDto.getNotes());
-        orderRepository.save(order);
-        return true;
-    }
+        Set<String> created = new LinkedHashSet<>();
+        List<Order> orders = new ArrayList<>();
+        List<OrderItem> items = new ArrayList<>();
+        List<String> itemOrderIds = new ArrayList<>();
+        for (Map.Entry<String, OrderDto> entry : orderDtos.entrySet()) {
+            OrderDto orderDto = entry.getValue();
+            User buyer = users.get(orderDto.getBuyerId());
+            User seller = users.get(orderDto.getSellerId());
+            if (buyer == null || seller == null) {
+                continue;
+            }
+            double totalAmount = 0;
+            List<OrderItem> orderItems = new ArrayList<>();
+            Map<String, Integer> quantities = new HashMap<>();
+            for (OrderItemDto dto : orderDto.getOrderItemDtoList()) {
+                Product product = products.get(dto.getProductId());
+                if (product != null) {
+                    OrderItem item = new OrderItem(UUID.randomUUID().toString(), product, dto.getQuantity(), dto.getNotes());
+                    orderItems.add(item);
+                    quantities.merge(product.getId(), item.getQuantity(), Integer::sum);
+                    totalAmount += item.getQuantity() * product.getPrice();
+                }
+            }
+            boolean stocked = orderDto.getReservationId() != null
+                    ? stockService.commit(orderDto.getReservationId(), quantities)
+                    : stockService.take(quantities);
+            if (!stocked) {
+                continue;
+            }
+            for (OrderItem item : orderItems) {
+                items.add(item);
+                itemOrderIds.add(entry.getKey());
+            }
 
+            Order order = new Order();
+            order.setId(entry.getKey());
+            order.setBuyer(buyer);
+            order.setSeller(seller);
+            order.setOrderItems(new ArrayList<>());
+            order.setTotalAmount(totalAmount);
+            order.setStatus(OrderStatus.PROCESSING);
+            order.setOrderDate(new Timestamp(System.currentTimeMillis()));
+            order.setExpectedDeliveryDate(new Timestamp(System.currentTimeMillis() + DEFAULT_DELIVERY_TIME));
+            order.setActualDeliveryDate(order.getExpectedDeliveryDate());
+            order.setDeliveryAddress(orderDto.getDeliveryAddress());
+            order.setPaymentMethod(orderDto.getPaymentMethod());
+            order.setDeliveryMethod(orderDto.getDeliveryMethod());
+            order.setNotes(orderDto.getNotes());
+            // persist, not save: the id is already assigned and save would select it first
+            entityManager.persist(order);
+            orders.add(order);
+            created.add(entry.getKey());
+        }
+        entityManager.flush();
+        insertOrderItems(items, itemOrderIds);
+        TransactionHooks.afterCommit(() -> orders.forEach(o -> {
+            analytics.onCreated(o);
+            timeIndex.add(o);
+            overdueDetector.register(o);
+            journal.created(o);
+        }));
+        return created;
+    }
 
+    /**
+     * Moves an order to {@code target} if {@link OrderStatus#canTransitionTo} allows it.
+     *
+     * <p>No row is locked: the current status and version are read, then written back with
+     * a conditional update that succeeds only if nobody changed the order in between. When
+     * {@code expectedVersion} is null a lost race is retried against the new status, so
+     * concurrent callers never overwrite each other; with a version the caller asked for
+     * exactly that state and a lost race is a conflict.</p>
+     *
+     * <p>Each attempt runs in its own transaction, so a retry reads the status committed
+     * by the winner. The update and, for {@link OrderStatus#CANCELLED}, the restock commit
+     * or roll back together; the journal, analytics and overdue deadline follow the
+     * commit.</p>
+     *
+     * @param expectedVersion version the caller last read, or null for the current one
+     * @return the updated order, or null if it does not exist
+     * @throws ConflictException if the transition is not allowed from the current status,
+     *                           the version does not match or contention persists
+     */
+    public Order updateStatus(String id, OrderStatus target, Long expectedVersion) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target status is required");
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int attempt = 0; attempt < MAX_STATUS_ATTEMPTS; attempt++) {
+            StatusAttempt outcome = transaction.execute(status -> tryStatus(id, target, expectedVersion));
+            if (outcome.applied()) {
+                return outcome.order();
+            }
+        }
+        throw new ConflictException("Order " + id + " is under heavy contention, retry later");
+    }
 
     /** Deletes an order by id; also deletes the associated order items. */
+    @Transactional
     public boolean deleteOrder(String id) {
         Optional<Order> opt = orderRepository.findById(id);
         if (opt.isPresent()) {
             Order order = opt.get();
-            List<OrderItem> items = new LinkedList<>();
-            items.addAll(order.getOrderItems());
-            order.getOrderItems().clear();
-            order = orderRepository.save(order);
-            for (OrderItem i : items ) {
-                orderItemRepository.delete(i);
+            if (!OverdueOrderDetector.CLOSED.contains(order.getStatus())) {
+                stockService.restock(quantitiesOf(order.getOrderItems()));
             }
-            orderRepository.delete(order);
+            // rows go with set-based statements; the entity must not be flushed afterwards
+            entityManager.detach(order);
+            archiver.moveRows(List.of(id), false);
+            TransactionHooks.afterCommit(() -> {
+                analytics.onDeleted(order);
+                timeIndex.remove(id);
+                overdueDetector.cancel(id);
+                journal.removed(id, false);
+            });
             return true;
         }
         return false;
     }
-}
\ No newline at end of file
+
+    /* ----------------- private helpers ----------------- */
+
+    /** Outcome of one {@link #updateStatus} attempt; a lost race is not applied. */
+    private record StatusAttempt(boolean applied, Order order) {
+        private static final StatusAttempt LOST = new StatusAttempt(false, null);
+    }
+
+    /** Runs one compare-and-set of {@link #updateStatus} in the caller's transaction. */
+    private StatusAttempt tryStatus(String id, OrderStatus target, Long expectedVersion) {
+        Optional<OrderRepository.StatusVersion> current = orderRepository.findStatusVersion(id);
+        if (current.isEmpty()) {
+            return new StatusAttempt(true, null);
+        }
+        OrderStatus previous = current.get().getStatus();
+        long version = current.get().getVersion();
+        if (expectedVersion != null && expectedVersion != version) {
+            throw new ConflictException("Order " + id + " is at version " + version + ", not " + expectedVersion);
+        }
+        if (previous == null || !previous.canTransitionTo(target)) {
+            throw new ConflictException("Order " + id + " cannot move from " + previous + " to " + target);
+        }
+        Timestamp deliveredAt = target == OrderStatus.DELIVERED ? new Timestamp(System.currentTimeMillis()) : null;
+        if (orderRepository.compareAndSetStatus(id, version, previous, target, deliveredAt) != 1) {
+            if (expectedVersion != null) {
+                throw new ConflictException("Order " + id + " was modified concurrently");
+            }
+            return StatusAttempt.LOST;
+        }
+        if (target == OrderStatus.CANCELLED) {
+            stockService.restock(itemQuantities(id));
+        }
+        Order order = orderRepository.findById(id).orElse(null);
+        TransactionHooks.afterCommit(() -> {
+            journal.statusChanged(id, previous, target);
+            if (order != null) {
+                analytics.onStatusChanged(order, previous, target);
+            }
+            if (OverdueOrderDetector.CLOSED.contains(target)) {
+                overdueDetector.cancel(id);
+            }
+        });
+        return new StatusAttempt(true, order);
+    }
+
+    /** Returns the units of each product ordered by an order. */
+    private Map<String, Integer> itemQuantities(String orderId) {
+        Map<String, Integer> quantities = new HashMap<>();
+        jdbcTemplate.query("select i.product_id, i.quantity from order_item i "
+                        + "join orders_order_items j on j.order_items_id = i.id where j.order_id = ?",
+                (RowCallbackHandler) rs -> quantities.merge(rs.getString(1), rs.getInt(2), Integer::sum), orderId);
+        return quantities;
+    }
+
+    private static Map<String, Integer> quantitiesOf(List<OrderItem> items) {
+        Map<String, Integer> quantities = new HashMap<>();
+        for (OrderItem item : items) {
+            if (item.getProduct() != null) {
+                quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        return quantities;
+    }
+
+    /** Inserts items and their join rows with two JDBC batches; {@code orderIds} is parallel to {@code items}. */
+    private void insertOrderItems(List<OrderItem> items, List<String> orderIds) {
+        if (items.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "insert into order_item (id, notes, quantity, product_id) values (?, ?, ?, ?)",
+                items, items.size(), (ps, i) -> {
+                    ps.setString(1, i.getId());
+                    ps.setString(2, i.getNotes());
+                    ps.setInt(3, i.getQuantity());
+                    ps.setString(4, i.getProduct().getId());
+                });
+        jdbcTemplate.batchUpdate(
+                "insert into orders_order_items (order_id, order_items_id) values (?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, orderIds.get(i));
+                        ps.setString(2, items.get(i).getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return items.size();
+                    }
+                });
+    }
+}
@@ -0,0 +1,203 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.Order;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory time index of recent orders, ordered by (order date, id).
+ *
+ * <p>Only orders placed in the last {@code orders.time-index.days} days are kept; older
+ * ranges are answered by the {@code orders} table indexes. Keys are also kept per seller,
+ * so a range query visits only the orders it returns.</p>
+ */
+@Component
+public class OrderTimeIndex {
+
+    @Value("${orders.time-index.days:90}")
+    private int windowDays;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final NavigableSet<TimeKey> all = new TreeSet<>();
+    private final Map<String, NavigableSet<TimeKey>> bySeller = new HashMap<>();
+    private final Map<String, Entry> byId = new HashMap<>();
+    private long windowStart;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Position of an order in time; also used as keyset cursor.
+     *
+     * @param millis order date in epoch milliseconds
+     * @param id     order id, breaks ties between orders placed in the same millisecond
+     */
+    public record TimeKey(long millis, String id) implements Comparable<TimeKey> {
+
+        /** Returns the key of an order. */
+        public static TimeKey of(Order order) {
+            return new TimeKey(order.getOrderDate().getTime(), order.getId());
+        }
+
+        /**
+         * Parses a cursor produced by {@link #toString()}.
+         *
+         * @throws IllegalArgumentException if the cursor is malformed
+         */
+        public static TimeKey parse(String cursor) {
+            int separator = cursor.indexOf('_');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new TimeKey(Long.parseLong(cursor.substring(0, separator)), cursor.substring(separator + 1));
+        }
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int byTime = Long.compare(millis, other.millis);
+            return byTime != 0 ? byTime : id.compareTo(other.id);
+        }
+
+        @Override
+        public String toString() {
+            return millis + "_" + id;
+        }
+    }
+
+    private record Entry(TimeKey key, String sellerId) {
+    }
+
+    /** Loads the orders of the current window. */
+    @PostConstruct
+    public void rebuild() {
+        long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(windowDays);
+        List<Object[]> rows = jdbcTemplate.query("select id, seller_id, order_date from orders where order_date >= ?",
+                (rs, n) -> new Object[]{rs.getString(1), rs.getString(2), rs.getTimestamp(3)}, new Timestamp(start));
+        lock.writeLock().lock();
+        try {
+            all.clear();
+            bySeller.clear();
+            byId.clear();
+            windowStart = start;
+            for (Object[] row : rows) {
+                insert(new TimeKey(((Timestamp) row[2]).getTime(), (String) row[0]), (String) row[1]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Adds an order if it falls in the window, then drops orders that left it. */
+    public void add(Order order) {
+        if (order.getOrderDate() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            slide();
+            if (order.getOrderDate().getTime() >= windowStart && !byId.containsKey(order.getId())) {
+                insert(TimeKey.of(order), order.getSeller() == null ? null : order.getSeller().getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes an order; unknown ids are ignored. */
+    public void remove(String orderId) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = byId.remove(orderId);
+            if (entry != null) {
+                all.remove(entry.key());
+                removeFromSeller(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Returns true if every order placed from {@code fromMillis} on is indexed. */
+    public boolean covers(long fromMillis) {
+        lock.readLock().lock();
+        try {
+            return fromMillis >= windowStart;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns at most {@code limit} keys placed before {@code toMillis} and strictly after
+     * {@code after}, in time order.
+     *
+     * @param sellerId optional seller filter, null for every seller
+     */
+    public List<TimeKey> query(TimeKey after, long toMillis, String sellerId, int limit) {
+        List<TimeKey> result = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            NavigableSet<TimeKey> keys = sellerId == null ? all : bySeller.get(sellerId);
+            if (keys == null) {
+                return result;
+            }
+            for (TimeKey key : keys.tailSet(after, false)) {
+                if (key.millis() >= toMillis || result.size() >= limit) {
+                    break;
+                }
+                result.add(key);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private void insert(TimeKey key, String sellerId) {
+        all.add(key);
+        byId.put(key.id(), new Entry(key, sellerId));
+        if (sellerId != null) {
+            bySeller.computeIfAbsent(sellerId, s -> new TreeSet<>()).add(key);
+        }
+    }
+
+    /** Moves the window start forward, at most once a day, dropping older orders. */
+    private void slide() {
+        long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(windowDays);
+        if (start - windowStart < TimeUnit.DAYS.toMillis(1)) {
+            return;
+        }
+        windowStart = start;
+        while (!all.isEmpty() && all.first().millis() < start) {
+            Entry entry = byId.remove(all.pollFirst().id());
+            removeFromSeller(entry);
+        }
+    }
+
+    private void removeFromSeller(Entry entry) {
+        if (entry.sellerId() == null) {
+            return;
+        }
+        NavigableSet<TimeKey> keys = bySeller.get(entry.sellerId());
+        keys.remove(entry.key());
+        if (keys.isEmpty()) {
+            bySeller.remove(entry.sellerId());
+        }
+    }
+}
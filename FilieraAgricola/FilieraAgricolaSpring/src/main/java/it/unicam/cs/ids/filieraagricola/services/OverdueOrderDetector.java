@@ -0,0 +1,183 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.Order;
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+import it.unicam.cs.ids.filieraagricola.model.repositories.OrderRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects orders that pass their expected delivery date without being delivered.
+ *
+ * <p>Every open order's deadline sits in a {@link TimingWheel}: {@link OrderService}
+ * registers it when the order is created and cancels it when the order is delivered,
+ * cancelled or deleted, both in constant time. A background thread advances the wheel
+ * every {@code orders.overdue.tick-millis}; expired orders get their {@code overdue} flag
+ * set with one update per {@link #FLAG_BATCH} orders and an {@link OrderOverdueEvent} is
+ * published for each order actually flagged. Orders that were delivered or cancelled
+ * before their deadline was cancelled are skipped: the rows to flag are selected and
+ * locked first, so no status change slips in before the update.</p>
+ *
+ * <p>At startup the wheel is filled with the open, not yet overdue orders of the
+ * database; deadlines already past fire on the first tick.</p>
+ */
+@Component
+public class OverdueOrderDetector {
+
+    /** Maximum number of orders flagged by one update statement. */
+    public static final int FLAG_BATCH = 1000;
+    /** Statuses whose orders can no longer become overdue. */
+    public static final Set<OrderStatus> CLOSED = Set.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED);
+
+    @Value("${orders.overdue.tick-millis:1000}")
+    private long tickMillis;
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TimingWheel<String> wheel;
+    private final Map<String, TimingWheel.Timeout<String>> deadlines = new HashMap<>();
+    private final AtomicLong fired = new AtomicLong();
+    private ScheduledExecutorService ticker;
+
+    /**
+     * Detector metrics.
+     *
+     * @param pending deadlines waiting to fire
+     * @param fired   orders flagged overdue since startup
+     */
+    public record Stats(int pending, long fired) {
+    }
+
+    @PostConstruct
+    public void start() {
+        rebuild();
+        ticker = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+        ticker.scheduleWithFixedDelay(() -> advance(System.currentTimeMillis()), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    /** Reloads the deadlines of every open order that is not flagged overdue yet. */
+    public void rebuild() {
+        TimingWheel<String> loaded = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+        Map<String, TimingWheel.Timeout<String>> loadedDeadlines = new HashMap<>();
+        jdbcTemplate.query("select id, expected_delivery_date from orders "
+                        + "where overdue = false and expected_delivery_date is not null and status not in (?, ?)",
+                rs -> {
+                    String id = rs.getString(1);
+                    loadedDeadlines.put(id, loaded.schedule(id, rs.getTimestamp(2).getTime()));
+                },
+                OrderStatus.DELIVERED.ordinal(), OrderStatus.CANCELLED.ordinal());
+        synchronized (deadlines) {
+            wheel = loaded;
+            deadlines.clear();
+            deadlines.putAll(loadedDeadlines);
+        }
+    }
+
+    /** Schedules the deadline of an open order, replacing any previous one. */
+    public void register(Order order) {
+        if (order.getExpectedDeliveryDate() == null || order.isOverdue() || CLOSED.contains(order.getStatus())) {
+            cancel(order.getId());
+            return;
+        }
+        synchronized (deadlines) {
+            TimingWheel.Timeout<String> previous = deadlines.put(order.getId(),
+                    wheel.schedule(order.getId(), order.getExpectedDeliveryDate().getTime()));
+            if (previous != null) {
+                wheel.cancel(previous);
+            }
+        }
+    }
+
+    /** Cancels the deadline of an order; unknown ids are ignored. */
+    public void cancel(String orderId) {
+        synchronized (deadlines) {
+            TimingWheel.Timeout<String> timeout = deadlines.remove(orderId);
+            if (timeout != null) {
+                wheel.cancel(timeout);
+            }
+        }
+    }
+
+    /**
+     * Fires every deadline up to {@code nowMillis}: flags the expired orders and publishes
+     * their events. Called by the ticker; exposed for tests and manual catch-up.
+     *
+     * @return ids of the orders that became overdue, without those already closed
+     */
+    public List<String> advance(long nowMillis) {
+        List<String> expired = new ArrayList<>();
+        synchronized (deadlines) {
+            wheel.advance(nowMillis, id -> {
+                deadlines.remove(id);
+                expired.add(id);
+            });
+        }
+        if (expired.isEmpty()) {
+            return expired;
+        }
+        List<String> flagged = new ArrayList<>();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                for (int i = 0; i < expired.size(); i += FLAG_BATCH) {
+                    List<String> open = orderRepository.lockOverdueCandidates(
+                            expired.subList(i, Math.min(i + FLAG_BATCH, expired.size())), CLOSED);
+                    if (!open.isEmpty()) {
+                        orderRepository.markOverdue(open, CLOSED);
+                        flagged.addAll(open);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // keep the deadlines and retry on the next tick
+            synchronized (deadlines) {
+                for (String id : expired) {
+                    deadlines.computeIfAbsent(id, key -> wheel.schedule(key, nowMillis));
+                }
+            }
+            return List.of();
+        }
+        fired.addAndGet(flagged.size());
+        Timestamp detectedAt = new Timestamp(nowMillis);
+        for (String id : flagged) {
+            eventPublisher.publishEvent(new OrderOverdueEvent(id, detectedAt));
+        }
+        return flagged;
+    }
+
+    /** Returns the number of pending deadlines and of fired ones. */
+    public Stats stats() {
+        synchronized (deadlines) {
+            return new Stats(wheel.size(), fired.get());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.Content;
+import it.unicam.cs.ids.filieraagricola.model.ContentState;
+import it.unicam.cs.ids.filieraagricola.model.SupplyChainPoint;
+import it.unicam.cs.ids.filieraagricola.model.repositories.ContentRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory multimap from {@link SupplyChainPoint} id to the ids of its approved contents.
+ *
+ * <p>Map popups ask for the contents of many points at once; the index answers which
+ * contents to load without querying {@code content}, and points without approved
+ * contents cost nothing. It is loaded from the database at startup and kept in sync by
+ * {@link ContentService} on approval, rejection and deletion.</p>
+ */
+@Component
+public class PointContentIndex {
+
+    @Autowired
+    private ContentRepository contents;
+
+    private final Map<String, Set<String>> byPoint = new HashMap<>();
+    private final Map<String, String> pointOf = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Loads every approved content linked to a point. */
+    @PostConstruct
+    public void rebuild() {
+        List<Object[]> rows = contents.findIdAndPointIdByState(ContentState.APPROVED);
+        lock.writeLock().lock();
+        try {
+            byPoint.clear();
+            pointOf.clear();
+            for (Object[] row : rows) {
+                insert((String) row[0], (String) row[1]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Indexes a content if approved and linked to a point, otherwise removes it. */
+    public void update(Content content) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(content.getId());
+            if (content.isApproved() && content.getPoint() != null) {
+                insert(content.getId(), content.getPoint().getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes a content; unknown ids are ignored. */
+    public void remove(String contentId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(contentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the approved content ids of each given point that has any, in request order.
+     */
+    public Map<String, List<String>> contentIds(Collection<String> pointIds) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String pointId : pointIds) {
+                Set<String> ids = byPoint.get(pointId);
+                if (ids != null) {
+                    result.put(pointId, List.copyOf(ids));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private void insert(String contentId, String pointId) {
+        byPoint.computeIfAbsent(pointId, k -> new LinkedHashSet<>()).add(contentId);
+        pointOf.put(contentId, pointId);
+    }
+
+    private void removeUnlocked(String contentId) {
+        String pointId = pointOf.remove(contentId);
+        if (pointId == null) {
+            return;
+        }
+        Set<String> ids = byPoint.get(pointId);
+        ids.remove(contentId);
+        if (ids.isEmpty()) {
+            byPoint.remove(pointId);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.Product;
+import it.unicam.cs.ids.filieraagricola.model.repositories.ProductRepository;
+import it.unicam.cs.ids.filieraagricola.model.repositories.SupplyChainRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory category index over {@link Product}s, maintained incrementally on product
+ * creation and deletion.
+ *
+ * <p>Categories are compared through a normalized key (trimmed, lower case, accents
+ * stripped, inner whitespace collapsed), so {@code "Olio "} and {@code "olio"} fall in the
+ * same bucket. The index keeps the products of each category, a per-category count and
+ * the category counts of each supply chain; all reads are answered from memory.</p>
+ */
+@Component
+public class ProductCategoryIndex {
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private SupplyChainRepository supplyChainRepository;
+
+    private final Map<String, Map<String, Product>> productsByCategory = new HashMap<>();
+    private final Map<String, Map<String, Integer>> categoriesBySupplyChain = new HashMap<>();
+    private final Map<String, String> supplyChainByProduct = new HashMap<>();
+    private final Map<String, String> categoryByProduct = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Returns the normalized key used to group categories.
+     *
+     * @param category raw category, may be null
+     * @return normalized key, empty string for null or blank input
+     */
+    public static String normalize(String category) {
+        if (category == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(category.trim(), Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "")
+                .replaceAll("\\s+", " ")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /** Loads every product and its supply chain from the database. */
+    @PostConstruct
+    public void rebuild() {
+        List<Product> products = productRepository.findAll();
+        List<Object[]> links = supplyChainRepository.findAllProductIdsWithSupplyChainId();
+        Map<String, String> chainByProduct = new HashMap<>();
+        for (Object[] link : links) {
+            chainByProduct.put((String) link[1], (String) link[0]);
+        }
+        lock.writeLock().lock();
+        try {
+            productsByCategory.clear();
+            categoriesBySupplyChain.clear();
+            supplyChainByProduct.clear();
+            categoryByProduct.clear();
+            for (Product p : products) {
+                insert(p, chainByProduct.get(p.getId()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a product to the index.
+     *
+     * @param supplyChainId owning supply chain id, may be null
+     */
+    public void add(Product product, String supplyChainId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(product.getId());
+            insert(product, supplyChainId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Adds several products of the same supply chain under a single lock acquisition. */
+    public void addAll(List<Product> products, String supplyChainId) {
+        lock.writeLock().lock();
+        try {
+            for (Product p : products) {
+                removeUnlocked(p.getId());
+                insert(p, supplyChainId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes a product from the index; unknown ids are ignored. */
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Returns the products whose normalized category matches the given one. */
+    public List<Product> findByCategory(String category) {
+        lock.readLock().lock();
+        try {
+            Map<String, Product> bucket = productsByCategory.get(normalize(category));
+            return bucket == null ? new ArrayList<>() : new ArrayList<>(bucket.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns the product count of every category, sorted by category. */
+    public Map<String, Integer> getCategoryCounts() {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = new TreeMap<>();
+            productsByCategory.forEach((category, bucket) -> counts.put(category, bucket.size()));
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns the product count of every category of one supply chain, sorted by category. */
+    public Map<String, Integer> getCategoryCounts(String supplyChainId) {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = categoriesBySupplyChain.get(supplyChainId);
+            return counts == null ? new TreeMap<>() : new TreeMap<>(counts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private void insert(Product product, String supplyChainId) {
+        String key = normalize(product.getCategory());
+        productsByCategory.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(product.getId(), product);
+        categoryByProduct.put(product.getId(), key);
+        if (supplyChainId != null) {
+            supplyChainByProduct.put(product.getId(), supplyChainId);
+            categoriesBySupplyChain.computeIfAbsent(supplyChainId, k -> new HashMap<>()).merge(key, 1, Integer::sum);
+        }
+    }
+
+    private void removeUnlocked(String productId) {
+        String key = categoryByProduct.remove(productId);
+        if (key == null) {
+            return;
+        }
+        Map<String, Product> bucket = productsByCategory.get(key);
+        bucket.remove(productId);
+        if (bucket.isEmpty()) {
+            productsByCategory.remove(key);
+        }
+        String supplyChainId = supplyChainByProduct.remove(productId);
+        if (supplyChainId != null) {
+            Map<String, Integer> counts = categoriesBySupplyChain.get(supplyChainId);
+            if (counts.merge(key, -1, Integer::sum) <= 0) {
+                counts.remove(key);
+            }
+            if (counts.isEmpty()) {
+                categoriesBySupplyChain.remove(supplyChainId);
+            }
+        }
+    }
+}
@@ -7,12 +7,14 @@ import it.unicam.cs.ids.filieraagricola.model.ProductPackage;
 import it.unicam.cs.ids.filieraagricola.model.repositories.ProductPackageRepository;
 import it.unicam.cs.ids.filieraagricola.model.repositories.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Application service for managing {@link ProductPackage} aggregates.
@@ -36,6 +38,26 @@ public class ProductPackageService {
     }
 
 
+    /** Returns the keyset page of product packages after the given id. */
+    public List<ProductPackage> findPage(String after, int limit) {
+        return productPackageRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+    }
+
+    /**
+     * Streams all product packages from a database cursor; must be consumed in a transaction.
+     * Products are lazy, see {@link #fetchProducts(List)}.
+     */
+    public Stream<ProductPackage> streamAll() {
+        return productPackageRepository.streamAllByOrderByIdAsc();
+    }
+
+    /** Initializes the products of loaded packages with one query. */
+    public void fetchProducts(List<ProductPackage> packages) {
+        if (!packages.isEmpty()) {
+            productPackageRepository.fetchProducts(packages);
+        }
+    }
+
     /** Returns a package by id or null if not found. */
     public ProductPackage findById(String id) {
         Optional<ProductPackage> opt = productPackageRepository.findById(id);
@@ -0,0 +1,361 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.Content;
+import it.unicam.cs.ids.filieraagricola.model.ContentState;
+import it.unicam.cs.ids.filieraagricola.model.Product;
+import it.unicam.cs.ids.filieraagricola.model.SupplyChain;
+import it.unicam.cs.ids.filieraagricola.model.repositories.ContentRepository;
+import it.unicam.cs.ids.filieraagricola.model.repositories.ProductRepository;
+import it.unicam.cs.ids.filieraagricola.model.repositories.SupplyChainRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Embedded full-text index over products, supply chains and approved contents.
+ *
+ * <p>Text goes through {@link ItalianTextAnalyzer} and is stored in an inverted index
+ * (term to per-document frequency). Terms are kept sorted, so every query word matches
+ * exactly, as a prefix of longer terms and, only when neither finds anything, by edit
+ * distance. Documents are ranked with BM25; prefix and fuzzy matches are weighted less
+ * than exact ones and names count {@link #NAME_BOOST} times as much as descriptions.</p>
+ *
+ * <p>The index is loaded at startup, kept up to date by the services on every write and
+ * can be rebuilt on demand with {@link #rebuild()}.</p>
+ */
+@Component
+public class SearchIndex {
+
+    /** Number of times name terms are counted. */
+    public static final int NAME_BOOST = 2;
+    /** Maximum number of index terms a single query word may expand to. */
+    public static final int MAX_EXPANSIONS = 50;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_WEIGHT = 0.7;
+    private static final double FUZZY_WEIGHT = 0.5;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private SupplyChainRepository supplyChainRepository;
+    @Autowired
+    private ContentRepository contentRepository;
+
+    private final NavigableMap<String, Map<String, Integer>> postings = new TreeMap<>();
+    private final Map<String, Document> documents = new HashMap<>();
+    private long totalLength;
+    private long lastRebuildMillis;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Kind of indexed entity. */
+    public enum Kind {
+        PRODUCT,
+        SUPPLY_CHAIN,
+        CONTENT
+    }
+
+    /**
+     * Ranked search result.
+     *
+     * @param type  kind of the matching entity
+     * @param id    entity id
+     * @param name  entity name, for display
+     * @param score BM25 relevance, higher is better
+     */
+    public record Hit(Kind type, String id, String name, double score) {
+    }
+
+    /**
+     * One page of search results.
+     *
+     * @param total number of matching documents
+     * @param hits  requested page of hits, best first
+     */
+    public record Result(int total, List<Hit> hits) {
+    }
+
+    /**
+     * Index size figures.
+     *
+     * @param documents         indexed documents
+     * @param terms             distinct terms
+     * @param postings          (term, document) pairs
+     * @param lastRebuildMillis duration of the last full rebuild
+     */
+    public record Stats(int documents, int terms, long postings, long lastRebuildMillis) {
+    }
+
+    private record Document(Kind type, String id, String name, Map<String, Integer> frequencies, int length) {
+    }
+
+    /**
+     * Rebuilds the whole index from the database. Updates and queries wait until the
+     * load completes, so an update made meanwhile is applied on top of the new index
+     * instead of being overwritten by it.
+     */
+    @PostConstruct
+    public Stats rebuild() {
+        lock.writeLock().lock();
+        try {
+            long start = System.currentTimeMillis();
+            List<Document> loaded = new ArrayList<>();
+            for (Product p : productRepository.findAll()) {
+                loaded.add(document(Kind.PRODUCT, p.getId(), p.getName(), p.getDescription(), p.getCategory()));
+            }
+            for (SupplyChain sc : supplyChainRepository.findAll()) {
+                loaded.add(document(Kind.SUPPLY_CHAIN, sc.getId(), sc.getName(), sc.getDescription(), sc.getTerritorialArea()));
+            }
+            for (Content c : contentRepository.findByState(ContentState.APPROVED)) {
+                loaded.add(document(Kind.CONTENT, c.getId(), c.getName(), c.getDescription()));
+            }
+            postings.clear();
+            documents.clear();
+            totalLength = 0;
+            loaded.forEach(this::insert);
+            lastRebuildMillis = System.currentTimeMillis() - start;
+            return statsUnlocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Adds or replaces a product. */
+    public void index(Product product) {
+        put(document(Kind.PRODUCT, product.getId(), product.getName(),
+                product.getDescription(), product.getCategory()));
+    }
+
+    /** Adds or replaces several products under a single lock acquisition. */
+    public void indexAll(List<Product> products) {
+        List<Document> docs = new ArrayList<>(products.size());
+        for (Product p : products) {
+            docs.add(document(Kind.PRODUCT, p.getId(), p.getName(), p.getDescription(), p.getCategory()));
+        }
+        lock.writeLock().lock();
+        try {
+            for (Document doc : docs) {
+                removeUnlocked(key(doc.type(), doc.id()));
+                insert(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Adds or replaces a supply chain. */
+    public void index(SupplyChain supplyChain) {
+        put(document(Kind.SUPPLY_CHAIN, supplyChain.getId(), supplyChain.getName(),
+                supplyChain.getDescription(), supplyChain.getTerritorialArea()));
+    }
+
+    /** Adds or replaces a content; contents that are not approved are removed instead. */
+    public void index(Content content) {
+        if (content.getState() != ContentState.APPROVED) {
+            remove(Kind.CONTENT, content.getId());
+            return;
+        }
+        put(document(Kind.CONTENT, content.getId(), content.getName(), content.getDescription()));
+    }
+
+    /** Removes a document; unknown ids are ignored. */
+    public void remove(Kind type, String id) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(key(type, id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one page of the documents matching the query, best first.
+     *
+     * @param type optional kind filter, null for every kind
+     */
+    public Result search(String query, Kind type, int offset, int limit) {
+        Set<String> words = new LinkedHashSet<>(ItalianTextAnalyzer.analyze(query));
+        Map<String, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty()) {
+                return new Result(0, List.of());
+            }
+            double averageLength = (double) totalLength / documents.size();
+            for (String word : words) {
+                Map<String, Double> best = new HashMap<>();
+                expand(word).forEach((term, weight) -> {
+                    Map<String, Integer> docs = postings.get(term);
+                    double idf = Math.log(1 + (documents.size() - docs.size() + 0.5) / (docs.size() + 0.5));
+                    docs.forEach((docKey, tf) -> {
+                        Document doc = documents.get(docKey);
+                        if (type != null && doc.type() != type) {
+                            return;
+                        }
+                        double norm = tf + K1 * (1 - B + B * doc.length() / averageLength);
+                        best.merge(docKey, weight * idf * tf * (K1 + 1) / norm, Math::max);
+                    });
+                });
+                best.forEach((docKey, score) -> scores.merge(docKey, score, Double::sum));
+            }
+            List<Hit> hits = new ArrayList<>(scores.size());
+            scores.forEach((docKey, score) -> {
+                Document doc = documents.get(docKey);
+                hits.add(new Hit(doc.type(), doc.id(), doc.name(), score));
+            });
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::id));
+            int from = Math.min(offset, hits.size());
+            int to = Math.min(from + limit, hits.size());
+            return new Result(hits.size(), new ArrayList<>(hits.subList(from, to)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns the current index size. */
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            return statsUnlocked();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private static Document document(Kind type, String id, String name, String... texts) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String term : ItalianTextAnalyzer.analyze(name)) {
+            frequencies.merge(term, NAME_BOOST, Integer::sum);
+            length += NAME_BOOST;
+        }
+        for (String text : texts) {
+            for (String term : ItalianTextAnalyzer.analyze(text)) {
+                frequencies.merge(term, 1, Integer::sum);
+                length++;
+            }
+        }
+        return new Document(type, id, name, frequencies, length);
+    }
+
+    private static String key(Kind type, String id) {
+        return type + ":" + id;
+    }
+
+    private void put(Document doc) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(key(doc.type(), doc.id()));
+            insert(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(Document doc) {
+        String docKey = key(doc.type(), doc.id());
+        documents.put(docKey, doc);
+        totalLength += doc.length();
+        doc.frequencies().forEach((term, tf) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(docKey, tf));
+    }
+
+    private void removeUnlocked(String docKey) {
+        Document old = documents.remove(docKey);
+        if (old == null) {
+            return;
+        }
+        totalLength -= old.length();
+        for (String term : old.frequencies().keySet()) {
+            Map<String, Integer> docs = postings.get(term);
+            docs.remove(docKey);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /** Maps a query word to the index terms it matches and their weight. */
+    private Map<String, Double> expand(String word) {
+        Map<String, Double> terms = new HashMap<>();
+        if (postings.containsKey(word)) {
+            terms.put(word, 1.0);
+        }
+        for (String term : postings.subMap(word, false, word + Character.MAX_VALUE, false).keySet()) {
+            if (terms.size() >= MAX_EXPANSIONS) {
+                break;
+            }
+            terms.put(term, PREFIX_WEIGHT);
+        }
+        if (!terms.isEmpty()) {
+            return terms;
+        }
+        int maxDistance = word.length() >= 8 ? 2 : word.length() >= 4 ? 1 : 0;
+        if (maxDistance == 0) {
+            return terms;
+        }
+        // typos rarely hit the first letter: only scan terms sharing it
+        String first = word.substring(0, 1);
+        for (String term : postings.subMap(first, true, first + Character.MAX_VALUE, false).keySet()) {
+            if (Math.abs(term.length() - word.length()) <= maxDistance && distance(word, term, maxDistance) <= maxDistance) {
+                terms.put(term, FUZZY_WEIGHT);
+                if (terms.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+            }
+        }
+        return terms;
+    }
+
+    /** Optimal string alignment distance, giving up once it exceeds {@code max}. */
+    private static int distance(String a, String b, int max) {
+        int[] prevPrev = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(prev[j] + 1, current[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], prevPrev[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return rowMin;
+            }
+            int[] tmp = prevPrev;
+            prevPrev = prev;
+            prev = current;
+            current = tmp;
+        }
+        return prev[b.length()];
+    }
+
+    private Stats statsUnlocked() {
+        long pairs = 0;
+        for (Map<String, Integer> docs : postings.values()) {
+            pairs += docs.size();
+        }
+        return new Stats(documents.size(), postings.size(), pairs, lastRebuildMillis);
+    }
+}
@@ -0,0 +1,475 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Product stock levels and reservations.
+ *
+ * <p>Live counters are kept in memory and guarded by {@link #STRIPES} striped locks, so
+ * orders for different products never contend and orders for the same product hold the
+ * lock only to check and adjust two integers. Every change is then written through to
+ * {@code product_stock} with an update that re-checks availability, so the database
+ * never oversells either; when the caller's transaction rolls back the in-memory change
+ * is undone. Rows are always written in product id order, so two transactions adjusting
+ * the same products cannot deadlock on them.</p>
+ *
+ * <p>Reservations hold units for a limited time: {@link #commit(String, Map)} turns them
+ * into the sale of an order's units, {@link #release(String)} or expiry returns them.
+ * Products without a stock row are untracked and always available.</p>
+ */
+@Service
+public class StockService {
+
+    /** Number of lock stripes. */
+    public static final int STRIPES = 64;
+    private static final long TICK_MILLIS = 1000;
+
+    @Value("${stock.reservation.ttl-seconds:900}")
+    private long defaultTtlSeconds;
+    @Value("${stock.reservation.max-ttl-seconds:3600}")
+    private long maxTtlSeconds;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<String, Level> levels = new ConcurrentHashMap<>();
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final Map<String, Reservation> reservations = new HashMap<>();
+    private TimingWheel<String> expiries;
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Stock level of a product.
+     *
+     * @param productId product id
+     * @param onHand    units not sold yet
+     * @param reserved  units held by reservations
+     * @param available units that can still be ordered or reserved
+     */
+    public record Availability(String productId, int onHand, int reserved, int available) {
+    }
+
+    private static final class Level {
+        private int onHand;
+        private int reserved;
+
+        private Level(int onHand, int reserved) {
+            this.onHand = onHand;
+            this.reserved = reserved;
+        }
+    }
+
+    private record Reservation(Map<String, Integer> lines, long expiresAt, TimingWheel.Timeout<String> timeout) {
+    }
+
+    public StockService() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        rebuild();
+        sweeper = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+        sweeper.scheduleWithFixedDelay(() -> expire(System.currentTimeMillis()), TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Drops the reservations expired while the application was down, recomputes the
+     * reserved units and reloads every level and reservation.
+     */
+    public void rebuild() {
+        long now = System.currentTimeMillis();
+        jdbcTemplate.update("delete from stock_reservation where expires_at <= ?", new Timestamp(now));
+        jdbcTemplate.update("update product_stock set reserved = (select coalesce(sum(r.quantity), 0) "
+                + "from stock_reservation r where r.product_id = product_stock.product_id)");
+        Map<String, Map<String, Integer>> lines = new HashMap<>();
+        Map<String, Long> expiresAt = new HashMap<>();
+        jdbcTemplate.query("select reservation_id, product_id, quantity, expires_at from stock_reservation", rs -> {
+            String id = rs.getString(1);
+            lines.computeIfAbsent(id, r -> new LinkedHashMap<>()).merge(rs.getString(2), rs.getInt(3), Integer::sum);
+            expiresAt.put(id, rs.getTimestamp(4).getTime());
+        });
+        synchronized (reservations) {
+            levels.clear();
+            jdbcTemplate.query("select product_id, on_hand, reserved from product_stock",
+                    (RowCallbackHandler) rs -> levels.put(rs.getString(1), new Level(rs.getInt(2), rs.getInt(3))));
+            reservations.clear();
+            expiries = new TimingWheel<>(TICK_MILLIS, now);
+            lines.forEach((id, l) -> track(id, l, expiresAt.get(id)));
+        }
+    }
+
+    /**
+     * Sets the units on hand of a product, starting to track it if needed.
+     *
+     * @throws IllegalArgumentException if the quantity is negative or below the reserved units
+     */
+    public Availability setStock(String productId, int onHand) {
+        if (onHand < 0) {
+            throw new IllegalArgumentException("Stock cannot be negative");
+        }
+        Lock lock = stripe(productId);
+        lock.lock();
+        try {
+            Level level = levels.get(productId);
+            int reserved = level == null ? 0 : level.reserved;
+            if (onHand < reserved) {
+                throw new IllegalArgumentException("Stock cannot be lower than the " + reserved + " reserved units");
+            }
+            if (jdbcTemplate.update("update product_stock set on_hand = ? where product_id = ?", onHand, productId) == 0) {
+                jdbcTemplate.update("insert into product_stock (product_id, on_hand, reserved) values (?, ?, 0)", productId, onHand);
+            }
+            if (level == null) {
+                levels.put(productId, new Level(onHand, 0));
+            } else {
+                level.onHand = onHand;
+            }
+            return new Availability(productId, onHand, reserved, onHand - reserved);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the stock level of a product, or null if its stock is untracked. */
+    public Availability getAvailability(String productId) {
+        Lock lock = stripe(productId);
+        lock.lock();
+        try {
+            Level level = levels.get(productId);
+            return level == null ? null : new Availability(productId, level.onHand, level.reserved, level.onHand - level.reserved);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sells the given units right away, all or nothing.
+     *
+     * @param quantities units by product id
+     * @return false if some tracked product has not enough units available
+     */
+    public boolean take(Map<String, Integer> quantities) {
+        return adjustAll(quantities, -1, 0);
+    }
+
+    /** Returns sold units to stock, e.g. for a cancelled order. */
+    public void restock(Map<String, Integer> quantities) {
+        adjustAll(quantities, 1, 0);
+    }
+
+    /**
+     * Holds the given units, all or nothing, for {@code ttlSeconds} (the configured default
+     * when null), capped at the configured maximum. The units and the reservation rows are
+     * written in one transaction, so a reservation that cannot be recorded holds nothing.
+     *
+     * @return the reservation id, or null if some tracked product has not enough units
+     * @throws IllegalArgumentException if there are no quantities, or a quantity or the
+     *                                  duration is not positive
+     */
+    public String reserve(Map<String, Integer> quantities, Long ttlSeconds) {
+        long ttl = Math.min(ttlSeconds == null ? defaultTtlSeconds : ttlSeconds, maxTtlSeconds);
+        if (ttl <= 0 || quantities.isEmpty() || quantities.values().stream().anyMatch(q -> q == null || q <= 0)) {
+            throw new IllegalArgumentException("A reservation needs a positive duration and positive quantities");
+        }
+        String id = UUID.randomUUID().toString();
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttl);
+        Boolean reserved = new TransactionTemplate(transactionManager).execute(status -> {
+            if (!adjustAll(quantities, 0, 1)) {
+                return false;
+            }
+            List<Map.Entry<String, Integer>> rows = new ArrayList<>(quantities.entrySet());
+            jdbcTemplate.batchUpdate(
+                    "insert into stock_reservation (id, reservation_id, product_id, quantity, expires_at) values (?, ?, ?, ?, ?)",
+                    rows, rows.size(), (ps, row) -> {
+                        ps.setString(1, UUID.randomUUID().toString());
+                        ps.setString(2, id);
+                        ps.setString(3, row.getKey());
+                        ps.setInt(4, row.getValue());
+                        ps.setTimestamp(5, new Timestamp(expiresAt));
+                    });
+            return true;
+        });
+        if (!Boolean.TRUE.equals(reserved)) {
+            return null;
+        }
+        synchronized (reservations) {
+            track(id, new LinkedHashMap<>(quantities), expiresAt);
+        }
+        return id;
+    }
+
+    /**
+     * Locks the stock rows of the given products in product id order until the current
+     * transaction ends. A transaction that adjusts the stock of several orders calls it
+     * first, so its per-order adjustments cannot interleave with another transaction's in
+     * an order that deadlocks. Does nothing outside a transaction.
+     */
+    public void lockRows(Collection<String> productIds) {
+        if (productIds.isEmpty() || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        List<String> sorted = new ArrayList<>(new TreeSet<>(productIds));
+        String marks = String.join(", ", Collections.nCopies(sorted.size(), "?"));
+        jdbcTemplate.queryForList("select product_id from product_stock where product_id in (" + marks + ") "
+                + "order by product_id for update", String.class, sorted.toArray());
+    }
+
+    /**
+     * Turns a reservation into the sale of exactly its units.
+     *
+     * @return false if the reservation does not exist or already expired
+     */
+    public boolean commit(String reservationId) {
+        return close(reservationId, null);
+    }
+
+    /**
+     * Turns a reservation into the sale of {@code quantities}, all or nothing. Reserved
+     * units the order does not need are returned; units ordered beyond the reservation are
+     * taken from the available stock like {@link #take(Map)}.
+     *
+     * @param quantities units sold, by product id
+     * @return false if the reservation does not exist or already expired, or if the units
+     *         not covered by it are not available; the reservation is then kept
+     */
+    public boolean commit(String reservationId, Map<String, Integer> quantities) {
+        return close(reservationId, quantities);
+    }
+
+    /**
+     * Cancels a reservation, returning its units.
+     *
+     * @return false if the reservation does not exist or already expired
+     */
+    public boolean release(String reservationId) {
+        return close(reservationId, Map.of());
+    }
+
+    /**
+     * Releases the reservations expired at {@code nowMillis}. Called every second by the
+     * sweeper; exposed for tests.
+     *
+     * @return number of released reservations
+     */
+    public int expire(long nowMillis) {
+        List<String> expired = new ArrayList<>();
+        synchronized (reservations) {
+            expiries.advance(nowMillis, expired::add);
+        }
+        int released = 0;
+        for (String id : expired) {
+            if (release(id)) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private Lock stripe(String productId) {
+        return stripes[(productId.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    /** Registers a reservation; the caller holds the {@code reservations} monitor. */
+    private void track(String id, Map<String, Integer> lines, long expiresAt) {
+        reservations.put(id, new Reservation(lines, expiresAt, expiries.schedule(id, expiresAt)));
+    }
+
+    /**
+     * Removes a reservation, returning its units, and sells {@code sold} (its own units when
+     * null). If the sale does not fit the reservation is tracked again and nothing changes.
+     */
+    private boolean close(String reservationId, Map<String, Integer> sold) {
+        Reservation reservation;
+        synchronized (reservations) {
+            reservation = reservations.remove(reservationId);
+            if (reservation == null) {
+                return false;
+            }
+            expiries.cancel(reservation.timeout());
+        }
+        Map<String, Integer> units = sold == null ? reservation.lines() : sold;
+        Map<String, int[]> deltas = new LinkedHashMap<>();
+        reservation.lines().forEach((productId, quantity) ->
+                deltas.computeIfAbsent(productId, p -> new int[2])[1] -= quantity);
+        units.forEach((productId, quantity) ->
+                deltas.computeIfAbsent(productId, p -> new int[2])[0] -= Math.max(quantity, 0));
+        boolean adjusted = false;
+        try {
+            adjusted = adjustAll(deltas);
+        } finally {
+            if (!adjusted) {
+                // refused or failed: the reservation still holds its units
+                synchronized (reservations) {
+                    track(reservationId, reservation.lines(), reservation.expiresAt());
+                }
+            }
+        }
+        if (!adjusted) {
+            return false;
+        }
+        jdbcTemplate.update("delete from stock_reservation where reservation_id = ?", reservationId);
+        TransactionHooks.afterRollback(() -> {
+            synchronized (reservations) {
+                track(reservationId, reservation.lines(), reservation.expiresAt());
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Applies {@code onHandSign} and {@code reservedSign} times each quantity, all or nothing.
+     * A line fails when it would leave less than zero units available; lines without units
+     * are ignored.
+     */
+    private boolean adjustAll(Map<String, Integer> quantities, int onHandSign, int reservedSign) {
+        Map<String, int[]> deltas = new LinkedHashMap<>();
+        quantities.forEach((productId, quantity) -> {
+            if (quantity > 0) {
+                deltas.put(productId, new int[]{onHandSign * quantity, reservedSign * quantity});
+            }
+        });
+        return adjustAll(deltas);
+    }
+
+    /**
+     * Applies the {on hand, reserved} delta of each product in product id order, all or
+     * nothing. When a write throws outside a transaction the lines already applied are
+     * undone before rethrowing; inside one, the rollback undoes them.
+     */
+    private boolean adjustAll(Map<String, int[]> deltas) {
+        List<Map.Entry<String, int[]>> applied = new ArrayList<>();
+        for (Map.Entry<String, int[]> line : new TreeMap<>(deltas).entrySet()) {
+            int[] delta = line.getValue();
+            if (delta[0] == 0 && delta[1] == 0) {
+                continue;
+            }
+            boolean adjusted;
+            try {
+                adjusted = adjust(line.getKey(), delta[0], delta[1]);
+            } catch (RuntimeException e) {
+                if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                    undo(applied);
+                }
+                throw e;
+            }
+            if (!adjusted) {
+                undo(applied);
+                return false;
+            }
+            applied.add(line);
+        }
+        return true;
+    }
+
+    /**
+     * Reverts the lines already applied, newest first.
+     *
+     * @throws IllegalStateException if a line cannot be reverted, e.g. because the units it
+     *                               returned were reserved in the meantime
+     */
+    private void undo(List<Map.Entry<String, int[]>> applied) {
+        for (int i = applied.size() - 1; i >= 0; i--) {
+            Map.Entry<String, int[]> line = applied.get(i);
+            if (!adjust(line.getKey(), -line.getValue()[0], -line.getValue()[1])) {
+                throw new IllegalStateException("Could not revert the stock of product " + line.getKey()
+                        + " by " + -line.getValue()[0] + " on hand and " + -line.getValue()[1] + " reserved");
+            }
+        }
+    }
+
+    /**
+     * Checks and applies one delta in memory under the product's stripe, then writes it
+     * through with the same check in the database. Untracked products always succeed. If
+     * the write fails or throws, the in-memory delta is reverted before returning.
+     */
+    private boolean adjust(String productId, int onHandDelta, int reservedDelta) {
+        Lock lock = stripe(productId);
+        lock.lock();
+        try {
+            Level level = levels.get(productId);
+            if (level == null) {
+                return true;
+            }
+            if (!fits(level.onHand + onHandDelta, level.reserved + reservedDelta)) {
+                return false;
+            }
+            level.onHand += onHandDelta;
+            level.reserved += reservedDelta;
+        } finally {
+            lock.unlock();
+        }
+        int updated;
+        try {
+            updated = jdbcTemplate.update("update product_stock set on_hand = on_hand + ?, reserved = reserved + ? "
+                            + "where product_id = ? and on_hand + ? >= reserved + ? and reserved + ? >= 0",
+                    onHandDelta, reservedDelta, productId, onHandDelta, reservedDelta, reservedDelta);
+        } catch (RuntimeException e) {
+            // the write never happened, so neither must the in-memory change
+            applyInMemory(productId, -onHandDelta, -reservedDelta);
+            throw e;
+        }
+        if (updated == 0) {
+            // another node got there first
+            applyInMemory(productId, -onHandDelta, -reservedDelta);
+            return false;
+        }
+        TransactionHooks.afterRollback(() -> applyInMemory(productId, -onHandDelta, -reservedDelta));
+        return true;
+    }
+
+    private void applyInMemory(String productId, int onHandDelta, int reservedDelta) {
+        Lock lock = stripe(productId);
+        lock.lock();
+        try {
+            Level level = levels.get(productId);
+            if (level != null) {
+                level.onHand += onHandDelta;
+                level.reserved += reservedDelta;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean fits(int onHand, int reserved) {
+        return reserved >= 0 && onHand >= reserved;
+    }
+}
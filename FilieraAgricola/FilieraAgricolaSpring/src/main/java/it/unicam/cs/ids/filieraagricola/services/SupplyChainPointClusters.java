@@ -0,0 +1,187 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.SupplyChainPoint;
+import it.unicam.cs.ids.filieraagricola.model.repositories.SupplyChainRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Precomputed hierarchical grid clusters of {@link SupplyChainPoint}s, one grid per zoom level.
+ *
+ * <p>Grids follow the Web Mercator tiling used by the map: at zoom {@code z} the world is
+ * split into {@code 2^z * CELLS_PER_TILE} cells per side, so each cluster covers roughly
+ * {@code 256 / CELLS_PER_TILE} screen pixels. Every cell keeps a running count and
+ * coordinate sum, therefore adding a point costs one update per zoom level and a viewport
+ * query only touches the (bounded) number of cells visible on screen.</p>
+ */
+@Component
+public class SupplyChainPointClusters {
+
+    /** Highest zoom level with precomputed clusters; above it clients should request raw points. */
+    public static final int MAX_ZOOM = 16;
+    /** Cluster cells per 256px map tile side. */
+    public static final int CELLS_PER_TILE = 4;
+
+    private static final double MAX_MERCATOR_LAT = 85.05112878;
+
+    @Autowired
+    private SupplyChainRepository supplyChainRepository;
+
+    private final List<Map<Long, Cell>> levels = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Cluster returned to clients: centroid of the grouped points and their number.
+     *
+     * @param lat   centroid latitude
+     * @param lng   centroid longitude
+     * @param count number of points in the cluster
+     */
+    public record PointCluster(double lat, double lng, long count) {
+    }
+
+    /** Mutable accumulator kept for every occupied cell. */
+    private static final class Cell {
+        private long count;
+        private double sumLat;
+        private double sumLng;
+    }
+
+    public SupplyChainPointClusters() {
+        for (int z = 0; z <= MAX_ZOOM; z++) {
+            levels.add(new HashMap<>());
+        }
+    }
+
+    /** Recomputes every zoom level from the points stored in the database. */
+    @PostConstruct
+    public void rebuild() {
+        List<Object[]> rows = supplyChainRepository.findAllPointsWithSupplyChainId();
+        lock.writeLock().lock();
+        try {
+            levels.forEach(Map::clear);
+            for (Object[] row : rows) {
+                SupplyChainPoint p = (SupplyChainPoint) row[1];
+                update(p.getLat(), p.getLng(), 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Accounts for a newly added point on every zoom level. */
+    public void add(SupplyChainPoint point) {
+        lock.writeLock().lock();
+        try {
+            update(point.getLat(), point.getLng(), 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes a previously added point from every zoom level. */
+    public void remove(SupplyChainPoint point) {
+        lock.writeLock().lock();
+        try {
+            update(point.getLat(), point.getLng(), -1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the clusters intersecting the bounding box at the given zoom.
+     *
+     * @throws IllegalArgumentException if zoom is outside {@code [0, MAX_ZOOM]}
+     */
+    public List<PointCluster> query(int zoom, double minLat, double minLng, double maxLat, double maxLng) {
+        if (zoom < 0 || zoom > MAX_ZOOM) {
+            throw new IllegalArgumentException("Zoom must be between 0 and " + MAX_ZOOM);
+        }
+        int size = gridSize(zoom);
+        int minX = x(minLng, size);
+        int maxX = x(maxLng, size);
+        // mercator y grows southwards
+        int minY = y(maxLat, size);
+        int maxY = y(minLat, size);
+        long coveredCells = (long) (maxX - minX + 1) * (maxY - minY + 1);
+
+        List<PointCluster> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<Long, Cell> level = levels.get(zoom);
+            if (coveredCells <= level.size()) {
+                for (int cy = minY; cy <= maxY; cy++) {
+                    for (int cx = minX; cx <= maxX; cx++) {
+                        Cell cell = level.get(key(cx, cy, size));
+                        if (cell != null) {
+                            result.add(toCluster(cell));
+                        }
+                    }
+                }
+            } else {
+                for (Map.Entry<Long, Cell> entry : level.entrySet()) {
+                    int cx = (int) (entry.getKey() % size);
+                    int cy = (int) (entry.getKey() / size);
+                    if (cx >= minX && cx <= maxX && cy >= minY && cy <= maxY) {
+                        result.add(toCluster(entry.getValue()));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private void update(double lat, double lng, int delta) {
+        for (int z = 0; z <= MAX_ZOOM; z++) {
+            int size = gridSize(z);
+            long key = key(x(lng, size), y(lat, size), size);
+            Map<Long, Cell> level = levels.get(z);
+            Cell cell = level.computeIfAbsent(key, k -> new Cell());
+            cell.count += delta;
+            cell.sumLat += delta * lat;
+            cell.sumLng += delta * lng;
+            if (cell.count <= 0) {
+                level.remove(key);
+            }
+        }
+    }
+
+    private static PointCluster toCluster(Cell cell) {
+        return new PointCluster(cell.sumLat / cell.count, cell.sumLng / cell.count, cell.count);
+    }
+
+    private static int gridSize(int zoom) {
+        return (1 << zoom) * CELLS_PER_TILE;
+    }
+
+    private static int x(double lng, int size) {
+        return clamp((int) Math.floor((lng + 180) / 360 * size), size);
+    }
+
+    private static int y(double lat, int size) {
+        double rad = Math.toRadians(Math.max(-MAX_MERCATOR_LAT, Math.min(MAX_MERCATOR_LAT, lat)));
+        double merc = (1 - Math.log(Math.tan(rad) + 1 / Math.cos(rad)) / Math.PI) / 2;
+        return clamp((int) Math.floor(merc * size), size);
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    private static long key(int x, int y, int size) {
+        return (long) y * size + x;
+    }
+}
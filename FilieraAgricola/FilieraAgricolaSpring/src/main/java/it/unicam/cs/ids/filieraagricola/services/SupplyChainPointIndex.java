@@ -0,0 +1,205 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.SupplyChainPoint;
+import it.unicam.cs.ids.filieraagricola.model.repositories.SupplyChainRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory spatial index over {@link SupplyChainPoint} coordinates.
+ *
+ * <p>Points are bucketed in a fixed grid of {@link #CELL_SIZE} degree cells keyed
+ * by row/column. A bounding-box query visits either the cells covered by the box
+ * or the occupied cells, whichever is fewer, so its cost depends on the populated
+ * area and on the number of returned points rather than on the total point count.</p>
+ *
+ * <p>The index is loaded from the database at startup and kept in sync by
+ * {@link SupplyChainService#acquirePoint(SupplyChainPoint, String)}.</p>
+ */
+@Component
+public class SupplyChainPointIndex {
+
+    /** Cell edge in degrees. */
+    public static final double CELL_SIZE = 0.25;
+
+    private static final int ROWS = (int) Math.ceil(180 / CELL_SIZE);
+    private static final int COLUMNS = (int) Math.ceil(360 / CELL_SIZE);
+
+    @Autowired
+    private SupplyChainRepository supplyChainRepository;
+
+    private final Map<Long, List<IndexedPoint>> cells = new HashMap<>();
+    private final Map<String, IndexedPoint> byId = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Indexed entry: the point together with the id of the supply chain owning it.
+     *
+     * @param point         indexed point
+     * @param supplyChainId owning supply chain id
+     */
+    public record IndexedPoint(SupplyChainPoint point, String supplyChainId) {
+    }
+
+    /** Loads every point currently linked to a supply chain. */
+    @PostConstruct
+    public void rebuild() {
+        List<Object[]> rows = supplyChainRepository.findAllPointsWithSupplyChainId();
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+            byId.clear();
+            for (Object[] row : rows) {
+                insert((SupplyChainPoint) row[1], (String) row[0]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds (or moves) a point in the index.
+     *
+     * @param point         point to index, must have an id
+     * @param supplyChainId owning supply chain id
+     */
+    public void add(SupplyChainPoint point, String supplyChainId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(point.getId());
+            insert(point, supplyChainId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a point from the index.
+     *
+     * @return true if the point was indexed
+     */
+    public boolean remove(String pointId) {
+        lock.writeLock().lock();
+        try {
+            return removeUnlocked(pointId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Returns the number of indexed points. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns at most {@code limit} points inside the given bounding box (bounds inclusive).
+     *
+     * @param supplyChainId optional supply chain filter, null for every chain
+     */
+    public List<IndexedPoint> query(double minLat, double minLng, double maxLat, double maxLng,
+                                    String supplyChainId, int limit) {
+        List<IndexedPoint> result = new ArrayList<>();
+        int minRow = row(minLat);
+        int maxRow = row(maxLat);
+        int minCol = column(minLng);
+        int maxCol = column(maxLng);
+        long coveredCells = (long) (maxRow - minRow + 1) * (maxCol - minCol + 1);
+
+        lock.readLock().lock();
+        try {
+            if (coveredCells <= cells.size()) {
+                for (int r = minRow; r <= maxRow && result.size() < limit; r++) {
+                    for (int c = minCol; c <= maxCol && result.size() < limit; c++) {
+                        List<IndexedPoint> cell = cells.get(key(r, c));
+                        if (cell != null) {
+                            collect(cell, minLat, minLng, maxLat, maxLng, supplyChainId, limit, result);
+                        }
+                    }
+                }
+            } else {
+                for (Map.Entry<Long, List<IndexedPoint>> entry : cells.entrySet()) {
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                    int r = (int) (entry.getKey() / COLUMNS);
+                    int c = (int) (entry.getKey() % COLUMNS);
+                    if (r >= minRow && r <= maxRow && c >= minCol && c <= maxCol) {
+                        collect(entry.getValue(), minLat, minLng, maxLat, maxLng, supplyChainId, limit, result);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private static void collect(List<IndexedPoint> cell, double minLat, double minLng, double maxLat, double maxLng,
+                                String supplyChainId, int limit, List<IndexedPoint> result) {
+        for (IndexedPoint p : cell) {
+            if (result.size() >= limit) {
+                return;
+            }
+            double lat = p.point().getLat();
+            double lng = p.point().getLng();
+            if (lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng
+                    && (supplyChainId == null || supplyChainId.equals(p.supplyChainId()))) {
+                result.add(p);
+            }
+        }
+    }
+
+    private void insert(SupplyChainPoint point, String supplyChainId) {
+        IndexedPoint entry = new IndexedPoint(point, supplyChainId);
+        cells.computeIfAbsent(key(row(point.getLat()), column(point.getLng())), k -> new ArrayList<>()).add(entry);
+        byId.put(point.getId(), entry);
+    }
+
+    private boolean removeUnlocked(String pointId) {
+        IndexedPoint old = byId.remove(pointId);
+        if (old == null) {
+            return false;
+        }
+        long key = key(row(old.point().getLat()), column(old.point().getLng()));
+        List<IndexedPoint> cell = cells.get(key);
+        if (cell != null) {
+            cell.remove(old);
+            if (cell.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+        return true;
+    }
+
+    private static int row(double lat) {
+        return clamp((int) Math.floor((lat + 90) / CELL_SIZE), ROWS);
+    }
+
+    private static int column(double lng) {
+        return clamp((int) Math.floor((lng + 180) / CELL_SIZE), COLUMNS);
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    private static long key(int row, int column) {
+        return (long) row * COLUMNS + column;
+    }
+}
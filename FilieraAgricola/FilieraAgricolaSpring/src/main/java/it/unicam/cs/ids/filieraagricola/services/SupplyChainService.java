@@ -1,5 +1,8 @@
 package it.unicam.cs.ids.filieraagricola.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unicam.cs.ids.filieraagricola.controllers.dto.BulkImportResultDto;
+import it.unicam.cs.ids.filieraagricola.controllers.dto.SupplyChainSummaryDto;
 import it.unicam.cs.ids.filieraagricola.model.Product;
 import it.unicam.cs.ids.filieraagricola.model.SupplyChain;
 import it.unicam.cs.ids.filieraagricola.model.SupplyChainPoint;
@@ -7,9 +10,18 @@ import it.unicam.cs.ids.filieraagricola.model.repositories.ProductRepository;
 import it.unicam.cs.ids.filieraagricola.model.repositories.SupplyChainPointRepository;
 import it.unicam.cs.ids.filieraagricola.model.repositories.SupplyChainRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Application service responsible for managing {@link SupplyChain}, products and points.
@@ -20,134 +32,382 @@ import java.util.*;
 @Service
 public class SupplyChainService {
 
+    /** Rows sent per JDBC batch by {@link #bulkAcquireProducts(String, InputStream)}. */
+    public static final int BULK_BATCH_SIZE = 500;
+
     @Autowired
     private SupplyChainRepository supplyChainRepository;
     @Autowired
     private ProductRepository productRepository;
     @Autowired
     private SupplyChainPointRepository supplyChainPointRepository;
+    @Autowired
+    private SupplyChainPointIndex pointIndex;
+    @Autowired
+    private SupplyChainPointClusters pointClusters;
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+    @Autowired
+    private SearchIndex searchIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     /**
      * Persists a new product and adds it to the specified supply chain.
+     *
+     * <p>The join row is inserted directly, so the chain's product collection is
+     * neither loaded nor rewritten.</p>
      */
+    @Transactional
     public Product acquireProduct(Product product, String supplyChainId) {
-        Optional<SupplyChain> opt = supplyChainRepository.findById(supplyChainId);
-        if (opt.isEmpty()) {
+        if (!supplyChainRepository.existsById(supplyChainId)) {
             return null;
         }
-        SupplyChain supplyChain = opt.get();
         // we create a new product with a new id
         product.setId(UUID.randomUUID().toString());
-        String productId = product.getId();
         product = productRepository.save(product);
-        supplyChain.getProducts().add(product);
-        supplyChainRepository.save(supplyChain);
-        Optional<Product> optProduct = productRepository.findById(productId);
-        if (opt.isEmpty()) {
+        supplyChainRepository.addProduct(supplyChainId, product.getId());
+        Product saved = product;
+        TransactionHooks.afterCommit(() -> {
+            categoryIndex.add(saved, supplyChainId);
+            searchIndex.index(saved);
+        });
+        return saved;
+    }
+
+    /**
+     * Imports newline-delimited JSON products into a supply chain in one transaction.
+     *
+     * <p>The stream is read line by line and products are written with JDBC batches of
+     * {@link #BULK_BATCH_SIZE} rows, appending directly to the chain's join table without
+     * loading its product collection. Blank lines are skipped; lines that cannot be parsed
+     * into a valid {@link Product} are reported and skipped.</p>
+     *
+     * @return import outcome, or null if the supply chain does not exist
+     * @throws IOException if the input stream cannot be read; nothing is imported
+     */
+    @Transactional(rollbackFor = IOException.class)
+    public BulkImportResultDto bulkAcquireProducts(String supplyChainId, InputStream ndjson) throws IOException {
+        if (!supplyChainRepository.existsById(supplyChainId)) {
             return null;
         }
-        return optProduct.get();
+        BulkImportResultDto result = new BulkImportResultDto();
+        List<Product> batch = new ArrayList<>(BULK_BATCH_SIZE);
+        List<String> imported = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                Product product = objectMapper.readValue(line, Product.class);
+                validateBulkProduct(product);
+                product.setId(UUID.randomUUID().toString());
+                batch.add(product);
+            } catch (IOException | IllegalArgumentException e) {
+                result.getErrors().add(new BulkImportResultDto.LineError(lineNumber, e.getMessage()));
+                continue;
+            }
+            if (batch.size() == BULK_BATCH_SIZE) {
+                insertProductBatch(supplyChainId, batch, imported);
+                result.setImported(result.getImported() + batch.size());
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            insertProductBatch(supplyChainId, batch, imported);
+            result.setImported(result.getImported() + batch.size());
+        }
+        if (!imported.isEmpty()) {
+            TransactionHooks.afterCommit(() -> indexImported(supplyChainId, imported));
+        }
+        return result;
     }
 
     /**
      * Removes a product from the specified supply chain and deletes it.
      *
+     * <p>Only the product's join row is deleted; the chain's product collection is not loaded.</p>
+     *
      * @return true if removed; false otherwise
      */
+    @Transactional
     public boolean deleteProduct(String supplyChainId, String id ) {
         // Verifichiamo se esite dentro al repository un prodotto con l'Id fornito
         Optional<Product> optionalProduct = productRepository.findById(id);
         if (optionalProduct.isPresent()) {
-            // Verifichiamo se esite dentro al repository una supplychain con l'Id fornito
-            Optional<SupplyChain> opt = supplyChainRepository.findById(supplyChainId);
-            if (opt.isPresent()) {
-                // Siamo sicuri che abbiamo il product e la supplychain di quel product
-                SupplyChain supplyChain = opt.get();
-                // Rimuoviamo il prodotto dalla supplychain
-                supplyChain.getProducts().remove(optionalProduct.get());
-                // Salviamo la supplychain
-                supplyChainRepository.save(supplyChain);
-            }
+            // Rimuoviamo il prodotto dalla supplychain (una sola riga della join table)
+            supplyChainRepository.removeProduct(supplyChainId, id);
             //Effettiva delete del prodotto
             productRepository.delete(optionalProduct.get());
+            TransactionHooks.afterCommit(() -> {
+                categoryIndex.remove(id);
+                searchIndex.remove(SearchIndex.Kind.PRODUCT, id);
+            });
             return true;
         }
         return false;
     }
 
     /** Returns the product list for a supply chain id, or null if chain missing. */
+    @Transactional(readOnly = true)
     public List<Product> getProductList(String supplyChainId) {
-        Optional<SupplyChain> opt = supplyChainRepository.findById(supplyChainId);
-        if (opt.isEmpty()) {
+        if (!supplyChainRepository.existsById(supplyChainId)) {
             return null;
         }
-        SupplyChain supplyChain = opt.get();
-        return supplyChain.getProducts();
+        return supplyChainRepository.findProductsBySupplyChainId(supplyChainId);
     }
+
+    /** Returns a supply chain with products and points initialized, or null if missing. */
+    @Transactional(readOnly = true)
     public SupplyChain getSupplyChain(String supplyChainId) {
-        Optional<SupplyChain> opt = supplyChainRepository.findById(supplyChainId);
+        Optional<SupplyChain> opt = supplyChainRepository.findWithProductsById(supplyChainId);
         if (opt.isEmpty()) {
             return null;
         }
         SupplyChain supplyChain = opt.get();
+        supplyChainRepository.fetchPoints(List.of(supplyChain));
         return supplyChain;
     }
 
-    /** Returns all supply chains. */
+    /**
+     * Returns all supply chains with products and points initialized, using two
+     * queries regardless of the number of chains.
+     */
+    @Transactional(readOnly = true)
     public List<SupplyChain> getSupplyChainRepository() {
-        return supplyChainRepository.findAll();
+        return withPoints(supplyChainRepository.findAllWithProducts());
+    }
+
+    /**
+     * Returns the keyset page of supply chains after the given id, with products and
+     * points initialized (three queries per page).
+     */
+    @Transactional(readOnly = true)
+    public List<SupplyChain> getSupplyChainPage(String after, int limit) {
+        List<String> ids = supplyChainRepository.findIdPage(after, Limit.of(limit));
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return withPoints(supplyChainRepository.findAllWithProductsByIdIn(ids));
+    }
+
+    /** Returns the keyset page of supply chain summaries after the given id. */
+    public List<SupplyChainSummaryDto> getSupplyChainSummaryPage(String after, int limit) {
+        return supplyChainRepository.findSummaryPage(after, Limit.of(limit));
+    }
+
+    /**
+     * Streams all supply chains from a database cursor; must be consumed in a transaction.
+     * Products and points are lazy, see {@link #fetchCollections(List)}.
+     */
+    public Stream<SupplyChain> streamSupplyChains() {
+        return supplyChainRepository.streamAllByOrderByIdAsc();
+    }
+
+    /** Initializes the products and points of loaded supply chains with one query each. */
+    public void fetchCollections(List<SupplyChain> supplyChains) {
+        if (!supplyChains.isEmpty()) {
+            supplyChainRepository.fetchProducts(supplyChains);
+            supplyChainRepository.fetchPoints(supplyChains);
+        }
+    }
+
+    /** Returns metadata and product/point counts of all supply chains with a single query. */
+    public List<SupplyChainSummaryDto> getSupplyChainSummaries() {
+        return supplyChainRepository.findAllSummaries();
     }
 
     /**
      * Creates and persists a new supply chain with the given name, products and points.
+     *
+     * <p>Points without an id are persisted first, as {@link #acquirePoint} does. The
+     * products and points are indexed once the transaction commits.</p>
      */
+    @Transactional
     public SupplyChain createSupplyChain(String supplyChainName, List<Product> products, List<SupplyChainPoint> points) {
         if (supplyChainName == null || supplyChainName.trim().isEmpty()) throw new IllegalArgumentException("Supply chain name cannot be null or empty");
         if (products == null) throw new IllegalArgumentException("Product list cannot be null");
 
         var supplyChain = buildSupplyChain(supplyChainName, products);
-        supplyChain.setPoints(points);
-        return supplyChainRepository.save(supplyChain);
+        List<SupplyChainPoint> chainPoints = points == null ? new ArrayList<>() : points;
+        for (SupplyChainPoint point : chainPoints) {
+            if (point.getId() == null) {
+                point.setId(UUID.randomUUID().toString());
+                supplyChainPointRepository.save(point);
+            }
+        }
+        supplyChain.setPoints(chainPoints);
+        SupplyChain saved = supplyChainRepository.save(supplyChain);
+        TransactionHooks.afterCommit(() -> {
+            categoryIndex.addAll(saved.getProducts(), saved.getId());
+            searchIndex.index(saved);
+            searchIndex.indexAll(saved.getProducts());
+            for (SupplyChainPoint point : saved.getPoints()) {
+                pointIndex.add(point, saved.getId());
+                pointClusters.add(point);
+            }
+        });
+        return saved;
     }
 
     /** Returns supply chains matching the given name pattern. */
+    @Transactional(readOnly = true)
     public List<SupplyChain> findSupplyChainsByName(String name) {
-        return supplyChainRepository.findByName(name);
+        return withPoints(supplyChainRepository.findByName(name));
     }
 
-    /** Returns products by category. */
+    /**
+     * Returns products by category, answered from the in-memory {@link ProductCategoryIndex}.
+     * Categories are matched case and accent insensitively.
+     */
     public List<Product> findProductsByCategory(String category) {
-        return productRepository.findByCategory(category);
+        return categoryIndex.findByCategory(category);
+    }
+
+    /** Returns the number of products of every category, across all supply chains. */
+    public Map<String, Integer> getCategoryCounts() {
+        return categoryIndex.getCategoryCounts();
+    }
+
+    /** Returns the number of products of every category in a supply chain, or null if chain missing. */
+    public Map<String, Integer> getCategoryCounts(String supplyChainId) {
+        if (!supplyChainRepository.existsById(supplyChainId)) {
+            return null;
+        }
+        return categoryIndex.getCategoryCounts(supplyChainId);
+    }
+
+    /**
+     * Returns at most {@code limit} points inside the given bounding box, answered
+     * from the in-memory {@link SupplyChainPointIndex}.
+     *
+     * @param supplyChainId optional supply chain filter, null for every chain
+     * @throws IllegalArgumentException if the box is inverted or limit is not positive
+     */
+    public List<SupplyChainPoint> findPointsInArea(double minLat, double minLng, double maxLat, double maxLng,
+                                                   String supplyChainId, int limit) {
+        if (minLat > maxLat || minLng > maxLng) throw new IllegalArgumentException("Bounding box min must not exceed max");
+        if (limit <= 0) throw new IllegalArgumentException("Limit must be positive");
+        List<SupplyChainPoint> points = new ArrayList<>();
+        for (SupplyChainPointIndex.IndexedPoint p : pointIndex.query(minLat, minLng, maxLat, maxLng, supplyChainId, limit)) {
+            points.add(p.point());
+        }
+        return points;
+    }
+
+    /**
+     * Returns the precomputed clusters visible in the bounding box at the given map zoom.
+     *
+     * @throws IllegalArgumentException if the box is inverted or zoom is out of range
+     */
+    public List<SupplyChainPointClusters.PointCluster> findPointClusters(int zoom, double minLat, double minLng,
+                                                                         double maxLat, double maxLng) {
+        if (minLat > maxLat || minLng > maxLng) throw new IllegalArgumentException("Bounding box min must not exceed max");
+        return pointClusters.query(zoom, minLat, minLng, maxLat, maxLng);
     }
 
     /* ----------------- private helpers ----------------- */
 
+    /** Checks the fields that the bulk path writes without going through JPA. */
+    private static void validateBulkProduct(Product product) {
+        if (product.getName() == null) throw new IllegalArgumentException("Product name cannot be null or empty");
+        if (product.getCategory() == null) throw new IllegalArgumentException("Product category cannot be null or empty");
+        if (product.getDescription() == null) throw new IllegalArgumentException("Product description cannot be null or empty");
+    }
+
+    /**
+     * Inserts products and their join rows with two JDBC batches and adds their ids to
+     * {@code imported}; only the ids are kept until the products are indexed after commit.
+     */
+    private void insertProductBatch(String supplyChainId, List<Product> products, List<String> imported) {
+        jdbcTemplate.batchUpdate(
+                "insert into product (id, name, category, description, production_date, price) values (?, ?, ?, ?, ?, ?)",
+                products, products.size(), (ps, p) -> {
+                    ps.setString(1, p.getId());
+                    ps.setString(2, p.getName());
+                    ps.setString(3, p.getCategory());
+                    ps.setString(4, p.getDescription());
+                    ps.setDate(5, p.getProductionDate());
+                    ps.setDouble(6, p.getPrice());
+                });
+        jdbcTemplate.batchUpdate(
+                "insert into supply_chain_products (supply_chain_id, products_id) values (?, ?)",
+                products, products.size(), (ps, p) -> {
+                    ps.setString(1, supplyChainId);
+                    ps.setString(2, p.getId());
+                });
+        for (Product p : products) {
+            imported.add(p.getId());
+        }
+    }
+
+    /**
+     * Reads back committed bulk-imported products {@link #BULK_BATCH_SIZE} at a time and
+     * adds each chunk to the category and search indexes.
+     */
+    private void indexImported(String supplyChainId, List<String> ids) {
+        for (int from = 0; from < ids.size(); from += BULK_BATCH_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + BULK_BATCH_SIZE, ids.size()));
+            String marks = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            List<Product> products = jdbcTemplate.query(
+                    "select id, name, category, description, production_date, price from product where id in (" + marks + ")",
+                    (rs, n) -> {
+                        Product p = new Product();
+                        p.setId(rs.getString(1));
+                        p.setName(rs.getString(2));
+                        p.setCategory(rs.getString(3));
+                        p.setDescription(rs.getString(4));
+                        if (rs.getDate(5) != null) {
+                            p.setProductionDate(rs.getDate(5));
+                        }
+                        p.setPrice(rs.getDouble(6));
+                        return p;
+                    }, chunk.toArray());
+            categoryIndex.addAll(products, supplyChainId);
+            searchIndex.indexAll(products);
+        }
+    }
+
+    /** Initializes the points of the given chains with one query. */
+    private List<SupplyChain> withPoints(List<SupplyChain> supplyChains) {
+        if (!supplyChains.isEmpty()) {
+            supplyChainRepository.fetchPoints(supplyChains);
+        }
+        return supplyChains;
+    }
+
     /** Builds a new {@link SupplyChain} instance. */
     private SupplyChain buildSupplyChain(String name, List<Product> products) {
         return new SupplyChain(name, products);
     }
 
 
-    /** Persists a new point and adds it to the specified supply chain. */
+    /**
+     * Persists a new point and adds it to the specified supply chain.
+     *
+     * <p>The join row is inserted directly, so the chain's point collection is
+     * neither loaded nor rewritten.</p>
+     */
+    @Transactional
     public SupplyChainPoint acquirePoint(SupplyChainPoint point, String supplyChainId) {
-        Optional<SupplyChain> opt = supplyChainRepository.findById(supplyChainId);
-        if (opt.isEmpty()) {
+        if (!supplyChainRepository.existsById(supplyChainId)) {
             return null;
         }
-        SupplyChain supplyChain = opt.get();
-        // we create a new product with a new id
+        // we create a new point with a new id
         point.setId(UUID.randomUUID().toString());
-        String pointId = point.getId();
         point = supplyChainPointRepository.save(point);
-        if (supplyChain.getPoints() == null) {
-            supplyChain.setPoints(new java.util.ArrayList<>());
-        }
-        supplyChain.getPoints().add(point);
-        supplyChainRepository.save(supplyChain);
-        Optional<SupplyChainPoint> optPoint = supplyChainPointRepository.findById(pointId);
-        if (opt.isEmpty()) {
-            return null;
-        }
-        return optPoint.get();
+        supplyChainRepository.addPoint(supplyChainId, point.getId());
+        SupplyChainPoint saved = point;
+        TransactionHooks.afterCommit(() -> {
+            pointIndex.add(saved, supplyChainId);
+            pointClusters.add(saved);
+        });
+        return saved;
     }
 }
@@ -0,0 +1,193 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel holding deadlines with O(1) schedule and cancel.
+ *
+ * <p>Time is divided in ticks of {@code tickMillis}. Level 0 has one slot per tick for the
+ * next {@value #SLOTS} ticks; each further level has slots {@value #SLOTS} times wider.
+ * A deadline goes to the lowest level whose span covers it; whenever a level wraps, the
+ * next slot of the level above is cascaded into the lower ones. Every slot is a doubly
+ * linked list, so scheduling and cancelling never scan other entries and advancing costs
+ * one step per elapsed tick plus the cascaded entries.</p>
+ *
+ * <p>The class is not thread safe; callers must synchronize.</p>
+ *
+ * @param <T> payload carried by each deadline
+ */
+public class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    /** Slots per level. */
+    public static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 5;
+    private static final long MAX_DELTA = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    /** Slots by level, then by index; lists avoid a generic array. */
+    private final List<List<Slot<T>>> slots;
+    private long currentTick;
+    private int size;
+
+    /** Handle of a scheduled deadline. */
+    public static final class Timeout<T> {
+        private final T value;
+        private final long tick;
+        private Slot<T> slot;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T value, long tick) {
+            this.value = value;
+            this.tick = tick;
+        }
+
+        /** Returns the payload. */
+        public T getValue() {
+            return value;
+        }
+
+        /** Returns true while the deadline is scheduled. */
+        public boolean isPending() {
+            return slot != null;
+        }
+    }
+
+    /** Doubly linked list of the timeouts of one slot. */
+    private static final class Slot<T> {
+        private Timeout<T> head;
+
+        private void add(Timeout<T> t) {
+            t.slot = this;
+            t.prev = null;
+            t.next = head;
+            if (head != null) {
+                head.prev = t;
+            }
+            head = t;
+        }
+
+        private void remove(Timeout<T> t) {
+            if (t.prev != null) {
+                t.prev.next = t.next;
+            } else {
+                head = t.next;
+            }
+            if (t.next != null) {
+                t.next.prev = t.prev;
+            }
+            t.slot = null;
+            t.prev = null;
+            t.next = null;
+        }
+
+        private Timeout<T> clear() {
+            Timeout<T> first = head;
+            head = null;
+            return first;
+        }
+    }
+
+    /**
+     * @param tickMillis  resolution of the wheel
+     * @param startMillis current time
+     */
+    public TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("Tick must be positive");
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.slots = new ArrayList<>(LEVELS);
+        for (int level = 0; level < LEVELS; level++) {
+            List<Slot<T>> wheel = new ArrayList<>(SLOTS);
+            for (int i = 0; i < SLOTS; i++) {
+                wheel.add(new Slot<>());
+            }
+            slots.add(wheel);
+        }
+    }
+
+    /**
+     * Schedules a deadline; deadlines already past expire at the next {@link #advance}.
+     *
+     * @return handle for {@link #cancel(Timeout)}
+     */
+    public Timeout<T> schedule(T value, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(value, Math.max(deadlineMillis / tickMillis, currentTick));
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a pending deadline.
+     *
+     * @return true if the deadline was still pending
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout.slot == null) {
+            return false;
+        }
+        timeout.slot.remove(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel to {@code nowMillis}, handing every expired payload to {@code expired}.
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long target = nowMillis / tickMillis;
+        while (currentTick <= target) {
+            cascade();
+            Timeout<T> t = slots.get(0).get((int) (currentTick & (SLOTS - 1))).clear();
+            while (t != null) {
+                Timeout<T> next = t.next;
+                t.slot = null;
+                t.prev = null;
+                t.next = null;
+                size--;
+                expired.accept(t.value);
+                t = next;
+            }
+            currentTick++;
+        }
+    }
+
+    /** Returns the number of pending deadlines. */
+    public int size() {
+        return size;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private void place(Timeout<T> timeout) {
+        // deadlines beyond the top level are parked there and re-placed on each cascade
+        long delta = Math.min(timeout.tick - currentTick, MAX_DELTA - 1);
+        long tick = currentTick + delta;
+        int level = 0;
+        while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int index = (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+        slots.get(level).get(index).add(timeout);
+    }
+
+    /** Redistributes the higher level slots that start at the current tick. */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            int index = (int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+            Timeout<T> t = slots.get(level).get(index).clear();
+            while (t != null) {
+                Timeout<T> next = t.next;
+                place(t);
+                t = next;
+            }
+        }
+    }
+}
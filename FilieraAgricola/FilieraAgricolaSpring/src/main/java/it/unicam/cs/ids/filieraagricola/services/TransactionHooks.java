@@ -0,0 +1,43 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Actions tied to the outcome of the current transaction, used by the services to keep
+ * their in-memory indexes and counters in step with what the database actually committed.
+ */
+final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /** Runs the action once the current transaction commits, or immediately outside a transaction. */
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /** Runs the action if the current transaction rolls back; does nothing outside a transaction. */
+    static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
@@ -7,10 +7,12 @@ import it.unicam.cs.ids.filieraagricola.services.exception.ValidationException;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Application service that manages {@link User} creation, authentication and session state.
@@ -107,6 +109,21 @@ public class UserService {
         }
     }
 
+    /**
+     * Returns the user logged in the current session, or null.
+     */
+    public User getCurrentUser() {
+        return (User) httpSession.getAttribute(USER_KEY);
+    }
+
+    /**
+     * Returns the id of the user logged in the current session, or null.
+     */
+    public String getCurrentUserId() {
+        User user = getCurrentUser();
+        return user == null ? null : user.getId();
+    }
+
     /**
      * Checks whether the current session user has the given role.
      */
@@ -134,4 +151,18 @@ public class UserService {
         return repository.findAll();
     }
 
+    /**
+     * Returns the keyset page of users after the given id.
+     */
+    public List<User> getUserPage(String after, int limit) {
+        return repository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+    }
+
+    /**
+     * Streams all users from a database cursor; must be consumed in a transaction.
+     */
+    public Stream<User> streamUsers() {
+        return repository.streamAllByOrderByIdAsc();
+    }
+
 }
@@ -0,0 +1,47 @@
+package it.unicam.cs.ids.filieraagricola.services.exception;
+
+/**
+ * Unchecked exception indicating that a request conflicts with another one
+ * that is still being processed or with the current state of a resource.
+ *
+ * <p>Centralized under the <code>services.exception</code> package per project rules.</p>
+ */
+public class ConflictException extends DomainException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new ConflictException with no detail message.
+     */
+    public ConflictException() {
+        super();
+    }
+
+    /**
+     * Creates a new ConflictException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public ConflictException(String message) {
+        super(message);
+    }
+
+    /**
+     * Creates a new ConflictException with the specified detail message and cause.
+     *
+     * @param message the detail message
+     * @param cause   the cause
+     */
+    public ConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Creates a new ConflictException with the specified cause.
+     *
+     * @param cause the cause
+     */
+    public ConflictException(Throwable cause) {
+        super(cause);
+    }
+}
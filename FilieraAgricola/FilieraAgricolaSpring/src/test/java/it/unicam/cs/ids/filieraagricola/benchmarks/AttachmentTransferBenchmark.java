@@ -0,0 +1,136 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import it.unicam.cs.ids.filieraagricola.model.ContentAttachment;
+import it.unicam.cs.ids.filieraagricola.services.AttachmentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers per second of a whole {@code megabytes} MiB attachment with
+ * {@link AttachmentService#transfer}, to a file channel and to a loopback socket channel
+ * drained by another thread. {@link #streamToSocket()} copies the same file to the same
+ * socket through a {@link AttachmentService#BUFFER_SIZE} heap buffer, as a stream copy
+ * would; multiply the score by {@code megabytes} for MiB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttachmentTransferBenchmark {
+
+    @Param({"1", "32"})
+    private int megabytes;
+
+    private Path directory;
+    private AttachmentService service;
+    private ContentAttachment attachment;
+    private AttachmentService.Range range;
+    private FileChannel fileTarget;
+    private ServerSocketChannel server;
+    private SocketChannel socketTarget;
+    private OutputStream socketStream;
+    private Thread drain;
+
+    @Setup
+    public void start() throws Exception {
+        directory = Files.createTempDirectory("attachments-bench");
+        service = new AttachmentService();
+        ReflectionTestUtils.setField(service, "directory", directory.toString());
+        service.init();
+
+        byte[] bytes = new byte[megabytes * 1024 * 1024];
+        new SplittableRandom(42).nextBytes(bytes);
+        attachment = new ContentAttachment();
+        attachment.setSha256("ab".repeat(32));
+        Path file = service.file(attachment);
+        Files.createDirectories(file.getParent());
+        Files.write(file, bytes);
+        range = new AttachmentService.Range(0, bytes.length - 1);
+
+        fileTarget = FileChannel.open(directory.resolve("copy"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        socketTarget = SocketChannel.open(server.getLocalAddress());
+        socketStream = Channels.newOutputStream(socketTarget);
+        SocketChannel peer = server.accept();
+        drain = new Thread(() -> discard(peer));
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @TearDown
+    public void stop() throws Exception {
+        socketTarget.close();
+        drain.join();
+        server.close();
+        fileTarget.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long toFile() throws IOException {
+        fileTarget.position(0);
+        return service.transfer(attachment, range, fileTarget);
+    }
+
+    @Benchmark
+    public long toSocket() throws IOException {
+        return service.transfer(attachment, range, socketTarget);
+    }
+
+    @Benchmark
+    public long streamToSocket() throws IOException {
+        long copied = 0;
+        byte[] buffer = new byte[AttachmentService.BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(service.file(attachment))) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                socketStream.write(buffer, 0, read);
+                copied += read;
+            }
+        }
+        return copied;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private static void discard(SocketChannel peer) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+        try (peer) {
+            while (peer.read(buffer) >= 0) {
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            // the client closed the connection
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unicam.cs.ids.filieraagricola.controllers.dto.BulkImportResultDto;
+import it.unicam.cs.ids.filieraagricola.model.Product;
+import it.unicam.cs.ids.filieraagricola.services.SupplyChainService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to import {@code products} products from NDJSON into a supply chain on the embedded
+ * H2 database, with {@link SupplyChainService#bulkAcquireProducts} and with one
+ * {@link SupplyChainService#acquireProduct} call per line, as a client adding products one
+ * at a time would. Each import goes to a new chain; divide {@code products} by the score
+ * for products per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 15, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkImportBenchmark {
+
+    @Param({"1000", "5000"})
+    private int products;
+
+    private ConfigurableApplicationContext context;
+    private SupplyChainService supplyChainService;
+    private ObjectMapper objectMapper;
+    private byte[] ndjson;
+
+    @Setup
+    public void start() throws IOException {
+        context = H2Application.start();
+        supplyChainService = context.getBean(SupplyChainService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < products; i++) {
+            lines.append("{\"name\":\"Olio extravergine lotto ").append(i)
+                    .append("\",\"category\":\"olio\",\"description\":\"Spremitura a freddo\"")
+                    .append(",\"productionDate\":\"2025-10-01\",\"price\":12.5}\n");
+        }
+        ndjson = lines.toString().getBytes(StandardCharsets.UTF_8);
+        BulkImportResultDto check = bulk();
+        if (check.getImported() != products) {
+            throw new IllegalStateException("Generated lines were refused: " + check.getErrors());
+        }
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public BulkImportResultDto bulk() throws IOException {
+        return supplyChainService.bulkAcquireProducts(newChain(), new ByteArrayInputStream(ndjson));
+    }
+
+    @Benchmark
+    public int perProduct() throws IOException {
+        String chainId = newChain();
+        int imported = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(ndjson), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            supplyChainService.acquireProduct(objectMapper.readValue(line, Product.class), chainId);
+            imported++;
+        }
+        return imported;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private String newChain() {
+        return supplyChainService.createSupplyChain("Filiera Olio", new ArrayList<>(), new ArrayList<>()).getId();
+    }
+}
@@ -0,0 +1,88 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import it.unicam.cs.ids.filieraagricola.model.ContentState;
+import it.unicam.cs.ids.filieraagricola.model.ContentType;
+import it.unicam.cs.ids.filieraagricola.model.SupplyChain;
+import it.unicam.cs.ids.filieraagricola.model.SupplyChainPoint;
+import it.unicam.cs.ids.filieraagricola.services.ContentService;
+import it.unicam.cs.ids.filieraagricola.services.SupplyChainService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to moderate {@code contents} contents on the embedded H2 database, with one
+ * {@link ContentService#moderate(Map)} batch and with one {@link ContentService#approve(String)}
+ * or {@link ContentService#reject(String)} call per content, as N {@code PATCH} requests
+ * would do. Every operation flips all the contents between approved and rejected, so each
+ * one is actually updated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentModerationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int contents;
+
+    private ConfigurableApplicationContext context;
+    private ContentService contentService;
+    private List<String> ids;
+    private boolean approve = true;
+
+    @Setup
+    public void start() {
+        context = H2Application.start();
+        contentService = context.getBean(ContentService.class);
+        SupplyChainService supplyChainService = context.getBean(SupplyChainService.class);
+        SupplyChain chain = supplyChainService.createSupplyChain("Filiera Olio", new ArrayList<>(), new ArrayList<>());
+        SupplyChainPoint point = supplyChainService.acquirePoint(new SupplyChainPoint(43.14, 13.07), chain.getId());
+        ids = new ArrayList<>();
+        for (int i = 0; i < contents; i++) {
+            ids.add(contentService.addContent("Certificazione " + i, "Disciplinare di produzione",
+                    ContentType.CERTIFICATE, point.getId()).getId());
+        }
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Map<String, ContentService.ModerationOutcome> batch() {
+        ContentState target = approve ? ContentState.APPROVED : ContentState.REJECTED;
+        approve = !approve;
+        return contentService.moderate(Map.of(target, ids));
+    }
+
+    @Benchmark
+    public int individual() {
+        int updated = 0;
+        for (String id : ids) {
+            if (approve ? contentService.approve(id) : contentService.reject(id)) {
+                updated++;
+            }
+        }
+        approve = !approve;
+        return updated;
+    }
+}
@@ -0,0 +1,29 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import it.unicam.cs.ids.filieraagricola.FilieraagricolaspringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application on the embedded H2 database of the {@code h2} test profile, for
+ * benchmarks that measure services together with their database round trips. Each JMH
+ * fork gets its own in-memory database.
+ */
+final class H2Application {
+
+    private H2Application() {
+    }
+
+    /** Starts the application on a random port with quiet logging and no Hibernate statistics. */
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(FilieraagricolaspringApplication.class)
+                .profiles("h2")
+                .logStartupInfo(false)
+                .run("--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn",
+                        // the in-memory database is already gone when the fork exits
+                        "--logging.level.org.springframework.beans.factory.support.DisposableBeanAdapter=error",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false");
+    }
+}
@@ -0,0 +1,147 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import it.unicam.cs.ids.filieraagricola.controllers.dto.OrderDto;
+import it.unicam.cs.ids.filieraagricola.controllers.dto.OrderItemDto;
+import it.unicam.cs.ids.filieraagricola.model.Order;
+import it.unicam.cs.ids.filieraagricola.model.OrderItem;
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+import it.unicam.cs.ids.filieraagricola.model.Product;
+import it.unicam.cs.ids.filieraagricola.model.SupplyChain;
+import it.unicam.cs.ids.filieraagricola.model.User;
+import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.model.repositories.OrderItemRepository;
+import it.unicam.cs.ids.filieraagricola.model.repositories.OrderRepository;
+import it.unicam.cs.ids.filieraagricola.model.repositories.ProductRepository;
+import it.unicam.cs.ids.filieraagricola.model.repositories.UserRepository;
+import it.unicam.cs.ids.filieraagricola.services.OrderService;
+import it.unicam.cs.ids.filieraagricola.services.SupplyChainService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders per second of {@link OrderService#createOrder} on the embedded H2 database, for
+ * orders of {@code lines} lines. Compares the batched single-transaction path with the
+ * per-line path it replaced, reproduced in {@link #perLine()}: one lookup and one save
+ * per line, each in its own transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderCreationBenchmark {
+
+    @Param({"1", "20", "200"})
+    private int lines;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private UserRepository userRepository;
+    private ProductRepository productRepository;
+    private OrderItemRepository orderItemRepository;
+    private OrderRepository orderRepository;
+    private OrderDto order;
+
+    @Setup
+    public void start() {
+        context = H2Application.start();
+        orderService = context.getBean(OrderService.class);
+        userRepository = context.getBean(UserRepository.class);
+        productRepository = context.getBean(ProductRepository.class);
+        orderItemRepository = context.getBean(OrderItemRepository.class);
+        orderRepository = context.getBean(OrderRepository.class);
+        SupplyChainService supplyChainService = context.getBean(SupplyChainService.class);
+
+        User buyer = userRepository.save(user("buyer"));
+        User seller = userRepository.save(user("seller"));
+        SupplyChain chain = supplyChainService.createSupplyChain("Filiera Vino", new ArrayList<>(), new ArrayList<>());
+        order = new OrderDto();
+        order.setBuyerId(buyer.getId());
+        order.setSellerId(seller.getId());
+        order.setOrderItemDtoList(new ArrayList<>());
+        order.setDeliveryAddress("Via Roma 1, Camerino");
+        order.setPaymentMethod("card");
+        order.setDeliveryMethod("home_delivery");
+        for (int i = 0; i < lines; i++) {
+            Product p = new Product(null, "Vino " + i, "vino", "Rosso", Date.valueOf("2025-10-01"));
+            p.setPrice(10);
+            OrderItemDto line = new OrderItemDto();
+            line.setProductId(supplyChainService.acquireProduct(p, chain.getId()).getId());
+            line.setQuantity(1);
+            order.getOrderItemDtoList().add(line);
+        }
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean batched() {
+        return orderService.createOrder(order);
+    }
+
+    @Benchmark
+    public boolean perLine() {
+        Optional<User> buyer = userRepository.findById(order.getBuyerId());
+        Optional<User> seller = userRepository.findById(order.getSellerId());
+        if (buyer.isEmpty() || seller.isEmpty()) {
+            return false;
+        }
+        List<OrderItem> items = new LinkedList<>();
+        double totalAmount = 0;
+        for (OrderItemDto dto : order.getOrderItemDtoList()) {
+            Optional<Product> product = productRepository.findById(dto.getProductId());
+            if (product.isPresent()) {
+                OrderItem item = new OrderItem(UUID.randomUUID().toString(), product.get(), dto.getQuantity(), dto.getNotes());
+                orderItemRepository.save(item);
+                items.add(item);
+                totalAmount += item.getQuantity() * product.get().getPrice();
+            }
+        }
+        Order created = new Order();
+        created.setBuyer(buyer.get());
+        created.setSeller(seller.get());
+        created.setOrderItems(items);
+        created.setTotalAmount(totalAmount);
+        created.setStatus(OrderStatus.PROCESSING);
+        created.setOrderDate(new Timestamp(System.currentTimeMillis()));
+        created.setExpectedDeliveryDate(new Timestamp(System.currentTimeMillis() + OrderService.DEFAULT_DELIVERY_TIME));
+        created.setActualDeliveryDate(created.getExpectedDeliveryDate());
+        created.setDeliveryAddress(order.getDeliveryAddress());
+        created.setPaymentMethod(order.getPaymentMethod());
+        created.setDeliveryMethod(order.getDeliveryMethod());
+        orderRepository.save(created);
+        return true;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private static User user(String name) {
+        User user = new User(UUID.randomUUID().toString(), name, "password", name + System.nanoTime() + "@filiera.it");
+        user.setPermissions(new UserRole[]{UserRole.DISTRIBUTOR});
+        return user;
+    }
+}
@@ -0,0 +1,127 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+import it.unicam.cs.ids.filieraagricola.model.User;
+import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.model.repositories.UserRepository;
+import it.unicam.cs.ids.filieraagricola.services.OrderExporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to export {@code rows} generated orders from the embedded H2 database with
+ * {@link OrderExporter#export}, as gzip CSV and as a {@link
+ * it.unicam.cs.ids.filieraagricola.services.ColumnarFile}. The output is counted and
+ * discarded; the size of the last export is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderExportBenchmark {
+
+    private static final String INSERT = "insert into orders (id, buyer_id, seller_id, total_amount, status, order_date, "
+            + "expected_delivery_date, actual_delivery_date, delivery_address, payment_method, delivery_method, "
+            + "overdue, version) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final Timestamp FROM = Timestamp.valueOf("2025-01-01 00:00:00");
+    private static final Timestamp TO = Timestamp.valueOf("2026-01-01 00:00:00");
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    @Param({"CSV", "COLUMNAR"})
+    private OrderExporter.Format format;
+
+    private ConfigurableApplicationContext context;
+    private OrderExporter exporter;
+    private final CountingStream out = new CountingStream();
+
+    @Setup
+    public void start() {
+        context = H2Application.start();
+        exporter = context.getBean(OrderExporter.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(userRepository.save(user("user" + i)).getId());
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        long span = TO.getTime() - FROM.getTime();
+        List<Object[]> batch = new ArrayList<>();
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        for (int i = 0; i < rows; i++) {
+            Timestamp date = new Timestamp(FROM.getTime() + random.nextLong(span));
+            Timestamp expected = new Timestamp(date.getTime() + 3 * 24 * 3600 * 1000L);
+            batch.add(new Object[]{UUID.randomUUID().toString(),
+                    users.get(random.nextInt(users.size())), users.get(random.nextInt(users.size())),
+                    Math.round(random.nextDouble(5, 500) * 100) / 100.0,
+                    random.nextInt(OrderStatus.values().length), date, expected,
+                    random.nextBoolean() ? expected : null, "Via Roma " + i + ", Camerino",
+                    random.nextBoolean() ? "card" : "bank_transfer",
+                    random.nextBoolean() ? "home_delivery" : "pickup", random.nextInt(10) == 0});
+            if (batch.size() == 1000) {
+                jdbcTemplate.batchUpdate(INSERT, batch);
+                batch.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT, batch);
+    }
+
+    @TearDown
+    public void stop() {
+        System.out.printf("%n%s: %d bytes for %d rows%n", format, out.bytes, rows);
+        context.close();
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        out.bytes = 0;
+        return exporter.export(FROM, TO, format, out);
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private static User user(String name) {
+        User user = new User(UUID.randomUUID().toString(), name, "password", name + System.nanoTime() + "@filiera.it");
+        user.setPermissions(new UserRole[]{UserRole.BUYER});
+        return user;
+    }
+
+    /** Discards what is written, counting the bytes. */
+    private static final class CountingStream extends OutputStream {
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unicam.cs.ids.filieraagricola.model.Order;
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+import it.unicam.cs.ids.filieraagricola.model.User;
+import it.unicam.cs.ids.filieraagricola.services.OrderJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of appending one order event to the {@link OrderJournal}. With {@code fsync=none}
+ * segments are only forced when full, with {@code group} the background syncer forces
+ * them every 10 ms as configured by default, and with {@code every} each append is
+ * followed by its own force, the cost the group commit avoids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderJournalBenchmark {
+
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    @Param({"none", "group", "every"})
+    private String fsync;
+
+    private Path dir;
+    private OrderJournal journal;
+    private Order order;
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        dir = Files.createTempDirectory("journal-bench");
+        journal = new OrderJournal();
+        ReflectionTestUtils.setField(journal, "directory", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentBytes", SEGMENT_BYTES);
+        ReflectionTestUtils.setField(journal, "fsyncMillis", fsync.equals("none") ? TimeUnit.DAYS.toMillis(1) : 10L);
+        ReflectionTestUtils.setField(journal, "objectMapper", new ObjectMapper());
+        journal.open();
+        User seller = new User();
+        seller.setId("seller-1");
+        order = new Order();
+        order.setSeller(seller);
+        order.setStatus(OrderStatus.PROCESSING);
+        order.setTotalAmount(42.5);
+        order.setOrderDate(new Timestamp(System.currentTimeMillis()));
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        journal.close();
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public void created() {
+        journal.created(order);
+        if (fsync.equals("every")) {
+            journal.sync();
+        }
+    }
+
+    @Benchmark
+    public void statusChanged() {
+        journal.statusChanged(order.getId(), OrderStatus.PROCESSING, OrderStatus.SHIPPED);
+        if (fsync.equals("every")) {
+            journal.sync();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import it.unicam.cs.ids.filieraagricola.controllers.dto.OrderDto;
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+import it.unicam.cs.ids.filieraagricola.model.User;
+import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.model.repositories.UserRepository;
+import it.unicam.cs.ids.filieraagricola.services.OrderService;
+import it.unicam.cs.ids.filieraagricola.services.exception.ConflictException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status updates per second of {@link OrderService#updateStatus} on the embedded H2
+ * database, with four threads spread over {@code hotOrders} orders: with one order every
+ * update races the others, with many they rarely meet. Each operation reads the status of
+ * a random order and moves it one step along {@code PROCESSING → SHIPPED → DELIVERED};
+ * a delivered order is put back to processing. {@link Outcomes} reports applied updates
+ * and updates refused because another thread moved the order first separately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class OrderStatusBenchmark {
+
+    private static final String STATUS = "select status from orders where id = ?";
+    private static final String RESET = "update orders set status = ?, version = version + 1 where id = ? and status = ?";
+
+    @Param({"1", "64"})
+    private int hotOrders;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private JdbcTemplate jdbcTemplate;
+    private String[] orders;
+
+    /** Per-thread outcome counters, reported by JMH as rates next to the score. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcomes {
+        public long updates;
+        public long conflicts;
+    }
+
+    @Setup
+    public void start() {
+        context = H2Application.start();
+        orderService = context.getBean(OrderService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        OrderDto order = new OrderDto();
+        order.setBuyerId(userRepository.save(user("buyer")).getId());
+        order.setSellerId(userRepository.save(user("seller")).getId());
+        order.setOrderItemDtoList(new ArrayList<>());
+        order.setDeliveryAddress("Via Roma 1, Camerino");
+        order.setPaymentMethod("card");
+        order.setDeliveryMethod("home_delivery");
+        for (int i = 0; i < hotOrders; i++) {
+            orderService.createOrder(order);
+        }
+        orders = jdbcTemplate.queryForList("select id from orders", String.class).toArray(String[]::new);
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean advance(Outcomes outcomes) {
+        String id = orders[ThreadLocalRandom.current().nextInt(orders.length)];
+        OrderStatus current = OrderStatus.values()[jdbcTemplate.queryForObject(STATUS, Integer.class, id)];
+        OrderStatus target = current == OrderStatus.PROCESSING ? OrderStatus.SHIPPED : OrderStatus.DELIVERED;
+        try {
+            orderService.updateStatus(id, target, null);
+        } catch (ConflictException e) {
+            outcomes.conflicts++;
+            return false;
+        }
+        outcomes.updates++;
+        if (target == OrderStatus.DELIVERED) {
+            jdbcTemplate.update(RESET, OrderStatus.PROCESSING.ordinal(), id, OrderStatus.DELIVERED.ordinal());
+        }
+        return true;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private static User user(String name) {
+        User user = new User(UUID.randomUUID().toString(), name, "password", name + System.nanoTime() + "@filiera.it");
+        user.setPermissions(new UserRole[]{UserRole.DISTRIBUTOR});
+        return user;
+    }
+}
@@ -0,0 +1,113 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import it.unicam.cs.ids.filieraagricola.model.Product;
+import it.unicam.cs.ids.filieraagricola.services.SearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of the {@link SearchIndex} over {@code documents} generated products,
+ * for a word matching exactly, a word matching only as a prefix and a misspelled word
+ * found only by edit distance. The index size is printed by {@link SearchIndex#stats()}
+ * at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchIndexBenchmark {
+
+    private static final String[] FOODS = {"olio", "vino", "pomodoro", "formaggio", "miele", "farina", "pasta",
+            "salame", "prosciutto", "lenticchie", "ceci", "zafferano", "tartufo", "castagne", "mele", "pere"};
+    private static final String[] QUALITIES = {"extravergine", "biologico", "stagionato", "fresco", "integrale",
+            "artigianale", "rosso", "bianco", "affumicato", "selvatico", "dolce", "piccante"};
+    private static final String[] SYLLABLES = {"ca", "me", "ri", "no", "val", "ter", "mon", "sa", "lu", "gra",
+            "pi", "do", "ven", "tor", "li", "ma", "fer", "bo", "si", "ran"};
+    private static final int LIMIT = 20;
+
+    @Param({"10000", "100000"})
+    private int documents;
+
+    private SearchIndex index;
+
+    @Setup
+    public void fill() {
+        SplittableRandom random = new SplittableRandom(42);
+        index = new SearchIndex();
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            Product p = new Product();
+            p.setName(pick(random, FOODS) + " " + pick(random, QUALITIES) + " " + word(random));
+            p.setCategory(pick(random, FOODS));
+            StringBuilder description = new StringBuilder("Prodotto " + pick(random, QUALITIES) + " di");
+            for (int w = 0; w < 8; w++) {
+                description.append(' ').append(word(random));
+            }
+            p.setDescription(description.toString());
+            batch.add(p);
+            if (batch.size() == 1000) {
+                index.indexAll(batch);
+                batch.clear();
+            }
+        }
+        index.indexAll(batch);
+        for (String query : new String[]{"pomodoro", "prosciu", "formagio"}) {
+            if (index.search(query, null, 0, LIMIT).total() == 0) {
+                throw new IllegalStateException("No hits for " + query);
+            }
+        }
+    }
+
+    @TearDown
+    public void report() {
+        System.out.println("\n" + index.stats());
+    }
+
+    @Benchmark
+    public SearchIndex.Result exact() {
+        return index.search("pomodoro", null, 0, LIMIT);
+    }
+
+    @Benchmark
+    public SearchIndex.Result prefix() {
+        return index.search("prosciu", null, 0, LIMIT);
+    }
+
+    @Benchmark
+    public SearchIndex.Result fuzzy() {
+        return index.search("formagio", null, 0, LIMIT);
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private static String pick(SplittableRandom random, String[] words) {
+        return words[random.nextInt(words.length)];
+    }
+
+    /** A made-up word of two to four syllables, such as a producer or place name. */
+    private static String word(SplittableRandom random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int s = 0; s < syllables; s++) {
+            word.append(pick(random, SYLLABLES));
+        }
+        return word.toString();
+    }
+}
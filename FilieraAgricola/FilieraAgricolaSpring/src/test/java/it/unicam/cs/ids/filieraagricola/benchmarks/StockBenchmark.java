@@ -0,0 +1,99 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import it.unicam.cs.ids.filieraagricola.services.StockService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stock operations per second of {@link StockService} on the embedded H2 database, with
+ * four threads spread over {@code products} products: with one product every operation
+ * contends for the same stripe and row. {@link #rowLock()} sells a unit the way a
+ * database-only implementation would, locking the stock row for the check and the update
+ * in one transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class StockBenchmark {
+
+    private static final int STOCK = 1_000_000_000;
+
+    @Param({"1", "64"})
+    private int products;
+
+    private ConfigurableApplicationContext context;
+    private StockService stockService;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transaction;
+    private String[] productIds;
+
+    @Setup
+    public void start() {
+        context = H2Application.start();
+        stockService = context.getBean(StockService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        productIds = new String[products];
+        for (int i = 0; i < products; i++) {
+            productIds[i] = UUID.randomUUID().toString();
+            stockService.setStock(productIds[i], STOCK);
+        }
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean take() {
+        return stockService.take(Map.of(pick(), 1));
+    }
+
+    @Benchmark
+    public boolean reserveAndRelease() {
+        String id = stockService.reserve(Map.of(pick(), 1), null);
+        return id != null && stockService.release(id);
+    }
+
+    @Benchmark
+    public Boolean rowLock() {
+        String productId = pick();
+        return transaction.execute(status -> {
+            Integer onHand = jdbcTemplate.queryForObject(
+                    "select on_hand from product_stock where product_id = ? for update", Integer.class, productId);
+            return onHand != null && onHand > 0
+                    && jdbcTemplate.update("update product_stock set on_hand = on_hand - 1 where product_id = ?", productId) == 1;
+        });
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private String pick() {
+        return productIds[ThreadLocalRandom.current().nextInt(productIds.length)];
+    }
+}
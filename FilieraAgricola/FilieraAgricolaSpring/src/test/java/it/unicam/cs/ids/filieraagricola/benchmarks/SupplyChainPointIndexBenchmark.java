@@ -0,0 +1,98 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import it.unicam.cs.ids.filieraagricola.model.SupplyChainPoint;
+import it.unicam.cs.ids.filieraagricola.services.SupplyChainPointIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounding-box query of the map over {@code points} points spread across Italy, for a box
+ * about the size of a province. Compares {@link SupplyChainPointIndex#query} with a
+ * linear filter over every point, which is what the map did before the bounding-box
+ * endpoint, minus the transfer of the points.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SupplyChainPointIndexBenchmark {
+
+    private static final double MIN_LAT = 36.5;
+    private static final double MAX_LAT = 47.0;
+    private static final double MIN_LNG = 6.5;
+    private static final double MAX_LNG = 18.5;
+    private static final int LIMIT = 1000;
+
+    @Param({"10000", "100000"})
+    private int points;
+
+    private SupplyChainPointIndex index;
+    private List<SupplyChainPoint> all;
+    /** Boxes queried in turn, so every run does not hit the same cells. */
+    private double[][] boxes;
+    private int next;
+
+    @Setup
+    public void fill() {
+        SplittableRandom random = new SplittableRandom(42);
+        index = new SupplyChainPointIndex();
+        all = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            SupplyChainPoint point = new SupplyChainPoint(random.nextDouble(MIN_LAT, MAX_LAT), random.nextDouble(MIN_LNG, MAX_LNG));
+            point.setId("point-" + i);
+            index.add(point, "chain-" + (i % 100));
+            all.add(point);
+        }
+        boxes = new double[64][];
+        for (int i = 0; i < boxes.length; i++) {
+            double lat = random.nextDouble(MIN_LAT, MAX_LAT - 0.5);
+            double lng = random.nextDouble(MIN_LNG, MAX_LNG - 0.5);
+            boxes[i] = new double[]{lat, lng, lat + 0.5, lng + 0.5};
+        }
+    }
+
+    @Benchmark
+    public List<SupplyChainPointIndex.IndexedPoint> gridIndex() {
+        double[] box = box();
+        return index.query(box[0], box[1], box[2], box[3], null, LIMIT);
+    }
+
+    @Benchmark
+    public List<SupplyChainPoint> linearScan() {
+        double[] box = box();
+        List<SupplyChainPoint> result = new ArrayList<>();
+        for (SupplyChainPoint point : all) {
+            if (result.size() >= LIMIT) {
+                break;
+            }
+            if (point.getLat() >= box[0] && point.getLat() <= box[2] && point.getLng() >= box[1] && point.getLng() <= box[3]) {
+                result.add(point);
+            }
+        }
+        return result;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private double[] box() {
+        double[] box = boxes[next];
+        next = (next + 1) & (boxes.length - 1);
+        return box;
+    }
+}
@@ -0,0 +1,103 @@
+package it.unicam.cs.ids.filieraagricola.benchmarks;
+
+import it.unicam.cs.ids.filieraagricola.services.TimingWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline churn of the overdue detector: with {@code pending} open orders, one order is
+ * delivered (its deadline cancelled) and one is created (a deadline scheduled). Compares
+ * the {@link TimingWheel} with a {@link PriorityQueue}, whose cancel scans the heap, the
+ * structure the detector would otherwise use.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimingWheelBenchmark {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final long START = 1_700_000_000_000L;
+    /** Deadlines fall within the next 30 days. */
+    private static final long HORIZON = TimeUnit.DAYS.toMillis(30);
+
+    @Param({"10000", "100000"})
+    private int pending;
+
+    private SplittableRandom random;
+    private TimingWheel<String> wheel;
+    private List<TimingWheel.Timeout<String>> timeouts;
+    private PriorityQueue<Deadline> queue;
+    private List<Deadline> deadlines;
+    private int next;
+
+    private record Deadline(String orderId, long millis) {
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        random = new SplittableRandom(42);
+        wheel = new TimingWheel<>(TICK_MILLIS, START);
+        timeouts = new ArrayList<>(pending);
+        queue = new PriorityQueue<>(Comparator.comparingLong(Deadline::millis));
+        deadlines = new ArrayList<>(pending);
+        for (int i = 0; i < pending; i++) {
+            long millis = deadline();
+            timeouts.add(wheel.schedule("order-" + i, millis));
+            Deadline deadline = new Deadline("order-" + i, millis);
+            queue.add(deadline);
+            deadlines.add(deadline);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public TimingWheel.Timeout<String> timingWheel() {
+        int i = slot();
+        wheel.cancel(timeouts.get(i));
+        TimingWheel.Timeout<String> timeout = wheel.schedule("order-" + i, deadline());
+        timeouts.set(i, timeout);
+        return timeout;
+    }
+
+    @Benchmark
+    public Deadline priorityQueue() {
+        int i = slot();
+        queue.remove(deadlines.get(i));
+        Deadline deadline = new Deadline("order-" + i, deadline());
+        queue.add(deadline);
+        deadlines.set(i, deadline);
+        return deadline;
+    }
+
+    /* ----------------- private helpers ----------------- */
+
+    private int slot() {
+        int i = next;
+        next = (next + 1) % pending;
+        return i;
+    }
+
+    private long deadline() {
+        return START + random.nextLong(HORIZON);
+    }
+}
@@ -0,0 +1,311 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.model.Content;
+import it.unicam.cs.ids.filieraagricola.model.ContentAttachment;
+import it.unicam.cs.ids.filieraagricola.model.ContentState;
+import it.unicam.cs.ids.filieraagricola.model.ContentType;
+import it.unicam.cs.ids.filieraagricola.model.SupplyChain;
+import it.unicam.cs.ids.filieraagricola.model.SupplyChainPoint;
+import it.unicam.cs.ids.filieraagricola.services.exception.ConflictException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for {@link ContentService} moderation on an embedded H2 database.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+@DisplayName("ContentService Tests")
+class ContentServiceTest {
+
+    private static final int CURATORS = 4;
+
+    @Autowired
+    private ContentService service;
+    @Autowired
+    private SupplyChainService supplyChainService;
+    @Autowired
+    private ContentModerationQueue moderationQueue;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ApprovedContentsCache approvedCache;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private AttachmentService attachmentService;
+
+    private Statistics statistics;
+    private SupplyChainPoint point;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        SupplyChain chain = supplyChainService.createSupplyChain("Filiera Contenuti " + System.nanoTime(),
+                new ArrayList<>(), new ArrayList<>());
+        point = supplyChainService.acquirePoint(new SupplyChainPoint(43.14, 13.07), chain.getId());
+    }
+
+    @Test
+    @DisplayName("concurrent curators claim disjoint contents and decisions or timeouts release them")
+    void claimPending_concurrentCurators_neverShareContents() throws Exception {
+        Set<String> created = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            created.add(content("Certificazione " + i).getId());
+        }
+
+        List<String> claimed = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(CURATORS);
+        try {
+            List<Future<?>> curators = new ArrayList<>();
+            for (int c = 0; c < CURATORS; c++) {
+                String curator = "curator-" + c;
+                curators.add(executor.submit(() -> {
+                    List<ContentModerationQueue.Claim> batch;
+                    while (!(batch = service.claimPending(curator, 5, 60L)).isEmpty()) {
+                        batch.forEach(claim -> claimed.add(claim.content().getId()));
+                    }
+                }));
+            }
+            for (Future<?> curator : curators) {
+                curator.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Set<String> distinct = new HashSet<>(claimed);
+        String approved = created.iterator().next();
+        service.approve(approved);
+        boolean emptyWhileLeased = service.claimPending("late", 5, 60L).stream()
+                .noneMatch(c -> created.contains(c.content().getId()));
+
+        moderationQueue.expire(System.currentTimeMillis() + 61_000);
+        Set<String> reclaimed = new HashSet<>();
+        List<ContentModerationQueue.Claim> batch;
+        while (!(batch = service.claimPending("retry", ContentModerationQueue.MAX_CLAIM, 60L)).isEmpty()) {
+            batch.forEach(claim -> reclaimed.add(claim.content().getId()));
+        }
+
+        assertAll(
+                () -> assertEquals(claimed.size(), distinct.size(), "a content was claimed twice"),
+                () -> assertTrue(distinct.containsAll(created)),
+                () -> assertTrue(emptyWhileLeased),
+                () -> assertFalse(reclaimed.contains(approved)),
+                () -> assertEquals(created.size() - 1, reclaimed.stream().filter(created::contains).count())
+        );
+    }
+
+    @Test
+    @DisplayName("only the curator holding a lease decides the content until the lease times out")
+    void decisions_onLeasedContent_belongToTheHolder() {
+        String single = content("In revisione").getId();
+        String batched = content("In revisione, lotto").getId();
+        Set<String> claimed = new HashSet<>();
+        List<ContentModerationQueue.Claim> batch;
+        while (!claimed.containsAll(List.of(single, batched))
+                && !(batch = service.claimPending("titolare", ContentModerationQueue.MAX_CLAIM, 60L)).isEmpty()) {
+            batch.forEach(claim -> claimed.add(claim.content().getId()));
+        }
+
+        Map<String, ContentService.ModerationOutcome> intruded = service.moderate(
+                Map.of(ContentState.APPROVED, List.of(batched)), "intruso");
+        assertThrows(ConflictException.class, () -> service.approve(single, "intruso"));
+        boolean rejectedByHolder = service.reject(single, "titolare");
+        moderationQueue.expire(System.currentTimeMillis() + 61_000);
+        Map<String, ContentService.ModerationOutcome> afterTimeout = service.moderate(
+                Map.of(ContentState.APPROVED, List.of(batched)), "intruso");
+
+        assertAll(
+                () -> assertTrue(claimed.containsAll(List.of(single, batched))),
+                () -> assertEquals(ContentService.ModerationOutcome.LEASED, intruded.get(batched)),
+                () -> assertTrue(rejectedByHolder),
+                () -> assertEquals(ContentState.REJECTED, service.getContent(single).getState()),
+                () -> assertEquals(ContentService.ModerationOutcome.UPDATED, afterTimeout.get(batched)),
+                () -> assertEquals(ContentState.APPROVED, service.getContent(batched).getState())
+        );
+    }
+
+    @Test
+    @DisplayName("moderate updates a batch with one statement per state and reports every id")
+    void moderate_batch_usesOneUpdatePerState() {
+        List<String> approve = new ArrayList<>();
+        List<String> reject = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            (i % 3 == 0 ? reject : approve).add(content("Lotto " + i).getId());
+        }
+        String unknown = "missing-" + System.nanoTime();
+        reject.add(unknown);
+
+        statistics.clear();
+        Map<String, ContentService.ModerationOutcome> outcomes = service.moderate(
+                Map.of(ContentState.APPROVED, approve, ContentState.REJECTED, reject));
+        long batchStatements = statistics.getPrepareStatementCount();
+        Map<String, ContentService.ModerationOutcome> repeated = service.moderate(
+                Map.of(ContentState.APPROVED, approve.subList(0, 5)));
+
+        List<String> individual = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            individual.add(content("Singolo " + i).getId());
+        }
+        statistics.clear();
+        individual.forEach(service::approve);
+        long individualStatements = statistics.getPrepareStatementCount();
+
+        assertAll(
+                () -> assertEquals(3, batchStatements, "one read and one update per state"),
+                () -> assertTrue(individualStatements >= 2L * individual.size(), "statements: " + individualStatements),
+                () -> assertEquals(approve.size() + reject.size(), outcomes.size()),
+                () -> assertEquals(ContentService.ModerationOutcome.NOT_FOUND, outcomes.get(unknown)),
+                () -> assertEquals(approve.size() + reject.size() - 1, outcomes.values().stream()
+                        .filter(o -> o == ContentService.ModerationOutcome.UPDATED).count()),
+                () -> assertTrue(repeated.values().stream().allMatch(o -> o == ContentService.ModerationOutcome.UNCHANGED)),
+                () -> assertEquals(ContentState.APPROVED, service.getContent(approve.get(0)).getState()),
+                () -> assertEquals(ContentState.REJECTED, service.getContent(reject.get(0)).getState()),
+                () -> assertThrows(IllegalArgumentException.class, () -> service.moderate(
+                        Map.of(ContentState.APPROVED, approve.subList(0, 1), ContentState.REJECTED, approve.subList(0, 1)))),
+                () -> assertThrows(IllegalArgumentException.class, () -> service.moderate(
+                        Map.of(ContentState.PENDING, approve.subList(0, 1))))
+        );
+    }
+
+    @Test
+    @DisplayName("approved cache follows approvals, rejections and deletions and matches the database")
+    void approvedCache_followsModerationAndMatchesDatabase() throws IOException {
+        Content first = content("Biologico");
+        Content second = content("DOP");
+        Content third = content("IGP");
+        ApprovedContentsCache.Body before = approvedCache.get();
+
+        service.approve(first.getId());
+        service.moderate(Map.of(ContentState.APPROVED, List.of(second.getId(), third.getId())));
+        ApprovedContentsCache.Body approved = approvedCache.get();
+        service.reject(second.getId());
+        service.removeContent(third.getId());
+        ApprovedContentsCache.Body after = approvedCache.get();
+
+        JsonNode cached = objectMapper.readTree(after.json());
+        JsonNode expected = objectMapper.valueToTree(service.getContents(ContentState.APPROVED).stream()
+                .sorted(Comparator.comparing(Content::getId)).toList());
+        byte[] inflated = new GZIPInputStream(new ByteArrayInputStream(after.gzip())).readAllBytes();
+
+        assertAll(
+                () -> assertEquals(before.count() + 3, approved.count()),
+                () -> assertEquals(before.count() + 1, after.count()),
+                () -> assertNotEquals(before.etag(), approved.etag()),
+                () -> assertNotEquals(approved.etag(), after.etag()),
+                () -> assertSame(after, approvedCache.get()),
+                () -> assertEquals(expected, cached),
+                () -> assertArrayEquals(after.json(), inflated),
+                () -> assertTrue(after.matches(after.gzipEtag())),
+                () -> assertTrue(after.matches("W/" + after.etag() + ", \"other\"")),
+                () -> assertFalse(after.matches(approved.etag()))
+        );
+    }
+
+    @Test
+    @DisplayName("point index returns the approved contents of many points with one query")
+    void getApprovedByPoints_followsModerationWithSingleQuery() {
+        SupplyChain chain = supplyChainService.createSupplyChain("Filiera Punti " + System.nanoTime(),
+                new ArrayList<>(), new ArrayList<>());
+        SupplyChainPoint other = supplyChainService.acquirePoint(new SupplyChainPoint(42.5, 12.5), chain.getId());
+        Content kept = content("Biologico");
+        Content rejected = content("DOP");
+        Content removed = content("IGP");
+        Content elsewhere = service.addContent("Fattoria didattica", "Visite guidate", ContentType.CERTIFICATE, other.getId());
+        Content pending = content("In attesa");
+        service.moderate(Map.of(ContentState.APPROVED,
+                List.of(kept.getId(), rejected.getId(), removed.getId(), elsewhere.getId())));
+        service.reject(rejected.getId());
+        service.removeContent(removed.getId());
+
+        statistics.clear();
+        Map<String, List<Content>> byPoint = service.getApprovedByPoints(List.of(point.getId(), other.getId(), "missing"));
+        long statements = statistics.getPrepareStatementCount();
+
+        assertAll(
+                () -> assertEquals(1, statements),
+                () -> assertEquals(List.of(point.getId(), other.getId()), List.copyOf(byPoint.keySet())),
+                () -> assertEquals(List.of(kept.getId()), byPoint.get(point.getId()).stream().map(Content::getId).toList()),
+                () -> assertEquals(List.of(elsewhere.getId()), byPoint.get(other.getId()).stream().map(Content::getId).toList()),
+                () -> assertFalse(byPoint.get(point.getId()).contains(pending)),
+                () -> assertThrows(IllegalArgumentException.class, () -> service.getApprovedByPoints(
+                        Collections.nCopies(ContentService.MAX_POINTS + 1, point.getId())))
+        );
+    }
+
+    @Test
+    @DisplayName("attachments are stored once per hash and served by range")
+    void attach_deduplicatesByHashAndTransfersRanges() throws IOException {
+        byte[] bytes = new byte[8 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(bytes);
+        Content owner = content("Certificato biologico");
+        Content other = content("Foto campo");
+
+        ContentAttachment first = attachmentService.attach(owner.getId(), "cert.pdf", "application/pdf", new ByteArrayInputStream(bytes));
+        ContentAttachment second = attachmentService.attach(other.getId(), "copia.pdf", "application/pdf", new ByteArrayInputStream(bytes));
+        Path file = attachmentService.file(first);
+
+        ByteArrayOutputStream full = new ByteArrayOutputStream(bytes.length);
+        long started = System.nanoTime();
+        long sent = attachmentService.transfer(first, new AttachmentService.Range(0, bytes.length - 1), Channels.newChannel(full));
+        double mbPerSecond = bytes.length / 1e6 / ((System.nanoTime() - started) / 1e9);
+        ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        attachmentService.transfer(first, AttachmentService.Range.parse("bytes=-100", bytes.length), Channels.newChannel(tail));
+
+        service.removeContent(owner.getId());
+        boolean keptForOther = Files.exists(file);
+        attachmentService.detach(other.getId(), second.getId());
+
+        assertAll(
+                () -> assertEquals(first.getSha256(), second.getSha256()),
+                () -> assertEquals(file, attachmentService.file(second)),
+                () -> assertEquals(bytes.length, first.getSize()),
+                () -> assertEquals(bytes.length, sent, "throughput " + mbPerSecond + " MB/s"),
+                () -> assertArrayEquals(bytes, full.toByteArray()),
+                () -> assertArrayEquals(Arrays.copyOfRange(bytes, bytes.length - 100, bytes.length), tail.toByteArray()),
+                () -> assertEquals(new AttachmentService.Range(10, 19), AttachmentService.Range.parse("bytes=10-19", bytes.length)),
+                () -> assertEquals(bytes.length - 1L, AttachmentService.Range.parse("bytes=10-", bytes.length).end()),
+                () -> assertNull(AttachmentService.Range.parse("bytes=0-1,5-6", bytes.length)),
+                () -> assertThrows(IllegalArgumentException.class, () -> AttachmentService.Range.parse("bytes=" + bytes.length + "-", bytes.length)),
+                () -> assertTrue(attachmentService.getAttachments(owner.getId()).isEmpty()),
+                () -> assertTrue(keptForOther),
+                () -> assertFalse(Files.exists(file)),
+                () -> assertNull(attachmentService.attach("missing", "x", null, new ByteArrayInputStream(bytes)))
+        );
+    }
+
+    private Content content(String name) {
+        return service.addContent(name, "Disciplinare di produzione", ContentType.CERTIFICATE, point.getId());
+    }
+}
@@ -0,0 +1,679 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.controllers.dto.OrderDto;
+import it.unicam.cs.ids.filieraagricola.controllers.dto.OrderItemDto;
+import it.unicam.cs.ids.filieraagricola.model.Order;
+import it.unicam.cs.ids.filieraagricola.model.OrderStatus;
+import it.unicam.cs.ids.filieraagricola.model.Product;
+import it.unicam.cs.ids.filieraagricola.model.SupplyChain;
+import it.unicam.cs.ids.filieraagricola.model.User;
+import it.unicam.cs.ids.filieraagricola.model.UserRole;
+import it.unicam.cs.ids.filieraagricola.model.repositories.UserRepository;
+import it.unicam.cs.ids.filieraagricola.services.exception.ConflictException;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for {@link OrderService} on an embedded H2 database.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+@DisplayName("OrderService Tests")
+@RecordApplicationEvents
+class OrderServiceTest {
+
+    private static final int LINES = 200;
+    /** Users lookup, products lookup and order insert; items go through JDBC. */
+    private static final int MAX_STATEMENTS = 3;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private SupplyChainService supplyChainService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private OrderIntake orderIntake;
+    @Autowired
+    private OrderAnalytics analytics;
+    @Autowired
+    private OverdueOrderDetector overdueDetector;
+    @Autowired
+    private ApplicationEvents events;
+    @Autowired
+    private StockService stockService;
+    @Autowired
+    private OrderArchiver archiver;
+    @Autowired
+    private OrderExporter orderExporter;
+    @Autowired
+    private OrderJournal journal;
+    @Autowired
+    private NdjsonExporter exporter;
+
+    private Statistics statistics;
+    private User buyer;
+    private User seller;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        buyer = userRepository.save(user("buyer"));
+        seller = userRepository.save(user("seller"));
+        SupplyChain chain = supplyChainService.createSupplyChain("Filiera Vino " + System.nanoTime(), new ArrayList<>(), new ArrayList<>());
+        products = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            Product p = new Product(null, "Vino " + i, "vino", "Rosso", Date.valueOf("2025-10-01"));
+            p.setPrice(10);
+            products.add(supplyChainService.acquireProduct(p, chain.getId()));
+        }
+    }
+
+    @Test
+    @DisplayName("createOrder issues a constant number of statements for large orders")
+    void createOrder_withManyLines_batchesWrites() {
+        OrderDto dto = order(buyer.getId(), seller.getId());
+        for (Product p : products) {
+            dto.getOrderItemDtoList().add(line(p.getId(), 2));
+        }
+
+        statistics.clear();
+        boolean created = orderService.createOrder(dto);
+        long statements = statistics.getPrepareStatementCount();
+
+        Order order = lastOrderOf(buyer);
+        assertAll(
+                () -> assertTrue(created),
+                () -> assertTrue(statements <= MAX_STATEMENTS, "statements: " + statements),
+                () -> assertEquals(LINES * 2 * 10.0, order.getTotalAmount()),
+                () -> assertEquals(LINES, jdbcTemplate.queryForObject(
+                        "select count(*) from orders_order_items where order_id = ?", Integer.class, order.getId()))
+        );
+    }
+
+    @Test
+    @DisplayName("the NDJSON order stream loads items with one query per chunk, not per order")
+    void stream_fetchesItemsPerChunk() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(products.get(i).getId(), 1));
+            dto.getOrderItemDtoList().add(line(products.get(i + 10).getId(), 2));
+            orderService.createOrder(dto);
+        }
+        long orders = jdbcTemplate.queryForObject("select count(*) from orders", Long.class);
+        long chunks = (orders + NdjsonExporter.CLEAR_EVERY - 1) / NdjsonExporter.CLEAR_EVERY;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statistics.clear();
+        exporter.export(orderService::streamAll, orderService::fetchItems).writeTo(out);
+        long statements = statistics.getPrepareStatementCount();
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+
+        assertAll(
+                () -> assertEquals(orders, lines.size()),
+                () -> assertTrue(statements <= 1 + chunks, "statements: " + statements),
+                () -> assertTrue(lines.stream().anyMatch(l -> l.contains("\"orderItems\":[{")))
+        );
+    }
+
+    @Test
+    @DisplayName("createOrder skips lines referring to unknown products")
+    void createOrder_withUnknownProduct_skipsLine() {
+        OrderDto dto = order(buyer.getId(), seller.getId());
+        dto.getOrderItemDtoList().add(line(products.get(0).getId(), 3));
+        dto.getOrderItemDtoList().add(line("missing", 5));
+
+        assertTrue(orderService.createOrder(dto));
+        assertEquals(30.0, lastOrderOf(buyer).getTotalAmount());
+    }
+
+    @Test
+    @DisplayName("createOrder returns false when the seller does not exist")
+    void createOrder_withUnknownSeller_returnsFalse() {
+        assertFalse(orderService.createOrder(order(buyer.getId(), "missing")));
+    }
+
+    @Test
+    @DisplayName("orders submitted to the intake queue are persisted by the workers")
+    void submit_persistsOrdersAsynchronously() throws InterruptedException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(products.get(i).getId(), 1));
+            ids.add(orderIntake.submit(dto));
+        }
+        String invalid = orderIntake.submit(order(buyer.getId(), "missing"));
+
+        awaitProcessed(ids);
+        awaitProcessed(List.of(invalid));
+
+        assertAll(
+                () -> assertTrue(ids.stream().allMatch(id -> orderIntake.getStatus(id) == OrderIntake.Status.CREATED)),
+                () -> assertTrue(ids.stream().allMatch(orderService::exists)),
+                () -> assertEquals(OrderIntake.Status.REJECTED, orderIntake.getStatus(invalid)),
+                () -> assertEquals(20, orderService.findByBuyer(buyer.getId()).size())
+        );
+    }
+
+    @Test
+    @DisplayName("stopping the intake persists every accepted order and refuses new ones")
+    void stop_drainsAcceptedOrders() throws InterruptedException {
+        OrderIntake intake = new OrderIntake();
+        ReflectionTestUtils.setField(intake, "orderService", orderService);
+        ReflectionTestUtils.setField(intake, "capacity", 1000);
+        ReflectionTestUtils.setField(intake, "workers", 2);
+        ReflectionTestUtils.setField(intake, "drainSeconds", 60L);
+        intake.start();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(products.get(i).getId(), 1));
+            ids.add(intake.submit(dto));
+        }
+
+        intake.stop();
+
+        assertAll(
+                () -> assertTrue(ids.stream().allMatch(id -> intake.getStatus(id) == OrderIntake.Status.CREATED)),
+                () -> assertEquals(120, orderService.findByBuyer(buyer.getId()).size()),
+                () -> assertNull(intake.submit(order(buyer.getId(), seller.getId())))
+        );
+    }
+
+    @Test
+    @DisplayName("analytics rollups follow order creation and deletion")
+    void analytics_followCreateAndDelete() {
+        for (int quantity = 1; quantity <= 3; quantity++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(products.get(0).getId(), quantity));
+            orderService.createOrder(dto);
+        }
+        OrderAnalytics.Summary afterCreate = analytics.getSellerSummary(seller.getId());
+        List<OrderAnalytics.DailyAverage> daily = analytics.getSellerDailyAverages(seller.getId(), null, null);
+
+        orderService.deleteOrder(lastOrderOf(buyer).getId());
+        OrderAnalytics.Summary afterDelete = analytics.getSellerSummary(seller.getId());
+
+        assertAll(
+                () -> assertEquals(3, afterCreate.countByStatus().get(OrderStatus.PROCESSING)),
+                () -> assertEquals(20.0, afterCreate.averageOrderValue()),
+                () -> assertEquals(1, daily.size()),
+                () -> assertEquals(3, daily.get(0).orders()),
+                () -> assertEquals(2, afterDelete.countByStatus().get(OrderStatus.PROCESSING)),
+                () -> assertTrue(analytics.check().consistent(), () -> analytics.check().differences().toString())
+        );
+    }
+
+    @Test
+    @DisplayName("analytics rebuilt from the database round each order to cents like the live deltas")
+    void analytics_rebuildRoundsEachOrder() {
+        SupplyChain chain = supplyChainService.createSupplyChain("Filiera Sfusi " + System.nanoTime(), new ArrayList<>(), new ArrayList<>());
+        Product bulk = new Product(null, "Sale sfuso", "sale", "Al grammo", Date.valueOf("2025-10-01"));
+        bulk.setPrice(0.005);
+        bulk = supplyChainService.acquireProduct(bulk, chain.getId());
+        for (int i = 0; i < 3; i++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(bulk.getId(), 1));
+            orderService.createOrder(dto);
+        }
+        OrderAnalytics.Summary live = analytics.getSellerSummary(seller.getId());
+        OrderAnalytics.Check check = analytics.check();
+
+        analytics.rebuild();
+
+        assertAll(
+                () -> assertTrue(check.consistent(), check.differences()::toString),
+                () -> assertEquals(0.01, live.averageOrderValue()),
+                () -> assertEquals(live, analytics.getSellerSummary(seller.getId()))
+        );
+    }
+
+    @Test
+    @DisplayName("findByDateRange pages a seller's orders in date order from memory and from the database")
+    void findByDateRange_walksPagesFromIndexAndDatabase() {
+        for (int i = 0; i < 5; i++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(products.get(i).getId(), 1));
+            orderService.createOrder(dto);
+        }
+        Timestamp to = new Timestamp(System.currentTimeMillis() + 1000);
+        Timestamp recent = new Timestamp(System.currentTimeMillis() - 3_600_000);
+        Timestamp old = Timestamp.valueOf("2000-01-01 00:00:00");
+
+        List<Order> fromIndex = walkDateRange(recent, to);
+        List<Order> fromDatabase = walkDateRange(old, to);
+
+        assertAll(
+                () -> assertEquals(5, fromIndex.size()),
+                () -> assertEquals(fromIndex.stream().map(Order::getId).toList(), fromDatabase.stream().map(Order::getId).toList()),
+                () -> assertTrue(isSortedByDate(fromIndex)),
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> orderService.findByDateRange(to, recent, null, null, 10))
+        );
+    }
+
+    @Test
+    @DisplayName("deadlines of undelivered orders fire once and flag the orders overdue")
+    void overdueDetector_flagsOrdersPastTheirDeadline() {
+        for (int i = 0; i < 4; i++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(products.get(i).getId(), 1));
+            orderService.createOrder(dto);
+        }
+        List<String> ids = orderService.findByBuyer(buyer.getId()).stream().map(Order::getId).toList();
+        orderService.deleteOrder(ids.get(0));
+        // closed behind the detector's back: its deadline is still in the wheel
+        jdbcTemplate.update("update orders set status = ? where id = ?", OrderStatus.DELIVERED.ordinal(), ids.get(3));
+        long now = System.currentTimeMillis();
+
+        try {
+            List<String> early = overdueDetector.advance(now + OrderService.DEFAULT_DELIVERY_TIME - 60_000);
+            List<String> expired = overdueDetector.advance(now + OrderService.DEFAULT_DELIVERY_TIME + 2_000);
+            List<String> overdue = orderService.findOverdue().stream().map(Order::getId).toList();
+            List<String> published = events.stream(OrderOverdueEvent.class).map(OrderOverdueEvent::orderId).toList();
+
+            assertAll(
+                    () -> assertTrue(early.stream().noneMatch(ids::contains)),
+                    () -> assertTrue(expired.containsAll(ids.subList(1, 3))),
+                    () -> assertFalse(expired.contains(ids.get(0))),
+                    () -> assertTrue(overdue.containsAll(ids.subList(1, 3))),
+                    () -> assertTrue(published.containsAll(ids.subList(1, 3))),
+                    () -> assertFalse(expired.contains(ids.get(3))),
+                    () -> assertFalse(overdue.contains(ids.get(3))),
+                    () -> assertFalse(published.contains(ids.get(3)))
+            );
+        } finally {
+            // the wheel was moved into the future and an order was closed behind the services' back
+            overdueDetector.rebuild();
+            analytics.rebuild();
+        }
+    }
+
+    @Test
+    @DisplayName("concurrent status updates apply each transition exactly once")
+    void updateStatus_underContention_neverLosesUpdates() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(products.get(i).getId(), 1));
+            orderService.createOrder(dto);
+        }
+        List<String> ids = orderService.findByBuyer(buyer.getId()).stream().map(Order::getId).toList();
+
+        int shipped = race(ids, id -> orderService.updateStatus(id, OrderStatus.SHIPPED, 0L));
+        int delivered = race(ids, id -> orderService.updateStatus(id, OrderStatus.DELIVERED, null));
+        List<Order> orders = orderService.findByBuyer(buyer.getId());
+
+        assertAll(
+                () -> assertEquals(ids.size(), shipped),
+                () -> assertEquals(ids.size(), delivered),
+                () -> assertTrue(orders.stream().allMatch(o -> o.getStatus() == OrderStatus.DELIVERED && o.getVersion() == 2)),
+                () -> assertThrows(ConflictException.class, () -> orderService.updateStatus(ids.get(0), OrderStatus.SHIPPED, null)),
+                () -> assertNull(orderService.updateStatus("missing", OrderStatus.SHIPPED, null)),
+                () -> assertTrue(analytics.check().consistent(), () -> analytics.check().differences().toString())
+        );
+    }
+
+    @Test
+    @DisplayName("concurrent orders for a hot product never oversell it")
+    void createOrder_onScarceProduct_neverOversells() throws InterruptedException {
+        String productId = products.get(0).getId();
+        stockService.setStock(productId, 100);
+        AtomicInteger created = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 150; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    OrderDto dto = order(buyer.getId(), seller.getId());
+                    dto.getOrderItemDtoList().add(line(productId, 1));
+                    if (orderService.createOrder(dto)) {
+                        created.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+        StockService.Availability soldOut = stockService.getAvailability(productId);
+        orderService.updateStatus(lastOrderOf(buyer).getId(), OrderStatus.CANCELLED, null);
+
+        assertAll(
+                () -> assertEquals(100, created.get()),
+                () -> assertEquals(100, orderService.findByBuyer(buyer.getId()).size()),
+                () -> assertEquals(0, soldOut.available()),
+                () -> assertEquals(1, stockService.getAvailability(productId).available()),
+                () -> assertEquals(1, jdbcTemplate.queryForObject(
+                        "select on_hand from product_stock where product_id = ?", Integer.class, productId))
+        );
+    }
+
+    @Test
+    @DisplayName("reservations hold stock until committed by an order, released or expired")
+    void reserve_holdsStockUntilCommitReleaseOrExpiry() {
+        String productId = products.get(1).getId();
+        stockService.setStock(productId, 10);
+
+        String committed = stockService.reserve(Map.of(productId, 6), null);
+        String refused = stockService.reserve(Map.of(productId, 5), null);
+        String expiring = stockService.reserve(Map.of(productId, 4), 1L);
+        int released = stockService.expire(System.currentTimeMillis() + 2_000);
+        OrderDto dto = order(buyer.getId(), seller.getId());
+        dto.getOrderItemDtoList().add(line(productId, 6));
+        dto.setReservationId(committed);
+        boolean ordered = orderService.createOrder(dto);
+        String other = stockService.reserve(Map.of(productId, 3), null);
+        boolean releasedOther = stockService.release(other);
+
+        assertAll(
+                () -> assertNotNull(committed),
+                () -> assertNull(refused),
+                () -> assertNotNull(expiring),
+                () -> assertEquals(1, released),
+                () -> assertTrue(ordered),
+                () -> assertTrue(releasedOther),
+                () -> assertFalse(stockService.commit(committed)),
+                () -> assertEquals(new StockService.Availability(productId, 4, 0, 4), stockService.getAvailability(productId))
+        );
+    }
+
+    @Test
+    @DisplayName("a reservation that cannot be recorded holds nothing and durations are capped")
+    void reserve_failedInsertHoldsNothingAndTtlIsCapped() {
+        String productId = products.get(3).getId();
+        stockService.setStock(productId, 10);
+        Map<String, Integer> unrecordable = Map.of(productId, 4, "x".repeat(300), 1);
+
+        assertThrows(RuntimeException.class, () -> stockService.reserve(unrecordable, null));
+        StockService.Availability afterFailure = stockService.getAvailability(productId);
+        String capped = stockService.reserve(Map.of(productId, 2), 365L * 24 * 3600);
+        int releasedEarly = stockService.expire(System.currentTimeMillis() + 3_599_000);
+        int releasedAtMax = stockService.expire(System.currentTimeMillis() + 3_602_000);
+
+        assertAll(
+                () -> assertEquals(new StockService.Availability(productId, 10, 0, 10), afterFailure),
+                () -> assertNotNull(capped),
+                () -> assertEquals(0, releasedEarly),
+                () -> assertEquals(1, releasedAtMax),
+                () -> assertEquals(0, jdbcTemplate.queryForObject(
+                        "select reserved from product_stock where product_id = ?", Integer.class, productId))
+        );
+    }
+
+    @Test
+    @DisplayName("an order sells its own quantities through a reservation and is refused when the stock does not cover them")
+    void reservedOrder_sellsOrderedQuantities() {
+        String productId = products.get(2).getId();
+        stockService.setStock(productId, 5);
+        String reservation = stockService.reserve(Map.of(productId, 3), null);
+        String held = stockService.reserve(Map.of(productId, 2), null);
+
+        OrderDto tooMany = order(buyer.getId(), seller.getId());
+        tooMany.getOrderItemDtoList().add(line(productId, 4));
+        tooMany.setReservationId(reservation);
+        boolean refused = orderService.createOrder(tooMany);
+        StockService.Availability afterRefusal = stockService.getAvailability(productId);
+
+        OrderDto fewer = order(buyer.getId(), seller.getId());
+        fewer.getOrderItemDtoList().add(line(productId, 1));
+        fewer.setReservationId(reservation);
+        boolean ordered = orderService.createOrder(fewer);
+
+        assertAll(
+                () -> assertFalse(refused),
+                () -> assertEquals(new StockService.Availability(productId, 5, 5, 0), afterRefusal),
+                () -> assertTrue(ordered),
+                () -> assertEquals(1, orderService.findByBuyer(buyer.getId()).size()),
+                () -> assertEquals(new StockService.Availability(productId, 4, 2, 2), stockService.getAvailability(productId)),
+                () -> assertEquals(4, jdbcTemplate.queryForObject(
+                        "select on_hand from product_stock where product_id = ?", Integer.class, productId)),
+                () -> assertTrue(stockService.release(held))
+        );
+    }
+
+    @Test
+    @DisplayName("archival moves orders and items to the archive tables and reports progress")
+    void archive_movesOrdersAndItemsInBulk() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(products.get(i).getId(), 1));
+            dto.getOrderItemDtoList().add(line(products.get(i + 3).getId(), 2));
+            orderService.createOrder(dto);
+        }
+        List<String> ids = orderService.findByBuyer(buyer.getId()).stream().map(Order::getId).toList();
+
+        OrderArchiver.Progress started = archiver.start(new Timestamp(System.currentTimeMillis() + 1000),
+                Set.of(OrderStatus.PROCESSING), true);
+        OrderArchiver.Progress progress = archiver.getProgress(started.id());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (progress.state() == OrderArchiver.State.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            progress = archiver.getProgress(started.id());
+        }
+        OrderArchiver.Progress finished = progress;
+
+        assertAll(
+                () -> assertEquals(OrderArchiver.State.COMPLETED, finished.state(), finished.error()),
+                () -> assertEquals(finished.total(), finished.processed()),
+                () -> assertTrue(finished.processed() >= 3),
+                () -> assertTrue(orderService.findByBuyer(buyer.getId()).isEmpty()),
+                () -> assertEquals(3, jdbcTemplate.queryForObject(
+                        "select count(*) from orders_archive where buyer_id = ?", Integer.class, buyer.getId())),
+                () -> assertEquals(6, jdbcTemplate.queryForObject(
+                        "select count(*) from order_item_archive where order_id in (?, ?, ?)", Integer.class, ids.toArray())),
+                () -> assertTrue(analytics.check().consistent(), () -> analytics.check().differences().toString())
+        );
+    }
+
+    @Test
+    @DisplayName("journal records every change of an order and replays them across segments")
+    void journal_recordsChangesAndReplaysAcrossSegments() {
+        for (int i = 0; i < 2; i++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(products.get(i).getId(), 1));
+            orderService.createOrder(dto);
+        }
+        List<String> ids = orderService.findByBuyer(buyer.getId()).stream().map(Order::getId).toList();
+        String kept = ids.get(0);
+        String deleted = ids.get(1);
+        orderService.updateStatus(kept, OrderStatus.SHIPPED, null);
+        orderService.deleteOrder(deleted);
+        // enough events to roll over the small test segments
+        String filler = UUID.randomUUID().toString();
+        for (int i = 0; i < 1000; i++) {
+            journal.statusChanged(filler, OrderStatus.PROCESSING, OrderStatus.SHIPPED);
+        }
+        journal.sync();
+
+        List<OrderJournal.Event> history = journal.history(kept);
+        List<Long> sequences = new ArrayList<>();
+        journal.replay(1, e -> sequences.add(e.sequence()));
+        Map<String, Order> state = journal.replayState();
+        OrderJournal.Stats stats = journal.stats();
+
+        assertAll(
+                () -> assertEquals(List.of(OrderJournal.Type.CREATED, OrderJournal.Type.STATUS_CHANGED),
+                        history.stream().map(OrderJournal.Event::type).toList()),
+                () -> assertEquals(seller.getId(), history.get(0).sellerId()),
+                () -> assertEquals(OrderStatus.SHIPPED, state.get(kept).getStatus()),
+                () -> assertFalse(state.containsKey(deleted)),
+                () -> assertEquals(OrderJournal.Type.DELETED, journal.history(deleted).get(1).type()),
+                () -> assertEquals(1000, journal.history(filler).size()),
+                () -> assertTrue(stats.segments() > 1),
+                () -> assertEquals(stats.lastSequence(), sequences.size()),
+                () -> assertEquals(sequences.get(sequences.size() - 1), stats.lastSequence())
+        );
+    }
+
+    @Test
+    @DisplayName("a journal replay missing orders of the database is refused and keeps the rollups")
+    void replay_missingOrders_isRefused() {
+        OrderDto dto = order(buyer.getId(), seller.getId());
+        dto.getOrderItemDtoList().add(line(products.get(0).getId(), 1));
+        orderService.createOrder(dto);
+        Map<String, Order> state = new HashMap<>(journal.replayState());
+        state.remove(lastOrderOf(buyer).getId());
+        OrderAnalytics.Summary before = analytics.getSummary();
+
+        assertThrows(ConflictException.class, () -> analytics.rebuild(state));
+        assertEquals(before, analytics.getSummary());
+    }
+
+    @Test
+    @DisplayName("export writes the orders of a date range as gzip CSV and as a columnar file")
+    void export_writesCsvAndColumnarFiles() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            OrderDto dto = order(buyer.getId(), seller.getId());
+            dto.getOrderItemDtoList().add(line(products.get(i).getId(), i + 1));
+            orderService.createOrder(dto);
+        }
+        Set<String> ids = Set.copyOf(orderService.findByBuyer(buyer.getId()).stream().map(Order::getId).toList());
+        Timestamp from = new Timestamp(System.currentTimeMillis() - 60_000);
+        Timestamp to = new Timestamp(System.currentTimeMillis() + 60_000);
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        long csvRows = orderExporter.export(from, to, OrderExporter.Format.CSV, csv);
+        List<String> lines = new String(new GZIPInputStream(new ByteArrayInputStream(csv.toByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8).lines().toList();
+
+        ByteArrayOutputStream columnar = new ByteArrayOutputStream();
+        long columnarRows = orderExporter.export(from, to, OrderExporter.Format.COLUMNAR, columnar);
+        ColumnarFile.Reader reader = new ColumnarFile.Reader(new ByteArrayInputStream(columnar.toByteArray()));
+        List<Object[]> rows = new ArrayList<>();
+        for (Object[] row = reader.next(); row != null; row = reader.next()) {
+            rows.add(row);
+        }
+        List<Object[]> ours = rows.stream().filter(r -> ids.contains((String) r[0])).toList();
+
+        assertAll(
+                () -> assertTrue(lines.get(0).startsWith("id,order_date,seller_id")),
+                () -> assertEquals(csvRows + 1, lines.size()),
+                () -> assertEquals(3, lines.stream().filter(l -> ids.contains(l.substring(0, l.indexOf(',')))).count()),
+                () -> assertEquals(csvRows, columnarRows),
+                () -> assertEquals(columnarRows, rows.size()),
+                () -> assertEquals(3, ours.size()),
+                () -> assertTrue(ours.stream().allMatch(r -> "PROCESSING".equals(r[4]) && (Integer) r[6] == 1 && r[1] instanceof Timestamp)),
+                () -> assertEquals(60.0, ours.stream().mapToDouble(r -> (Double) r[5]).sum())
+        );
+    }
+
+    /** Runs 16 concurrent updates per order and returns how many succeeded. */
+    private static int race(List<String> ids, Consumer<String> update) throws InterruptedException {
+        AtomicInteger succeeded = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String id : ids) {
+                for (int i = 0; i < 16; i++) {
+                    executor.submit(() -> {
+                        start.await();
+                        try {
+                            update.accept(id);
+                            succeeded.incrementAndGet();
+                        } catch (ConflictException e) {
+                            // lost the race
+                        }
+                        return null;
+                    });
+                }
+            }
+            start.countDown();
+        }
+        return succeeded.get();
+    }
+
+    private List<Order> walkDateRange(Timestamp from, Timestamp to) {
+        List<Order> all = new ArrayList<>();
+        String after = null;
+        List<Order> page;
+        do {
+            page = orderService.findByDateRange(from, to, seller.getId(), after, 2);
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                after = OrderService.cursorOf(page.get(page.size() - 1));
+            }
+        } while (page.size() == 2);
+        return all;
+    }
+
+    private static boolean isSortedByDate(List<Order> orders) {
+        for (int i = 1; i < orders.size(); i++) {
+            if (orders.get(i - 1).getOrderDate().after(orders.get(i).getOrderDate())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void awaitProcessed(List<String> ids) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (ids.stream().anyMatch(id -> orderIntake.getStatus(id) == OrderIntake.Status.QUEUED)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private Order lastOrderOf(User user) {
+        List<Order> orders = orderService.findByBuyer(user.getId());
+        return orders.get(orders.size() - 1);
+    }
+
+    private static User user(String name) {
+        User user = new User(UUID.randomUUID().toString(), name, "password", name + System.nanoTime() + "@filiera.it");
+        user.setPermissions(new UserRole[]{UserRole.DISTRIBUTOR});
+        return user;
+    }
+
+    private static OrderDto order(String buyerId, String sellerId) {
+        OrderDto dto = new OrderDto();
+        dto.setBuyerId(buyerId);
+        dto.setSellerId(sellerId);
+        dto.setOrderItemDtoList(new ArrayList<>());
+        dto.setDeliveryAddress("Via Roma 1, Camerino");
+        dto.setPaymentMethod("card");
+        dto.setDeliveryMethod("home_delivery");
+        return dto;
+    }
+
+    private static OrderItemDto line(String productId, int quantity) {
+        OrderItemDto dto = new OrderItemDto();
+        dto.setProductId(productId);
+        dto.setQuantity(quantity);
+        return dto;
+    }
+}
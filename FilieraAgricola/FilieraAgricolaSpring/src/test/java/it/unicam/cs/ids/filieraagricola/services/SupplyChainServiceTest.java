@@ -0,0 +1,422 @@
+package it.unicam.cs.ids.filieraagricola.services;
+
+import it.unicam.cs.ids.filieraagricola.controllers.dto.BulkImportResultDto;
+import it.unicam.cs.ids.filieraagricola.controllers.dto.SupplyChainSummaryDto;
+import it.unicam.cs.ids.filieraagricola.model.Product;
+import it.unicam.cs.ids.filieraagricola.model.SupplyChain;
+import it.unicam.cs.ids.filieraagricola.model.SupplyChainPoint;
+import it.unicam.cs.ids.filieraagricola.services.exception.ValidationException;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for {@link SupplyChainService} on an embedded H2 database.
+ *
+ * <p>Statement counts are read from Hibernate statistics to check that appending
+ * to or removing from a large supply chain touches a single join row.</p>
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+@DisplayName("SupplyChainService Tests")
+class SupplyChainServiceTest {
+
+    private static final int CHAIN_SIZE = 50;
+    /** Existence check, primary key lookup, entity write and join row write. */
+    private static final int MAX_STATEMENTS = 4;
+    private static final byte[] LOT_1 = "{\"lotto\":1}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LOT_2 = "{\"lotto\":2}".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private SupplyChainService service;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private SearchIndex searchIndex;
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    private Statistics statistics;
+    private SupplyChain chain;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        chain = service.createSupplyChain("Filiera Olio " + System.nanoTime(), new ArrayList<>(), new ArrayList<>());
+        for (int i = 0; i < CHAIN_SIZE; i++) {
+            service.acquireProduct(product("Olio " + i), chain.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("acquireProduct on a large chain issues a constant number of statements")
+    void acquireProduct_onLargeChain_doesNotRewriteJoinTable() {
+        statistics.clear();
+        Product added = service.acquireProduct(product("Olio nuovo"), chain.getId());
+
+        assertAll(
+                () -> assertNotNull(added),
+                () -> assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS,
+                        "statements: " + statistics.getPrepareStatementCount()),
+                () -> assertEquals(0, statistics.getCollectionLoadCount()),
+                () -> assertEquals(CHAIN_SIZE + 1, joinRows("supply_chain_products"))
+        );
+    }
+
+    @Test
+    @DisplayName("deleteProduct on a large chain removes a single join row")
+    void deleteProduct_onLargeChain_deletesSingleRow() {
+        Product target = service.acquireProduct(product("Da rimuovere"), chain.getId());
+
+        statistics.clear();
+        boolean removed = service.deleteProduct(chain.getId(), target.getId());
+
+        assertAll(
+                () -> assertTrue(removed),
+                () -> assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS,
+                        "statements: " + statistics.getPrepareStatementCount()),
+                () -> assertEquals(0, statistics.getCollectionLoadCount()),
+                () -> assertEquals(CHAIN_SIZE, joinRows("supply_chain_products"))
+        );
+    }
+
+    @Test
+    @DisplayName("acquirePoint appends a single join row and returns the saved point")
+    void acquirePoint_appendsSingleRow() {
+        statistics.clear();
+        SupplyChainPoint point = service.acquirePoint(new SupplyChainPoint(43.14, 13.07), chain.getId());
+
+        assertAll(
+                () -> assertNotNull(point.getId()),
+                () -> assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS,
+                        "statements: " + statistics.getPrepareStatementCount()),
+                () -> assertEquals(1, joinRows("supply_chain_points"))
+        );
+    }
+
+    @Test
+    @DisplayName("createSupplyChain indexes the points it is created with")
+    void createSupplyChain_indexesInitialPoints() {
+        List<SupplyChainPoint> points = List.of(new SupplyChainPoint(-33.87, 151.21), new SupplyChainPoint(-33.86, 151.20));
+        long clustered = clusteredPoints(-34, 151, -33, 152);
+
+        SupplyChain created = service.createSupplyChain("Filiera Australe " + System.nanoTime(), new ArrayList<>(), points);
+
+        assertAll(
+                () -> assertEquals(2, jdbcTemplate.queryForObject(
+                        "select count(*) from supply_chain_points where supply_chain_id = ?", Integer.class, created.getId())),
+                () -> assertEquals(2, service.findPointsInArea(-34, 151, -33, 152, created.getId(), 10).size()),
+                () -> assertEquals(clustered + 2, clusteredPoints(-34, 151, -33, 152))
+        );
+    }
+
+    @Test
+    @DisplayName("a bulk import that fails after a batch leaves no rows and no index entries")
+    void bulkAcquireProducts_failingAfterBatch_leavesIndexesUntouched() {
+        String category = "ritirato" + System.nanoTime();
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < SupplyChainService.BULK_BATCH_SIZE + 10; i++) {
+            ndjson.append("{\"name\":\"Lotto ").append(category).append(' ').append(i)
+                    .append("\",\"category\":\"").append(category).append("\",\"description\":\"Lotto\"}\n");
+        }
+        byte[] bytes = ndjson.toString().getBytes(StandardCharsets.UTF_8);
+        InputStream failing = new SequenceInputStream(new ByteArrayInputStream(bytes), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+
+        assertThrows(IOException.class, () -> service.bulkAcquireProducts(chain.getId(), failing));
+
+        assertAll(
+                () -> assertEquals(CHAIN_SIZE, joinRows("supply_chain_products")),
+                () -> assertTrue(service.findProductsByCategory(category).isEmpty()),
+                () -> assertTrue(hitIds(category).isEmpty())
+        );
+    }
+
+    @Test
+    @DisplayName("a bulk import spanning several batches indexes every product after commit")
+    void bulkAcquireProducts_indexesEveryProductAfterCommit() throws IOException {
+        String category = "importato" + System.nanoTime();
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < SupplyChainService.BULK_BATCH_SIZE + 10; i++) {
+            ndjson.append("{\"name\":\"Lotto ").append(category).append(' ').append(i)
+                    .append("\",\"category\":\"").append(category).append("\",\"description\":\"Lotto\"}\n");
+        }
+
+        BulkImportResultDto result = service.bulkAcquireProducts(chain.getId(),
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertAll(
+                () -> assertEquals(SupplyChainService.BULK_BATCH_SIZE + 10, result.getImported()),
+                () -> assertEquals(SupplyChainService.BULK_BATCH_SIZE + 10, service.findProductsByCategory(category).size()),
+                () -> assertFalse(hitIds(category).isEmpty())
+        );
+    }
+
+    @Test
+    @DisplayName("getSupplyChainRepository loads every chain with a constant number of queries")
+    void getSupplyChainRepository_fetchesCollectionsWithoutNPlusOne() {
+        for (int i = 0; i < 5; i++) {
+            SupplyChain other = service.createSupplyChain("Filiera " + i + " " + System.nanoTime(), new ArrayList<>(), new ArrayList<>());
+            service.acquireProduct(product("Vino " + i), other.getId());
+            service.acquirePoint(new SupplyChainPoint(43.0 + i, 13.0), other.getId());
+        }
+
+        statistics.clear();
+        List<SupplyChain> chains = service.getSupplyChainRepository();
+
+        assertAll(
+                () -> assertTrue(chains.size() >= 6),
+                () -> assertTrue(chains.stream().allMatch(sc -> Hibernate.isInitialized(sc.getProducts())
+                        && Hibernate.isInitialized(sc.getPoints()))),
+                () -> assertEquals(2, statistics.getPrepareStatementCount())
+        );
+    }
+
+    @Test
+    @DisplayName("getSupplyChainPage walks every chain once in id order")
+    void getSupplyChainPage_walksAllChainsInIdOrder() {
+        for (int i = 0; i < 4; i++) {
+            service.createSupplyChain("Pagina " + i + " " + System.nanoTime(), new ArrayList<>(), new ArrayList<>());
+        }
+        int total = service.getSupplyChainSummaries().size();
+
+        List<String> seen = new ArrayList<>();
+        String after = "";
+        List<SupplyChain> page;
+        do {
+            page = service.getSupplyChainPage(after, 2);
+            page.forEach(sc -> seen.add(sc.getId()));
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 2);
+
+        assertAll(
+                () -> assertEquals(total, seen.size()),
+                () -> assertEquals(seen.stream().sorted().toList(), seen),
+                () -> assertTrue(seen.contains(chain.getId()))
+        );
+    }
+
+    @Test
+    @DisplayName("getSupplyChainSummaries returns counts with a single query")
+    void getSupplyChainSummaries_returnsCountsWithSingleQuery() {
+        statistics.clear();
+        List<SupplyChainSummaryDto> summaries = service.getSupplyChainSummaries();
+        SupplyChainSummaryDto summary = summaries.stream()
+                .filter(s -> s.getId().equals(chain.getId()))
+                .findFirst()
+                .orElseThrow();
+
+        assertAll(
+                () -> assertEquals(1, statistics.getPrepareStatementCount()),
+                () -> assertEquals(CHAIN_SIZE, summary.getProductCount()),
+                () -> assertEquals(0, summary.getPointCount())
+        );
+    }
+
+    @Test
+    @DisplayName("acquireProduct returns null when the chain does not exist")
+    void acquireProduct_withUnknownChain_returnsNull() {
+        assertNull(service.acquireProduct(product("Orfano"), "missing"));
+    }
+
+    @Test
+    @DisplayName("category index follows product creation and deletion")
+    void categoryIndex_followsCreateAndDelete() {
+        Product p = product("Pomodoro");
+        p.setCategory("  Ortaggi ");
+        Product added = service.acquireProduct(p, chain.getId());
+
+        assertAll(
+                () -> assertEquals(CHAIN_SIZE, service.getCategoryCounts(chain.getId()).get("olio")),
+                () -> assertEquals(1, service.getCategoryCounts(chain.getId()).get("ortaggi")),
+                () -> assertTrue(service.findProductsByCategory("ORTAGGI").contains(added))
+        );
+
+        service.deleteProduct(chain.getId(), added.getId());
+
+        assertAll(
+                () -> assertFalse(service.getCategoryCounts(chain.getId()).containsKey("ortaggi")),
+                () -> assertFalse(service.findProductsByCategory("ortaggi").contains(added)),
+                () -> assertNull(service.getCategoryCounts("missing"))
+        );
+    }
+
+    @Test
+    @DisplayName("search index matches inflected, prefix and misspelled words")
+    void search_matchesInflectedPrefixAndFuzzyWords() {
+        Product p = product("Pomodori San Marzano");
+        p.setDescription("Pomodori biologici della Campania");
+        Product added = service.acquireProduct(p, chain.getId());
+
+        assertAll(
+                () -> assertTrue(hitIds("pomodoro").contains(added.getId())),
+                () -> assertTrue(hitIds("marz").contains(added.getId())),
+                () -> assertTrue(hitIds("pomodro biologico").contains(added.getId())),
+                () -> assertEquals(added.getId(), searchIndex.search("pomodori", null, 0, 1).hits().get(0).id())
+        );
+
+        service.deleteProduct(chain.getId(), added.getId());
+
+        assertFalse(hitIds("pomodoro").contains(added.getId()));
+    }
+
+    @ParameterizedTest(name = "persistent={0}")
+    @ValueSource(booleans = {false, true})
+    @DisplayName("concurrent requests with the same idempotency key create a single product")
+    void idempotentAcquireProduct_coalescesConcurrentDuplicates(boolean persistent) throws Exception {
+        ReflectionTestUtils.setField(idempotencyStore, "persistent", persistent);
+        String key = UUID.randomUUID().toString();
+        byte[] body = "{\"name\":\"Olio ripetuto\"}".getBytes(StandardCharsets.UTF_8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Product>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Product request = product("Olio ripetuto");
+                results.add(executor.submit(() -> idempotencyStore.execute("test", "producer", key, body, Product.class,
+                        () -> service.acquireProduct(request, chain.getId()))));
+            }
+            String firstId = results.get(0).get().getId();
+            for (Future<Product> result : results) {
+                assertEquals(firstId, result.get().getId());
+            }
+            assertEquals(CHAIN_SIZE + 1, joinRows("supply_chain_products"));
+        } finally {
+            executor.shutdown();
+            ReflectionTestUtils.setField(idempotencyStore, "persistent", false);
+        }
+    }
+
+    @Test
+    @DisplayName("an idempotency key is bound to its caller and request, and pending keys are never evicted")
+    void idempotencyStore_bindsKeysAndKeepsPendingEntries() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ReflectionTestUtils.setField(idempotencyStore, "maxEntries", 2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> idempotencyStore.execute("test", "producer", key, LOT_1, String.class, () -> {
+                runs.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "creato";
+            }));
+            started.await();
+            for (int i = 0; i < 5; i++) {
+                idempotencyStore.execute("test", "producer", "other-" + i, LOT_2, String.class, () -> "altro");
+            }
+            Future<String> retry = executor.submit(() -> idempotencyStore.execute("test", "producer", key, LOT_1, String.class, () -> {
+                runs.incrementAndGet();
+                return "duplicato";
+            }));
+            release.countDown();
+
+            assertAll(
+                    () -> assertEquals("creato", first.get()),
+                    () -> assertEquals("creato", retry.get()),
+                    () -> assertEquals(1, runs.get()),
+                    () -> assertThrows(ValidationException.class, () -> idempotencyStore.execute("test", "producer", key,
+                            LOT_2, String.class, () -> "altro ordine")),
+                    () -> assertEquals("per un altro", idempotencyStore.execute("test", "distributor", key, LOT_2,
+                            String.class, () -> "per un altro"))
+            );
+        } finally {
+            executor.shutdown();
+            ReflectionTestUtils.setField(idempotencyStore, "maxEntries", 10000);
+        }
+    }
+
+    @Test
+    @DisplayName("a shared claim left by a crashed node is taken over after its lease, whatever the key length")
+    void idempotencyStore_takesOverStaleClaims() {
+        String key = "k".repeat(1000);
+        Timestamp crashed = new Timestamp(System.currentTimeMillis() - 60_000);
+        jdbcTemplate.update("insert into idempotency_key (id, request_hash, created_at, heartbeat_at, claim_token) "
+                        + "values (?, null, ?, ?, ?)",
+                IdempotencyStore.keyId("test", "producer", key), crashed, crashed, UUID.randomUUID().toString());
+        ReflectionTestUtils.setField(idempotencyStore, "persistent", true);
+        try {
+            long start = System.currentTimeMillis();
+            String result = idempotencyStore.execute("test", "producer", key, LOT_1, String.class, () -> "ripreso");
+            long waited = System.currentTimeMillis() - start;
+
+            assertAll(
+                    () -> assertEquals("ripreso", result),
+                    () -> assertTrue(waited < 5_000, "waited " + waited + " ms"),
+                    () -> assertEquals("\"ripreso\"", jdbcTemplate.queryForObject("select response from idempotency_key where id = ?",
+                            String.class, IdempotencyStore.keyId("test", "producer", key)))
+            );
+        } finally {
+            ReflectionTestUtils.setField(idempotencyStore, "persistent", false);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<String> hitIds(String query) {
+        return searchIndex.search(query, SearchIndex.Kind.PRODUCT, 0, 100).hits().stream()
+                .map(SearchIndex.Hit::id)
+                .toList();
+    }
+
+    private long clusteredPoints(double minLat, double minLng, double maxLat, double maxLng) {
+        return service.findPointClusters(SupplyChainPointClusters.MAX_ZOOM, minLat, minLng, maxLat, maxLng).stream()
+                .mapToLong(SupplyChainPointClusters.PointCluster::count)
+                .sum();
+    }
+
+    private int joinRows(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table + " where supply_chain_id = ?",
+                Integer.class, chain.getId());
+    }
+
+    private static Product product(String name) {
+        Product p = new Product(null, name, "olio", "Olio extravergine", Date.valueOf("2025-10-01"));
+        p.setPrice(12.5);
+        return p;
+    }
+}